@@ -0,0 +1,138 @@
+package benchmarks;
+
+import client.commands.FilterLessThanCar;
+import client.commands.PrintFieldDescendingWeaponType;
+import client.commands.SumOfImpactSpeed;
+import client.managers.CollectionManager;
+import client.storage.CollectionStorage;
+import common.HumanBeing;
+import common.utility.Console;
+import common.utility.ExecutionResponse;
+import common.utility.StandartConsole;
+import server.managers.CollectionStore;
+import server.managers.DumpManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Изменения серверной коллекции {@link CollectionStore} и команды клиента,
+ * работающие по индексам локальной копии коллекции в {@link CollectionManager}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Collection {
+        @Param({"1000", "100000"})
+        public int size;
+
+        // Хранилище локальной копии коллекции на клиенте
+        @Param({"treemap", "columnar", "offheap"})
+        public String storage;
+
+        Console console;
+        CollectionManager collectionManager;
+        CollectionStore store;
+        HumanBeingGenerator generator;
+        HumanBeing extra;
+        HumanBeing replacement;
+
+        @Setup
+        public void setup() {
+            console = new StandartConsole();
+            collectionManager = new CollectionManager(null, null, CollectionStorage.create(storage));
+            store = new CollectionStore(new DumpManager("benchmark.xml"));
+            generator = new HumanBeingGenerator(42);
+            for (HumanBeing humanBeing : generator.collection(size).values()) {
+                // Без клиента менеджер применяет изменения локально, как при недоступном сервере
+                collectionManager.add(humanBeing);
+                store.insert(humanBeing);
+            }
+            extra = generator.next(size + 1);
+            replacement = generator.next(size / 2);
+        }
+    }
+
+    /**
+     * Серверная коллекция, восстанавливаемая перед каждым вызовом, для команд, удаляющих элементы.
+     */
+    @State(Scope.Thread)
+    public static class MutableCollection {
+        @Param({"1000", "100000"})
+        public int size;
+
+        TreeMap<Integer, HumanBeing> source;
+        CollectionStore store;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            source = new HumanBeingGenerator(42).collection(size);
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() {
+            store = new CollectionStore(new DumpManager("benchmark.xml"));
+            for (HumanBeing humanBeing : source.values()) {
+                store.insert(humanBeing);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean addRemove(Collection state) {
+        state.store.insert(state.extra);
+        return state.store.remove(state.extra.getId());
+    }
+
+    @Benchmark
+    public boolean update(Collection state) {
+        return state.store.update(state.replacement);
+    }
+
+    @Benchmark
+    public ExecutionResponse filterLessThanCar(Collection state) {
+        return new FilterLessThanCar(state.console, state.collectionManager)
+                .apply(new String[]{"filter_less_than_car", HumanBeingGenerator.carName(100)});
+    }
+
+    @Benchmark
+    public ExecutionResponse sumOfImpactSpeed(Collection state) {
+        return new SumOfImpactSpeed(state.console, state.collectionManager)
+                .apply(new String[]{"sum_of_impact_speed", ""});
+    }
+
+    @Benchmark
+    public ExecutionResponse printFieldDescendingWeaponType(Collection state) {
+        return new PrintFieldDescendingWeaponType(state.console, state.collectionManager)
+                .apply(new String[]{"print_field_descending_weapon_type", ""});
+    }
+
+    @Benchmark
+    public List<HumanBeing> queryFilter(Collection state) {
+        // На 100000 элементах запрос выполняется параллельно, на 1000 — последовательно
+        return state.collectionManager.query().filter(humanBeing -> humanBeing.getImpactSpeed() > 50);
+    }
+
+    @Benchmark
+    public int removeGreater(MutableCollection state) {
+        return state.store.removeGreater(state.size / 2);
+    }
+}
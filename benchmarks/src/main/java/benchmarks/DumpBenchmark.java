@@ -0,0 +1,62 @@
+package benchmarks;
+
+import client.managers.DumpManager;
+import common.HumanBeing;
+import common.utility.StandartConsole;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись и разбор XML-дампа коллекции клиентским {@link DumpManager}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DumpBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private DumpManager dumpManager;
+    private TreeMap<Integer, HumanBeing> collection;
+    private String xml;
+
+    @Setup
+    public void setup() throws Exception {
+        dumpManager = new DumpManager(new StandartConsole(), null);
+        collection = new HumanBeingGenerator(42).collection(size);
+        xml = dumpManager.toXml(collection);
+    }
+
+    @Benchmark
+    public String writeXml() throws Exception {
+        return dumpManager.toXml(collection);
+    }
+
+    @Benchmark
+    public void writeXmlStream() throws Exception {
+        dumpManager.writeXml(collection, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public TreeMap<Integer, HumanBeing> parseXml() throws Exception {
+        TreeMap<Integer, HumanBeing> result = new TreeMap<>();
+        dumpManager.parseXml(xml, result);
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Генератор синтетических объектов {@link HumanBeing} для бенчмарков.
+ * При одинаковом seed выдаёт одинаковую последовательность объектов.
+ */
+public class HumanBeingGenerator {
+    private static final String[] NAMES = {"Gerald", "Connor", "Ciri", "Yennefer", "Dandelion", "Triss", "Vesemir"};
+    private static final String[] SOUNDTRACKS = {"The Witcher", "Silver for Monsters", "Kaer Morhen", "Blood and Wine"};
+    private static final WeaponType[] WEAPON_TYPES = WeaponType.values();
+    private static final LocalDate START_DATE = LocalDate.of(2020, 1, 1);
+
+    private final Random random;
+
+    public HumanBeingGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Создаёт случайный валидный объект с заданным id.
+     *
+     * @param id идентификатор
+     * @return новый объект
+     */
+    public HumanBeing next(int id) {
+        return new HumanBeing.Builder(id, START_DATE.plusDays(random.nextInt(2000)))
+                .name(NAMES[random.nextInt(NAMES.length)] + id)
+                .coordinates(new Coordinates.Builder()
+                        .x(random.nextInt(100_000) - 166)
+                        .y(random.nextBoolean() ? random.nextFloat() * 1000 : null)
+                        .build())
+                .realHero(random.nextInt(3) == 0 ? null : random.nextBoolean())
+                .hasToothpick(random.nextInt(3) == 0 ? null : random.nextBoolean())
+                .impactSpeed(random.nextFloat() * 100)
+                .soundtrackName(SOUNDTRACKS[random.nextInt(SOUNDTRACKS.length)])
+                .minutesOfWaiting(random.nextBoolean() ? random.nextDouble() * 60 : null)
+                .weaponType(WEAPON_TYPES[random.nextInt(WEAPON_TYPES.length)])
+                .car(random.nextInt(4) == 0 ? null : new Car.Builder().name(carName(random.nextInt(1000))).build())
+                .build();
+    }
+
+    /**
+     * Создаёт коллекцию из size элементов с ключами 1..size.
+     *
+     * @param size размер коллекции
+     * @return новая коллекция
+     */
+    public TreeMap<Integer, HumanBeing> collection(int size) {
+        TreeMap<Integer, HumanBeing> collection = new TreeMap<>();
+        for (int id = 1; id <= size; id++) {
+            collection.put(id, next(id));
+        }
+        return collection;
+    }
+
+    /**
+     * Имя машины с номером; номера 0..999 дают равномерное распределение имён.
+     */
+    public static String carName(int number) {
+        return String.format("car%03d", number);
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import common.serverUtils.BinaryCodec;
+import common.serverUtils.JavaCodec;
+import common.serverUtils.Request;
+import common.serverUtils.Response;
+import common.serverUtils.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация и десериализация {@link Request} и {@link Response} разными кодеками.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+    @Param({"binary", "java"})
+    public String codec;
+
+    private Request request;
+    private Response response;
+    private byte[] requestBytes;
+    private byte[] responseBytes;
+
+    @Setup
+    public void setup() {
+        Serializer.setCodec(codec.equals("java") ? new JavaCodec() : new BinaryCodec());
+        request = new Request("insert", new HumanBeingGenerator(42).next(1));
+        response = new Response("HumanBeing с ключом 1 успешно удалён из коллекции!");
+        requestBytes = Serializer.serialize(request);
+        responseBytes = Serializer.serialize(response);
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() {
+        return Serializer.serialize(request);
+    }
+
+    @Benchmark
+    public Object deserializeRequest() throws Exception {
+        return Serializer.deserialize(requestBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() {
+        return Serializer.serialize(response);
+    }
+
+    @Benchmark
+    public Object deserializeResponse() throws Exception {
+        return Serializer.deserialize(responseBytes);
+    }
+}
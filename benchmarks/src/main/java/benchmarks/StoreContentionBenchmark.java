@@ -0,0 +1,91 @@
+package benchmarks;
+
+import common.HumanBeing;
+import server.managers.CollectionStore;
+import server.managers.DumpManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одновременные изменения серверной коллекции {@link CollectionStore} из нескольких потоков-писателей.
+ * Каждый поток вставляет и удаляет элементы со случайными ключами и заменяет их через replace_if_greater.
+ * Один поток даёт пропускную способность без конкуренции, 4–64 потока — её рост или падение под нагрузкой.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({"1000", "100000"})
+        public int size;
+
+        CollectionStore store;
+        HumanBeing[] elements;
+        HumanBeing[] replacements;
+
+        @Setup
+        public void setup() {
+            store = new CollectionStore(new DumpManager("benchmark.xml"));
+            HumanBeingGenerator generator = new HumanBeingGenerator(42);
+            HumanBeingGenerator replacementGenerator = new HumanBeingGenerator(7);
+            // Ключей вдвое больше, чем элементов в коллекции: вставки и удаления случаются одинаково часто
+            elements = new HumanBeing[size * 2];
+            replacements = new HumanBeing[size * 2];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = generator.next(i + 1);
+                replacements[i] = replacementGenerator.next(i + 1);
+                if (i % 2 == 0) store.insert(elements[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean writers1(Store state) {
+        return mutate(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean writers4(Store state) {
+        return mutate(state);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean writers16(Store state) {
+        return mutate(state);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean writers64(Store state) {
+        return mutate(state);
+    }
+
+    private static boolean mutate(Store state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(state.elements.length);
+        if (random.nextInt(4) == 0) return state.store.replaceIfGreater(state.replacements[index]) == Boolean.TRUE;
+        // Занятый ключ освобождается, свободный занимается
+        if (state.store.insert(state.elements[index])) return true;
+        return state.store.remove(state.elements[index].getId());
+    }
+}
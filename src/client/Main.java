@@ -12,17 +12,17 @@ public class Main {
     /**
      * Точка входа в приложение.
      * <p>
-     * Ожидает имя файла с коллекцией в качестве аргумента командной строки.
+     * Опция --storage=treemap|columnar|offheap|offheap:файл выбирает хранилище локальной копии коллекции.
      * Инициализирует консоль, менеджеры коллекции, команд и дампа, регистрирует все поддерживаемые команды.
      * Запускает интерактивный режим работы с пользователем.
      * </p>
      *
-     * @param args аргументы командной строки (args[0] — имя файла с коллекцией)
+     * @param args аргументы командной строки
      */
     public static void main(String[] args) {
         try {
             Engine engine = new Engine();
-            engine.run();
+            engine.run(args);
         } catch (IOException e) {
             System.out.println(e.getMessage());
         }
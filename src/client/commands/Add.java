@@ -3,11 +3,13 @@ package client.commands;
 import common.Command;
 import client.managers.CollectionManager;
 import common.HumanBeing;
+import common.IdGenerator;
 import client.models.creators.HumanBeingCreator;
 import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'add'. Добавляет новый элемент в коллекцию.
@@ -31,8 +33,9 @@ public class Add extends Command implements Executable, Describable {
 
     /**
      * Выполняет команду добавления элемента в коллекцию.
-     * Создает новый объект HumanBeing через HumanBeingCreator,
+     * Получает id для нового элемента, создает объект HumanBeing через HumanBeingCreator,
      * проверяет его валидность и добавляет в коллекцию.
+     * Без связи с сервером и свободных id элемент не создаётся, а поля не запрашиваются.
      *
      * @param argument аргументы команды (не используются)
      * @return результат выполнения команды ({@link ExecutionResponse})
@@ -43,13 +46,15 @@ public class Add extends Command implements Executable, Describable {
         if (!argument[1].isEmpty())
             return new ExecutionResponse(false, "Неправильное количество аргументов!\nИспользование: '" + getName() + "'");
 
-        HumanBeing humanBeing = HumanBeingCreator.createHumanBeing(console, null);
+        int id = IdGenerator.tryAssignHumanBeingId();
+        if (id < 0) {
+            return new ExecutionResponse(false, "Сервер недоступен, а выделенные клиенту id закончились! HumanBeing не создан!");
+        }
+        HumanBeing humanBeing = HumanBeingCreator.createHumanBeing(console, id);
 
         if (humanBeing != null && humanBeing.validate()) {
-            if (collectionManager.add(humanBeing)) {
-                return new ExecutionResponse("HumanBeing успешно добавлен!");
-            }
-            return new ExecutionResponse("HumanBeing уже содержится в коллекции (пересечение по id)!");
+            Response response = collectionManager.add(humanBeing);
+            return new ExecutionResponse(response.isSuccess(), response.getMessage());
         }
         return new ExecutionResponse(false, "Поля HumanBeing не валидны! HumanBeing не создан!");
     }
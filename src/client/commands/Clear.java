@@ -6,6 +6,7 @@ import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'clear'. Очищает коллекцию.
@@ -38,8 +39,7 @@ public class Clear extends Command implements Executable, Describable {
         if (!arguments[1].isEmpty()) {
             return new ExecutionResponse(false, "Неправильное количество аргументов!\nИспользование: '" + getName() + "'");
         }
-        collectionManager.getCollection().clear();
-
-        return new ExecutionResponse("Коллекция успешно очищена!");
+        Response response = collectionManager.clear();
+        return new ExecutionResponse(response.isSuccess(), response.getMessage());
     }
 }
@@ -29,7 +29,7 @@ public class FilterLessThanCar extends Command implements Executable, Describabl
 
     /**
      * Выполняет команду фильтрации элементов по полю car.
-     * Сравнивает значения поля car каждого элемента коллекции с заданным значением.
+     * Элементы берутся из индекса по имени машины, без просмотра всей коллекции.
      *
      * @param arguments аргументы команды, где arguments[1] — значение car для сравнения
      * @return результат выполнения команды ({@link ExecutionResponse}) с найденными элементами
@@ -45,10 +45,8 @@ public class FilterLessThanCar extends Command implements Executable, Describabl
         Car compareCar = new Car.Builder().name(carValue).build();
 
         StringBuilder result = new StringBuilder();
-        for (HumanBeing h : collectionManager.getCollection().values()) {
-            if (h.getCar() != null && h.getCar().getName().compareTo(compareCar.getName()) < 0) {
-                result.append(h).append("\n");
-            }
+        for (HumanBeing h : collectionManager.filterLessThanCar(compareCar.getName())) {
+            result.append(h).append("\n");
         }
         String output = result.isEmpty() ? "Нет элементов, car которых меньше " + carValue : result.toString();
         return new ExecutionResponse(output);
@@ -10,7 +10,8 @@ import common.utility.Console;
 import java.time.LocalDateTime;
 
 /**
- * Команда 'info'. Выводит информацию о коллекции: тип, количество элементов, дата последней инициализации и сохранения.
+ * Команда 'info'. Выводит информацию о коллекции: тип, количество элементов, средние значения числовых полей,
+ * дата последней инициализации и сохранения.
  * Реализует интерфейсы {@link Executable} и {@link Describable}.
  */
 public class Info extends Command implements Executable, Describable {
@@ -62,6 +63,8 @@ public class Info extends Command implements Executable, Describable {
         var s = "Сведения о коллекции:\n";
         s += " Тип: " + collectionManager.getCollection().getClass() + "\n";
         s += " Количество элементов: " + collectionManager.getCollection().size() + "\n";
+        s += " Среднее impactSpeed: " + Stats.format(collectionManager.getImpactSpeedStatistics().getMean()) + "\n";
+        s += " Среднее minutesOfWaiting: " + Stats.format(collectionManager.getMinutesOfWaitingStatistics().getMean()) + "\n";
         s += " Дата последнего сохранения: " + lastSaveTimeString + "\n";
         s += " Дата последней инициализации: " + lastInitTimeString;
 
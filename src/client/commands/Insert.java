@@ -8,6 +8,7 @@ import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'insert'. Добавляет новый элемент в коллекцию по указанному ключу.
@@ -54,8 +55,8 @@ public class Insert extends Command implements Executable, Describable {
             HumanBeing humanBeing = HumanBeingCreator.createHumanBeing(console, key);
 
             if (humanBeing != null && humanBeing.validate()) {
-                collectionManager.getCollection().put(key, humanBeing);
-                return new ExecutionResponse("HumanBeing успешно добавлен с ключом " + key + "!");
+                Response response = collectionManager.add(humanBeing);
+                return new ExecutionResponse(response.isSuccess(), response.getMessage());
             } else {
                 return new ExecutionResponse(false, "Значения полей HumanBeing некорректны! Создание прервано.");
             }
@@ -40,7 +40,9 @@ public class Load extends Command implements Executable, Describable {
         }
 
         try {
-            collectionManager.loadCollection();
+            if (!collectionManager.loadCollection()) {
+                return new ExecutionResponse(false, "Не удалось получить коллекцию с сервера!");
+            }
             return new ExecutionResponse("Коллекция успешно перезагружена из файла!");
         } catch (Exception e) {
             return new ExecutionResponse(false, "Ошибка при загрузке коллекции: " + e.getMessage());
@@ -2,16 +2,13 @@ package client.commands;
 
 import common.Command;
 import client.managers.CollectionManager;
-import common.HumanBeing;
 import common.WeaponType;
 import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.Map;
 
 /**
  * Команда 'print_field_descending_weapon_type'.
@@ -33,26 +30,24 @@ public class PrintFieldDescendingWeaponType extends Command implements Executabl
 
     /**
      * Выполняет команду вывода значений поля weaponType в порядке убывания.
-     * Формирует отсортированный по убыванию список значений weaponType всех элементов коллекции.
+     * Каждое значение weaponType выводится столько раз, сколько элементов его имеют;
+     * количества берутся из гистограммы, которую поддерживает менеджер коллекции, поэтому сортировка не нужна.
      *
      * @param arguments аргументы команды (не используются)
      * @return результат выполнения команды ({@link ExecutionResponse}) с отсортированными значениями
      */
     @Override
     public ExecutionResponse apply(String[] arguments) {
-        List<WeaponType> sortedWeaponTypes = new ArrayList<>();
-        for (HumanBeing h : collectionManager.getCollection().values()) {
-            sortedWeaponTypes.add(h.getWeaponType());
-        }
-        sortedWeaponTypes.sort(Comparator.reverseOrder());
-
-        if (sortedWeaponTypes.isEmpty()) {
+        Map<WeaponType, Integer> counts = collectionManager.getWeaponTypeCounts();
+        if (counts.isEmpty()) {
             return new ExecutionResponse("В коллекции нет элементов с WeaponType!");
         }
 
         StringBuilder result = new StringBuilder();
-        for (WeaponType weaponType : sortedWeaponTypes) {
-            result.append(weaponType).append("\n");
+        WeaponType[] weaponTypes = WeaponType.values();
+        for (int i = weaponTypes.length - 1; i >= 0; i--) {
+            String line = weaponTypes[i] + "\n";
+            result.append(line.repeat(counts.getOrDefault(weaponTypes[i], 0)));
         }
 
         return new ExecutionResponse(result.toString());
@@ -7,6 +7,7 @@ import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'remove_greater'. Удаляет из коллекции все элементы, превышающие заданный по id элемент.
@@ -44,22 +45,12 @@ public class RemoveGreater extends Command implements Executable, Describable {
             int key = Integer.parseInt(arguments[1]);
             if (key < 1) throw new NumberFormatException();
 
-            HumanBeing comparationHumanBeing = collectionManager.getById(key);
             if (collectionManager.getById(key) == null) {
                 return new ExecutionResponse(false, "Элемента с таким ключом не существует!");
             }
 
-            int count = 0;
-            for (HumanBeing h : collectionManager.getCollection().values()) {
-                if (h.compareTo(comparationHumanBeing) > 0) {
-                    if (collectionManager.remove(h.getId())) {
-                        count++;
-                    } else {
-                        return new ExecutionResponse(false, "Ошибка!");
-                    }
-                }
-            }
-            return new ExecutionResponse("Удалено элементов: " + count);
+            Response response = collectionManager.removeGreater(key);
+            return new ExecutionResponse(response.isSuccess(), response.getMessage());
 
         } catch (NumberFormatException e) {
             return new ExecutionResponse(false, "Ключ должен быть натуральным числом больше 0!");
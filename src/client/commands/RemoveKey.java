@@ -6,6 +6,7 @@ import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'remove'. Удаляет элемент из коллекции по указанному ключу.
@@ -47,11 +48,8 @@ public class RemoveKey extends Command implements Executable, Describable {
                 return new ExecutionResponse(false, "Элемента с таким ключом не существует!");
             }
 
-            if (collectionManager.remove(key)) {
-                return new ExecutionResponse("HumanBeing с ключом " + key + " успешно удалён из коллекции!");
-            } else {
-                return new ExecutionResponse(false, "Ошибка!");
-            }
+            Response response = collectionManager.remove(key);
+            return new ExecutionResponse(response.isSuccess(), response.getMessage());
         } catch (NumberFormatException e) {
             return new ExecutionResponse(false, "Ключ должен быть натуральным числом больше 0!");
         }
@@ -8,6 +8,7 @@ import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'replace_if_greater'. Заменяет элемент по ключу, если новое значение больше старого.
@@ -31,7 +32,8 @@ public class ReplaceIfGreater extends Command implements Executable, Describable
 
     /**
      * Выполняет команду замены элемента по ключу, если новое значение больше старого.
-     * Проверяет корректность ключа, наличие элемента, создаёт новый элемент и сравнивает его со старым.
+     * Проверяет корректность ключа, наличие элемента, создаёт новый элемент и отправляет его на сервер,
+     * который сравнивает его со старым.
      * Замена производится только если новое значение больше старого по заданным критериям.
      *
      * @param arguments аргументы команды, где arguments[1] — ключ для замены
@@ -49,17 +51,11 @@ public class ReplaceIfGreater extends Command implements Executable, Describable
             if (oldHuman == null) {
                 return new ExecutionResponse(false, "Элемент с таким ключом не найден!");
             }
-            HumanBeing newHuman = HumanBeingCreator.createHumanBeing(console, null);
+            // Новый элемент получает тот же ключ; сравнение со старым выполняет сервер
+            HumanBeing newHuman = HumanBeingCreator.createHumanBeing(console, key);
             if (newHuman != null && newHuman.validate()) {
-                if (compareHumanBeings(newHuman, oldHuman)) {
-                    if (collectionManager.update(newHuman)) {
-                        return new ExecutionResponse(true, "Элемент успешно заменён!");
-                    } else {
-                        return new ExecutionResponse(false, "Ошибка!");
-                    }
-                } else {
-                    return new ExecutionResponse(false, "Новое значение не больше старого - замена не произведена.");
-                }
+                Response response = collectionManager.replaceIfGreater(newHuman);
+                return new ExecutionResponse(response.isSuccess(), response.getMessage());
             } else {
                 return new ExecutionResponse(false, "Значения полей HumanBeing некорректны! Создание прервано.");
             }
@@ -67,23 +63,4 @@ public class ReplaceIfGreater extends Command implements Executable, Describable
             return new ExecutionResponse(false, "Ключ должен быть натуральным числом больше 0!");
         }
     }
-
-    /**
-     * Сравнивает два объекта HumanBeing по ImpactSpeed, MinutesOfWaiting и Name.
-     * Сначала сравнивает ImpactSpeed, затем MinutesOfWaiting, затем Name.
-     *
-     * @param newHuman новый объект HumanBeing
-     * @param oldHuman старый объект HumanBeing
-     * @return true если newHuman больше oldHuman, false если меньше или если равны
-     */
-    private boolean compareHumanBeings(HumanBeing newHuman, HumanBeing oldHuman) {
-        float speedCompare = newHuman.getImpactSpeed() - oldHuman.getImpactSpeed();
-        if (speedCompare > 0) return true;
-
-        double waitingCompare = (newHuman.getMinutesOfWaiting() != null ? newHuman.getMinutesOfWaiting() : 0) -
-                (oldHuman.getMinutesOfWaiting() != null ? oldHuman.getMinutesOfWaiting() : 0);
-        if (waitingCompare > 0) return true;
-
-        return newHuman.getName().compareTo(oldHuman.getName()) > 0;
-    }
 }
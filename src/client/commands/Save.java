@@ -6,6 +6,7 @@ import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'save'. Сохраняет коллекцию в файл.
@@ -39,11 +40,10 @@ public class Save extends Command implements Executable, Describable {
             return new ExecutionResponse(false, "Неправильное количество аргументов!\nИспользование: '" + getName() + "'");
         }
 
-        try {
-            collectionManager.saveCollection();
-            return new ExecutionResponse("Коллекция успешно сохранена в файл!");
-        } catch (Exception e) {
-            return new ExecutionResponse(false, "Ошибка при сохранении коллекции: " + e.getMessage());
+        Response response = collectionManager.saveCollection();
+        if (!response.isSuccess()) {
+            return new ExecutionResponse(false, "Ошибка при сохранении коллекции: " + response.getMessage());
         }
+        return new ExecutionResponse("Коллекция успешно сохранена в файл!");
     }
 }
@@ -0,0 +1,62 @@
+package client.commands;
+
+import common.Command;
+import client.managers.CollectionManager;
+import client.storage.FieldStatistics;
+import common.utility.Describable;
+import common.utility.Executable;
+import common.utility.ExecutionResponse;
+import common.utility.Console;
+
+/**
+ * Команда 'stats'. Выводит количество, сумму, минимум, максимум и среднее полей impactSpeed и minutesOfWaiting.
+ * Значения поддерживаются менеджером коллекции при каждом изменении, поэтому команда выполняется за O(1).
+ * Реализует интерфейсы {@link Executable} и {@link Describable}.
+ */
+public class Stats extends Command implements Executable, Describable {
+    private final CollectionManager collectionManager;
+
+    /**
+     * Конструктор команды 'stats'.
+     *
+     * @param ignoredConsole    консоль (не используется в этой команде)
+     * @param collectionManager менеджер коллекции для получения статистики
+     */
+    public Stats(Console ignoredConsole, CollectionManager collectionManager) {
+        super("stats", "вывести статистику полей impactSpeed и minutesOfWaiting");
+        this.collectionManager = collectionManager;
+    }
+
+    /**
+     * Выполняет команду вывода статистики числовых полей коллекции.
+     *
+     * @param arguments аргументы команды (не должны содержать значений)
+     * @return результат выполнения команды ({@link ExecutionResponse}) со статистикой
+     */
+    @Override
+    public ExecutionResponse apply(String[] arguments) {
+        if (!arguments[1].isEmpty()) {
+            return new ExecutionResponse(false, "Неправильное количество аргументов!\nИспользование: '" + getName() + "'");
+        }
+
+        return new ExecutionResponse(describe("impactSpeed", collectionManager.getImpactSpeedStatistics()) + "\n"
+                + describe("minutesOfWaiting", collectionManager.getMinutesOfWaitingStatistics()));
+    }
+
+    private static String describe(String field, FieldStatistics statistics) {
+        if (statistics.getCount() == 0) return "Статистика " + field + ": значений нет";
+        return "Статистика " + field + ":\n"
+                + " Количество: " + statistics.getCount() + "\n"
+                + " Сумма: " + format(statistics.getSum()) + "\n"
+                + " Минимум: " + format(statistics.getMin()) + "\n"
+                + " Максимум: " + format(statistics.getMax()) + "\n"
+                + " Среднее: " + format(statistics.getMean());
+    }
+
+    /**
+     * Форматирует значение статистики; NaN означает отсутствие значений.
+     */
+    static String format(double value) {
+        return Double.isNaN(value) ? "нет значений" : String.valueOf(value);
+    }
+}
@@ -2,7 +2,6 @@ package client.commands;
 
 import common.Command;
 import client.managers.CollectionManager;
-import common.HumanBeing;
 import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
@@ -28,7 +27,7 @@ public class SumOfImpactSpeed extends Command implements Executable, Describable
 
     /**
      * Выполняет команду подсчёта суммы значений поля impactSpeed для всех элементов коллекции.
-     * Обходит все элементы коллекции и суммирует их значения impactSpeed.
+     * Сумма поддерживается менеджером коллекции при каждом изменении, поэтому коллекция не обходится.
      *
      * @param arguments аргументы команды (не используются)
      * @return результат выполнения команды ({@link ExecutionResponse}):
@@ -36,10 +35,6 @@ public class SumOfImpactSpeed extends Command implements Executable, Describable
      */
     @Override
     public ExecutionResponse apply(String[] arguments) {
-        float sum = 0;
-        for (HumanBeing human : collectionManager.getCollection().values()) {
-            sum += human.getImpactSpeed();
-        }
-        return new ExecutionResponse("Сумма impactSpeed по всем элементам: " + sum);
+        return new ExecutionResponse("Сумма impactSpeed по всем элементам: " + collectionManager.sumOfImpactSpeed());
     }
 }
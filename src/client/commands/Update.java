@@ -8,6 +8,7 @@ import common.utility.Describable;
 import common.utility.Executable;
 import common.utility.ExecutionResponse;
 import common.utility.Console;
+import common.serverUtils.Response;
 
 /**
  * Команда 'update'. Обновляет значение элемента коллекции, id которого равен заданному.
@@ -54,11 +55,8 @@ public class Update extends Command implements Executable, Describable {
             HumanBeing humanBeing = HumanBeingCreator.createHumanBeing(console, key);
 
             if (humanBeing != null && humanBeing.validate()) {
-                if (collectionManager.update(humanBeing)) {
-                    return new ExecutionResponse("HumanBeing по ключу " + key + " успешно обновлён!");
-                } else {
-                    return new ExecutionResponse(false, "Ошибка!");
-                }
+                Response response = collectionManager.update(humanBeing);
+                return new ExecutionResponse(response.isSuccess(), response.getMessage());
             } else {
                 return new ExecutionResponse(false, "Значения полей HumanBeing некорректны! Создание прервано.");
             }
@@ -1,32 +1,95 @@
 package client.managers;
 
+import client.server.Client;
+import client.storage.CollectionStorage;
+import client.storage.FieldStatistics;
+import client.storage.TreeMapStorage;
 import common.HumanBeing;
 import common.IdGenerator;
+import common.WeaponType;
+import common.serverUtils.Request;
+import common.serverUtils.Response;
 
 import java.time.LocalDateTime;
-import java.util.TreeMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * Класс-менеджер для управления коллекцией объектов {@link HumanBeing}.
- * Позволяет добавлять, обновлять, удалять элементы, а также сохранять и загружать коллекцию из файла.
+ * Основная коллекция хранится на сервере: каждое изменение отправляется отдельной командой,
+ * несущей только ключ или один элемент, и после подтверждения сервером повторяется в локальной копии.
+ * Запросы на чтение выполняются по локальной копии, которая загружается с сервера целиком
+ * только в первый раз, а затем получает лишь изменения после известной ей версии коллекции.
+ * Если сервер не ответил, добавление, обновление и удаление выполняются только локально,
+ * а ключи изменённых элементов запоминаются и отправляются на сервер командой save.
+ * Локальная копия лежит в хранилище {@link CollectionStorage}, которое вместе с элементами поддерживает
+ * индексы по имени машины, типу оружия и статистику {@link FieldStatistics} полей impactSpeed и minutesOfWaiting,
+ * поэтому запросы по ним не просматривают всю коллекцию.
  * Хранит информацию о времени последней инициализации и сохранения коллекции.
+ * <p>
+ * Добавление, обновление и удаление можно отправлять конвейером ({@link #setPipelineWindow(int)}):
+ * изменение сразу применяется к локальной копии, а ответ сервера проверяется позже и при отказе изменение откатывается.
+ * Изменения одного ключа и команды, зависящие от всей коллекции, дожидаются ответов на уже отправленные изменения,
+ * поэтому сервер видит зависимые команды в том же порядке, что и клиент.
+ * Изменения конвейера копятся и уходят на сервер пакетами до {@link #BATCH_SIZE} команд в одном запросе.
+ * </p>
  */
 public class CollectionManager {
+    private static final String SAVED_LOCALLY =
+            "Сервер недоступен: изменение сохранено локально и будет отправлено на сервер командой save.";
+    /**
+     * Сколько изменений конвейера отправляется одним пакетом.
+     */
+    public static final int BATCH_SIZE = 50;
     private int currentId = 1;
-    TreeMap<Integer, HumanBeing> collection = new TreeMap<>();
+    private final CollectionStorage collection;
     private LocalDateTime lastInitTime;
     private LocalDateTime lastSaveTime;
     private final DumpManager dumpManager;
+    private final Client client;
+    private final TreeSet<Integer> dirtyKeys = new TreeSet<>();
+    private String version;
+    // Изменения, отправленные без ожидания ответа, в порядке отправки
+    private final ArrayDeque<PendingChange> inFlight = new ArrayDeque<>();
+    // Изменения конвейера, ещё не отправленные: они уйдут одним пакетом
+    private final List<PendingChange> unsent = new ArrayList<>();
+    // Ответы на такие изменения, ещё не забранные через takePipelined или pollPipelined
+    private final Map<Integer, Response> pipelined = new HashMap<>();
+    private int pipelineWindow = 1;
+    private int pipelinedCount;
 
     /**
      * Конструктор менеджера коллекции.
      *
      * @param dumpManager менеджер для чтения и записи коллекции в файл
+     * @param client      клиент для отправки команд на сервер
      */
-    public CollectionManager(DumpManager dumpManager) {
+    public CollectionManager(DumpManager dumpManager, Client client) {
+        this(dumpManager, client, new TreeMapStorage());
+    }
+
+    /**
+     * Конструктор менеджера коллекции с заданным хранилищем локальной копии.
+     *
+     * @param dumpManager менеджер для чтения и записи коллекции в файл
+     * @param client      клиент для отправки команд на сервер
+     * @param storage     пустое хранилище локальной копии
+     */
+    public CollectionManager(DumpManager dumpManager, Client client, CollectionStorage storage) {
+        this.collection = storage;
         this.lastInitTime = null;
         this.lastSaveTime = null;
         this.dumpManager = dumpManager;
+        this.client = client;
+        // Новые элементы получают id из блоков, выделенных сервером, и не совпадают с id других клиентов
+        if (client != null) IdGenerator.setBlockSource(this::leaseIds);
     }
 
     /**
@@ -49,10 +112,11 @@ public class CollectionManager {
 
     /**
      * Возвращает коллекцию объектов {@link HumanBeing}.
+     * Коллекция предназначена только для чтения: изменения в обход методов менеджера не дойдут до сервера.
      *
      * @return коллекция.
      */
-    public TreeMap<Integer, HumanBeing> getCollection() {
+    public CollectionStorage getCollection() {
         return collection;
     }
 
@@ -77,65 +141,485 @@ public class CollectionManager {
     }
 
     /**
-     * Добавляет объект {@link HumanBeing} в коллекцию.
+     * Добавляет объект {@link HumanBeing} в коллекцию с ключом, равным его id.
      *
      * @param a объект для добавления
-     * @return true, если объект успешно добавлен, иначе false
+     * @return ответ сервера; при успехе объект добавлен и в локальную копию
      */
-    public boolean add(HumanBeing a) {
-        if (isContain(a)) return false;
-        collection.put(a.getId(), a);
-        return true;
+    public Response add(HumanBeing a) {
+        if (a != null) awaitKey(a.getId());
+        if (isContain(a)) return new Response(false, "HumanBeing уже содержится в коллекции (пересечение по id)!");
+        if (dirtyKeys.contains(a.getId())) return changeLocally(a.getId(), a);
+        return change(new Request("insert", a), a.getId(), a);
     }
 
     /**
      * Обновляет объект {@link HumanBeing} в коллекции по его id.
      *
      * @param humanBeing объект с обновлёнными данными
-     * @return true, если обновление прошло успешно, иначе false
+     * @return ответ сервера; при успехе объект обновлён и в локальной копии
      */
-    public boolean update(HumanBeing humanBeing) {
-        if (!isContain(humanBeing)) return false;
-        collection.remove(humanBeing.getId());
-        collection.put(humanBeing.getId(), humanBeing);
-        return true;
+    public Response update(HumanBeing humanBeing) {
+        awaitKey(humanBeing.getId());
+        if (dirtyKeys.contains(humanBeing.getId())) return changeLocally(humanBeing.getId(), humanBeing);
+        return change(new Request("update", humanBeing), humanBeing.getId(), humanBeing);
     }
 
     /**
      * Удаляет объект {@link HumanBeing} из коллекции по его id.
      *
      * @param id идентификатор элемента для удаления
-     * @return true, если удаление прошло успешно, иначе false
+     * @return ответ сервера; при успехе объект удалён и из локальной копии
      */
-    public boolean remove(Integer id) {
-        HumanBeing humanBeing = getById(id);
-        if (humanBeing == null) return false;
-        collection.remove(humanBeing.getId());
-        return true;
+    public Response remove(Integer id) {
+        awaitKey(id);
+        if (dirtyKeys.contains(id)) return changeLocally(id, null);
+        return change(new Request("remove_key", String.valueOf(id)), id, null);
+    }
+
+    /**
+     * Очищает коллекцию.
+     *
+     * @return ответ сервера
+     */
+    public Response clear() {
+        Response response = orUnreachable(call(new Request("clear", "")));
+        if (response.isSuccess()) {
+            collection.clear();
+            dirtyKeys.clear();
+        }
+        return response;
+    }
+
+    /**
+     * Удаляет элементы, превышающие элемент с заданным ключом.
+     *
+     * @param key ключ элемента для сравнения
+     * @return ответ сервера с количеством удалённых элементов
+     */
+    public Response removeGreater(int key) {
+        Response response = orUnreachable(call(new Request("remove_greater", String.valueOf(key))));
+        if (response.isSuccess()) {
+            collection.removeGreater(key);
+            dirtyKeys.tailSet(key, false).clear();
+        }
+        return response;
+    }
+
+    /**
+     * Удаляет элементы, меньшие элемента с заданным ключом.
+     *
+     * @param key ключ элемента для сравнения
+     * @return ответ сервера с количеством удалённых элементов
+     */
+    public Response removeLower(int key) {
+        Response response = orUnreachable(call(new Request("remove_lower", String.valueOf(key))));
+        if (response.isSuccess()) {
+            collection.removeLower(key);
+            dirtyKeys.headSet(key, false).clear();
+        }
+        return response;
+    }
+
+    /**
+     * Удаляет все элементы, удовлетворяющие условию. Элементы отбираются {@link CollectionQuery}
+     * (на больших коллекциях — параллельно), а удаляются одной командой серверу и одним проходом по локальной копии,
+     * поэтому коллекция не изменяется во время её обхода.
+     *
+     * @param predicate условие удаления
+     * @return ответ сервера с количеством удалённых элементов
+     */
+    public Response removeIf(Predicate<? super HumanBeing> predicate) {
+        List<Integer> keys = query().keys(predicate);
+        if (keys.isEmpty()) return new Response("Удалено элементов: 0");
+        StringBuilder keyList = new StringBuilder();
+        for (Integer key : keys) {
+            if (!keyList.isEmpty()) keyList.append(',');
+            keyList.append(key);
+        }
+        Response response = orUnreachable(call(new Request("remove_keys", keyList.toString())));
+        if (response.isSuccess()) {
+            for (Integer key : keys) collection.remove(key);
+            dirtyKeys.removeAll(keys);
+        }
+        return response;
+    }
+
+    /**
+     * Возвращает запросы по условию к локальной копии коллекции.
+     *
+     * @return запросы к текущей копии
+     */
+    public CollectionQuery query() {
+        return new CollectionQuery(collection);
+    }
+
+    /**
+     * Заменяет элемент с ключом, равным id нового элемента, если новый элемент больше старого.
+     * Сравнение выполняет сервер.
+     *
+     * @param humanBeing новый элемент
+     * @return ответ сервера; при успехе элемент заменён и в локальной копии
+     */
+    public Response replaceIfGreater(HumanBeing humanBeing) {
+        Response response = orUnreachable(call(new Request("replace_if_greater", humanBeing)));
+        if (response.isSuccess()) collection.put(humanBeing);
+        return response;
+    }
+
+    /**
+     * Возвращает элементы, имя машины которых меньше заданного, по индексу хранилища.
+     *
+     * @param carName имя машины для сравнения
+     * @return элементы, упорядоченные по имени машины и ключу
+     */
+    public List<HumanBeing> filterLessThanCar(String carName) {
+        return collection.lessThanCar(carName);
+    }
+
+    /**
+     * @return количество элементов с каждым типом оружия
+     */
+    public Map<WeaponType, Integer> getWeaponTypeCounts() {
+        return collection.weaponTypeCounts();
+    }
+
+    /**
+     * @return сумма impactSpeed всех элементов, поддерживаемая при каждом изменении
+     */
+    public double sumOfImpactSpeed() {
+        return collection.impactSpeedStatistics().getSum();
+    }
+
+    /**
+     * @return статистика поля impactSpeed, обновляемая при каждом изменении коллекции
+     */
+    public FieldStatistics getImpactSpeedStatistics() {
+        return collection.impactSpeedStatistics();
+    }
+
+    /**
+     * @return статистика заданных значений поля minutesOfWaiting, обновляемая при каждом изменении коллекции
+     */
+    public FieldStatistics getMinutesOfWaitingStatistics() {
+        return collection.minutesOfWaitingStatistics();
+    }
+
+    /**
+     * Задаёт, сколько изменений (add, update, remove) можно отправить на сервер, не дожидаясь ответов.
+     * Ответы на изменения, отправленные без ожидания, забираются через {@link #takePipelined(int)}.
+     * При выключении конвейера все отправленные изменения дожидаются ответов, а незабранные ответы забываются.
+     *
+     * @param window наибольшее число изменений без ответа; 1 — каждое изменение ждёт ответа сервера
+     */
+    public void setPipelineWindow(int window) {
+        if (window <= 1) {
+            settleAll();
+            pipelined.clear();
+        }
+        pipelineWindow = Math.max(1, window);
+    }
+
+    /**
+     * @return сколько изменений отправлено без ожидания ответа за всё время; это же номер следующего такого изменения
+     */
+    public int getPipelinedCount() {
+        return pipelinedCount;
     }
 
     /**
-     * Загружает коллекцию из файла с помощью {@link DumpManager}.
-     * Очищает текущую коллекцию, читает новую и обновляет время инициализации.
+     * Возвращает ответ на изменение, отправленное без ожидания, если он уже получен. Не ждёт сервер.
+     *
+     * @param sequence номер изменения, равный {@link #getPipelinedCount()} перед его отправкой
+     * @return ответ сервера или null, если ответа ещё нет; возвращённый ответ забывается
+     */
+    public Response pollPipelined(int sequence) {
+        while (!inFlight.isEmpty() && inFlight.peekFirst().response != null && inFlight.peekFirst().response.isDone()) {
+            settle(inFlight.pollFirst());
+        }
+        return pipelined.remove(sequence);
+    }
+
+    /**
+     * Дожидается ответа на изменение, отправленное без ожидания.
+     *
+     * @param sequence номер изменения, равный {@link #getPipelinedCount()} перед его отправкой
+     * @return ответ сервера или null, если изменения с таким номером нет; возвращённый ответ забывается
+     */
+    public Response takePipelined(int sequence) {
+        while (!pipelined.containsKey(sequence) && !inFlight.isEmpty()) {
+            settle(inFlight.pollFirst());
+        }
+        return pipelined.remove(sequence);
+    }
+
+    /**
+     * Применяет изменение одного элемента к локальной копии и отправляет его на сервер.
+     * Без конвейера дожидается ответа; в конвейере добавляет изменение в пакет и возвращает ответ сразу,
+     * а настоящий ответ проверяется позже.
+     *
+     * @param key   ключ элемента
+     * @param value новое значение или null, если элемент удаляется
+     * @return ответ сервера или, в конвейере, подтверждение отправки
+     */
+    private Response change(Request request, Integer key, HumanBeing value) {
+        HumanBeing previous = collection.get(key);
+        // Новый элемент при недоступном сервере остаётся локально; обновить или удалить можно только известный элемент
+        PendingChange change = new PendingChange(request, key, previous,
+                previous != null || "insert".equals(request.getClientRequest()));
+        apply(key, value);
+        if (pipelineWindow <= 1) {
+            change.response = send(request);
+            return settle(change);
+        }
+        change.sequence = pipelinedCount++;
+        inFlight.addLast(change);
+        unsent.add(change);
+        if (unsent.size() >= BATCH_SIZE) sendBatch();
+        while (inFlight.size() > pipelineWindow) {
+            settle(inFlight.pollFirst());
+        }
+        return new Response("Отправлено на сервер");
+    }
+
+    /**
+     * Дожидается ответа на изменение: при отказе сервера возвращает прежнее значение элемента,
+     * при недоступном сервере оставляет изменение локальным и запоминает ключ для save.
+     *
+     * @return ответ сервера или сообщение о сохранении изменения локально
+     */
+    private Response settle(PendingChange change) {
+        if (change.response == null) sendBatch();
+        Response response = Client.await(change.response);
+        if (response == null) {
+            if (change.keepOffline) {
+                dirtyKeys.add(change.key);
+                response = new Response(SAVED_LOCALLY);
+            } else {
+                apply(change.key, change.previous);
+                response = unreachable();
+            }
+        } else if (!response.isSuccess()) {
+            apply(change.key, change.previous);
+        }
+        if (change.sequence >= 0) pipelined.put(change.sequence, response);
+        return response;
+    }
+
+    /**
+     * Дожидается ответов на отправленные изменения вплоть до последнего изменения с заданным ключом.
+     */
+    private void awaitKey(Integer key) {
+        PendingChange last = null;
+        for (PendingChange change : inFlight) {
+            if (change.key.equals(key)) last = change;
+        }
+        if (last == null) return;
+        PendingChange settled;
+        do {
+            settled = inFlight.pollFirst();
+            settle(settled);
+        } while (settled != last);
+    }
+
+    /**
+     * Отправляет накопленные изменения конвейера одним пакетом; каждое изменение получает свою часть ответа.
+     */
+    private void sendBatch() {
+        if (unsent.isEmpty()) return;
+        if (unsent.size() == 1) {
+            unsent.get(0).response = send(unsent.get(0).request);
+            unsent.clear();
+            return;
+        }
+        List<Request> requests = new ArrayList<>(unsent.size());
+        for (PendingChange change : unsent) requests.add(change.request);
+        CompletableFuture<Response> batch = send(new Request(requests));
+        for (int i = 0; i < unsent.size(); i++) {
+            int index = i;
+            unsent.get(i).response = batch.thenApply(response -> partOf(response, index));
+        }
+        unsent.clear();
+    }
+
+    /**
+     * @return ответ на запрос пакета с заданным номером, null, если сервер не ответил,
+     * или ошибка, если сервер не выполнил пакет
+     */
+    private static Response partOf(Response batch, int index) {
+        if (batch == null) return null;
+        List<Response> parts = batch.getBatch();
+        if (parts == null || index >= parts.size()) {
+            return new Response(false, batch.isSuccess() ? "Ошибка : сервер не ответил на команду пакета" : batch.getMessage());
+        }
+        return parts.get(index);
+    }
+
+    private void settleAll() {
+        while (!inFlight.isEmpty()) {
+            settle(inFlight.pollFirst());
+        }
+    }
+
+    private void apply(Integer key, HumanBeing humanBeing) {
+        if (humanBeing != null) collection.put(humanBeing);
+        else collection.remove(key);
+    }
+
+    /**
+     * Применяет изменение только к локальной копии и запоминает ключ для отправки командой save.
+     *
+     * @param key        ключ элемента
+     * @param humanBeing новое значение или null, если элемент удаляется
+     */
+    private Response changeLocally(Integer key, HumanBeing humanBeing) {
+        apply(key, humanBeing);
+        dirtyKeys.add(key);
+        return new Response(SAVED_LOCALLY);
+    }
+
+    /**
+     * Отправляет запрос на сервер и дожидается ответа.
+     * Сначала дожидается ответов на все изменения, отправленные без ожидания.
+     *
+     * @return ответ сервера или null, если сервер не ответил
+     */
+    private Response call(Request request) {
+        settleAll();
+        return Client.await(send(request));
+    }
+
+    /**
+     * Отправляет запрос на сервер, не дожидаясь ответа.
+     *
+     * @return ответ сервера; null, если запрос не удалось отправить
+     */
+    private CompletableFuture<Response> send(Request request) {
+        try {
+            return client.sendRequest(request);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Запрашивает у сервера блок id для новых элементов.
+     *
+     * @return первый id блока или -1, если сервер недоступен
+     */
+    private int leaseIds(int count) {
+        Response response = call(new Request("lease_ids", String.valueOf(count)));
+        if (response == null || !response.isSuccess()) return -1;
+        String range = response.getMessage();
+        try {
+            return Integer.parseInt(range.substring(0, range.indexOf('-')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Response orUnreachable(Response response) {
+        return response != null ? response : unreachable();
+    }
+
+    private static Response unreachable() {
+        return new Response(false, "Ошибка : сервер недоступен!");
+    }
+
+    /**
+     * Загружает коллекцию с сервера. Если копия уже загружалась, запрашивает только изменения
+     * после её версии; полностью коллекция загружается с помощью {@link DumpManager} при первом запуске
+     * или если сервер больше не помнит эту версию. Несохранённые локальные изменения не теряются,
+     * а без связи с сервером локальная копия остаётся как есть.
      *
      * @return true, если загрузка прошла успешно
      */
     public boolean loadCollection() {
-        collection.clear();
-        dumpManager.readCollection(collection);
+        if (version == null) {
+            if (!readCollection()) return false;
+        } else {
+            Response response = call(new Request("sync", version));
+            if (response == null) return false;
+            if (response.isSuccess()) {
+                applyChanges(response);
+            } else if (!readCollection()) {
+                return false;
+            }
+        }
         lastInitTime = LocalDateTime.now();
-        for (HumanBeing humanBeing : collection.values())
-            if (humanBeing.getId() > currentId) currentId = humanBeing.getId();
-        IdGenerator.restoreHumanBeingCounter(collection);
+        int lastKey = collection.lastKey();
+        if (lastKey > currentId) currentId = lastKey;
+        IdGenerator.restoreHumanBeingCounter(lastKey);
         return true;
     }
 
     /**
-     * Сохраняет коллекцию в файл с помощью {@link DumpManager} и обновляет время сохранения.
+     * Применяет к локальной копии изменения, присланные сервером в ответ на sync.
+     * Элементы с несохранёнными локальными изменениями не затрагиваются.
      */
-    public void saveCollection() {
-        dumpManager.writeCollection(collection);
-        lastSaveTime = LocalDateTime.now();
+    private void applyChanges(Response response) {
+        if (response.getChanged() != null) {
+            for (HumanBeing humanBeing : response.getChanged()) {
+                if (!dirtyKeys.contains(humanBeing.getId())) collection.put(humanBeing);
+            }
+        }
+        if (response.getRemoved() != null) {
+            for (Integer key : response.getRemoved()) {
+                if (!dirtyKeys.contains(key)) collection.remove(key);
+            }
+        }
+        version = response.getVersion();
+    }
+
+    /**
+     * Загружает коллекцию целиком и возвращает в неё несохранённые локальные изменения.
+     */
+    private boolean readCollection() {
+        Map<Integer, HumanBeing> local = new HashMap<>();
+        for (Integer key : dirtyKeys) local.put(key, collection.get(key));
+        String loaded = dumpManager.readCollection(collection);
+        for (Map.Entry<Integer, HumanBeing> entry : local.entrySet()) {
+            if (entry.getValue() != null) collection.put(entry.getValue());
+            else collection.remove(entry.getKey());
+        }
+        if (loaded == null) return false;
+        version = loaded;
+        return true;
+    }
+
+    /**
+     * Отправляет на сервер элементы, изменённые без связи с ним, и просит сервер сохранить коллекцию в файл.
+     * Передаются только изменённые элементы, остальная коллекция уже есть на сервере.
+     *
+     * @return ответ сервера
+     */
+    public Response saveCollection() {
+        Response rejected = uploadChanges();
+        if (rejected != null) return rejected;
+        Response response = orUnreachable(call(new Request("save", "")));
+        if (response.isSuccess()) lastSaveTime = LocalDateTime.now();
+        return response;
+    }
+
+    /**
+     * Отправляет на сервер по одному элементу с каждым запомненным ключом или удаляет его на сервере.
+     *
+     * @return null, если все изменения приняты, иначе ответ с ошибкой
+     */
+    private Response uploadChanges() {
+        Iterator<Integer> keys = dirtyKeys.iterator();
+        while (keys.hasNext()) {
+            Integer key = keys.next();
+            HumanBeing humanBeing = collection.get(key);
+            Response response = call(humanBeing != null
+                    ? new Request("put", humanBeing)
+                    : new Request("remove_key", String.valueOf(key)));
+            if (response == null) return unreachable();
+            // Удаление уже отсутствующего на сервере элемента ошибкой не считается
+            if (humanBeing != null && !response.isSuccess()) return response;
+            keys.remove();
+        }
+        return null;
     }
 
     /**
@@ -148,9 +632,28 @@ public class CollectionManager {
         if (collection.isEmpty()) return "Коллекция пуста!";
 
         StringBuilder info = new StringBuilder();
-        for (HumanBeing humanBeing : collection.values()) {
+        for (HumanBeing humanBeing : collection) {
             info.append(humanBeing).append("\n");
         }
         return info.toString().trim();
     }
-}
\ No newline at end of file
+
+    /**
+     * Изменение одного элемента, ожидающее ответа сервера.
+     */
+    private static class PendingChange {
+        private final Request request;
+        private final Integer key;
+        private final HumanBeing previous;
+        private final boolean keepOffline;
+        private CompletableFuture<Response> response;
+        private int sequence = -1;
+
+        PendingChange(Request request, Integer key, HumanBeing previous, boolean keepOffline) {
+            this.request = request;
+            this.key = key;
+            this.previous = previous;
+            this.keepOffline = keepOffline;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package client.managers;
+
+import client.storage.CollectionStorage;
+import common.HumanBeing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Запросы к локальной копии коллекции {@link HumanBeing} по произвольному условию.
+ * <p>
+ * Коллекции больше {@link #PARALLEL_THRESHOLD} элементов просматриваются задачами {@link ForkJoinPool}:
+ * элементы хранилища делятся на части через его {@link Spliterator}, каждая часть обходится
+ * в своём потоке, результаты склеиваются в порядке ключей. Меньшие коллекции просматриваются последовательно,
+ * потому что на них деление дороже самого обхода.
+ * </p>
+ * Во время запроса коллекция не должна изменяться.
+ */
+public class CollectionQuery {
+    /**
+     * Размер коллекции, начиная с которого запрос выполняется параллельно.
+     */
+    public static final int PARALLEL_THRESHOLD = 50_000;
+    // Часть коллекции, которая дальше не делится
+    private static final int GRAIN = 8_192;
+
+    private final CollectionStorage collection;
+
+    /**
+     * @param collection коллекция, к которой выполняются запросы
+     */
+    public CollectionQuery(CollectionStorage collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * @param predicate условие отбора
+     * @return элементы, удовлетворяющие условию, в порядке ключей
+     */
+    public List<HumanBeing> filter(Predicate<? super HumanBeing> predicate) {
+        return collect(predicate, humanBeing -> humanBeing);
+    }
+
+    /**
+     * @param predicate условие отбора
+     * @return ключи элементов, удовлетворяющих условию, по возрастанию
+     */
+    public List<Integer> keys(Predicate<? super HumanBeing> predicate) {
+        return collect(predicate, HumanBeing::getId);
+    }
+
+    /**
+     * Отбирает элементы по условию и преобразует каждый отобранный элемент.
+     *
+     * @param predicate условие отбора
+     * @param mapper    преобразование отобранного элемента
+     * @return результаты преобразования в порядке ключей
+     */
+    public <R> List<R> collect(Predicate<? super HumanBeing> predicate, Function<? super HumanBeing, ? extends R> mapper) {
+        Spliterator<HumanBeing> all = collection.spliterator();
+        if (collection.size() < PARALLEL_THRESHOLD) return collectPart(all, predicate, mapper);
+        return ForkJoinPool.commonPool().invoke(new CollectTask<>(all, predicate, mapper));
+    }
+
+    /**
+     * @param predicate условие отбора
+     * @return количество элементов, удовлетворяющих условию
+     */
+    public long count(Predicate<? super HumanBeing> predicate) {
+        Spliterator<HumanBeing> all = collection.spliterator();
+        if (collection.size() < PARALLEL_THRESHOLD) return countPart(all, predicate);
+        return ForkJoinPool.commonPool().invoke(new CountTask(all, predicate));
+    }
+
+    private static <R> List<R> collectPart(Spliterator<HumanBeing> part, Predicate<? super HumanBeing> predicate,
+                                           Function<? super HumanBeing, ? extends R> mapper) {
+        List<R> result = new ArrayList<>();
+        part.forEachRemaining(humanBeing -> {
+            if (predicate.test(humanBeing)) result.add(mapper.apply(humanBeing));
+        });
+        return result;
+    }
+
+    private static long countPart(Spliterator<HumanBeing> part, Predicate<? super HumanBeing> predicate) {
+        long[] count = new long[1];
+        part.forEachRemaining(humanBeing -> {
+            if (predicate.test(humanBeing)) count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Отбирает элементы части коллекции: отделяет от неё начало, отдаёт его другой задаче,
+     * а оставшийся конец обрабатывает сама.
+     */
+    // ForkJoinTask сериализуем только формально: задачи живут внутри одного запроса и не сериализуются
+    @SuppressWarnings("serial")
+    private static class CollectTask<R> extends RecursiveTask<List<R>> {
+        private final Spliterator<HumanBeing> part;
+        private final Predicate<? super HumanBeing> predicate;
+        private final Function<? super HumanBeing, ? extends R> mapper;
+
+        CollectTask(Spliterator<HumanBeing> part, Predicate<? super HumanBeing> predicate,
+                    Function<? super HumanBeing, ? extends R> mapper) {
+            this.part = part;
+            this.predicate = predicate;
+            this.mapper = mapper;
+        }
+
+        @Override
+        protected List<R> compute() {
+            Spliterator<HumanBeing> prefix = part.estimateSize() > GRAIN ? part.trySplit() : null;
+            if (prefix == null) return collectPart(part, predicate, mapper);
+            CollectTask<R> head = new CollectTask<R>(prefix, predicate, mapper);
+            head.fork();
+            List<R> tail = new CollectTask<R>(part, predicate, mapper).compute();
+            List<R> result = head.join();
+            result.addAll(tail);
+            return result;
+        }
+    }
+
+    // ForkJoinTask сериализуем только формально: задачи живут внутри одного запроса и не сериализуются
+    @SuppressWarnings("serial")
+    private static class CountTask extends RecursiveTask<Long> {
+        private final Spliterator<HumanBeing> part;
+        private final Predicate<? super HumanBeing> predicate;
+
+        CountTask(Spliterator<HumanBeing> part, Predicate<? super HumanBeing> predicate) {
+            this.part = part;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected Long compute() {
+            Spliterator<HumanBeing> prefix = part.estimateSize() > GRAIN ? part.trySplit() : null;
+            if (prefix == null) return countPart(part, predicate);
+            CountTask head = new CountTask(prefix, predicate);
+            head.fork();
+            long tail = new CountTask(part, predicate).compute();
+            return head.join() + tail;
+        }
+    }
+}
@@ -1,30 +1,27 @@
 package client.managers;
 
 import client.server.Client;
+import client.storage.CollectionStorage;
 import common.utility.Console;
-import common.Car;
-import common.Coordinates;
 import common.HumanBeing;
-import common.WeaponType;
+import common.utility.XmlCollectionReader;
+import common.utility.XmlCollectionWriter;
 import common.serverUtils.Request;
 import common.serverUtils.Response;
-import org.dom4j.Document;
-import org.dom4j.DocumentHelper;
-import org.dom4j.Element;
-import org.dom4j.io.OutputFormat;
-import org.dom4j.io.SAXReader;
-import org.dom4j.io.XMLWriter;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.time.LocalDate;
-import java.util.Map;
-import java.util.Objects;
 import java.util.TreeMap;
 
 /**
  * Класс-менеджер для чтения и записи коллекции {@link HumanBeing} в XML-файл.
- * Позволяет сериализовать коллекцию в XML и десериализовать её обратно, используя Dom4j.
+ * Сериализует коллекцию потоковым writer-ом {@link XmlCollectionWriter} и разбирает её обратно
+ * потоковым StAX-разборщиком {@link XmlCollectionReader}.
  */
 public class DumpManager {
     private final Console console;
@@ -42,53 +39,19 @@ public class DumpManager {
     }
 
     /**
-     * Записывает коллекцию {@link HumanBeing} в XML-строку и отправляет на сервер.
-     * Формирует XML-документ, сериализует все элементы коллекции и отправляет на сервер.
+     * Отправляет коллекцию {@link HumanBeing} на сервер в виде XML-дампа.
+     * XML формируется потоково и пишется прямо во фрагменты сетевого сообщения,
+     * поэтому дамп целиком не собирается в памяти ни как дерево, ни как строка.
      * В случае ошибки выводит сообщение в консоль.
      *
      * @param collection коллекция для сохранения
      */
     public void writeCollection(TreeMap<Integer, HumanBeing> collection) {
         try {
-            // Сериализация коллекции в XML-строку
-            Document document = DocumentHelper.createDocument();
-            Element rootElement = document.addElement("humanBeings");
-
-            for (Map.Entry<Integer, HumanBeing> entry : collection.entrySet()) {
-                HumanBeing humanBeing = entry.getValue();
-                Element humanElement = rootElement.addElement("humanBeing").addAttribute("id", String.valueOf(entry.getKey()));
-
-                humanElement.addElement("name").setText(humanBeing.getName());
-
-                Element coordinates = humanElement.addElement("coordinates");
-                coordinates.addElement("x").setText(String.valueOf(humanBeing.getCoordinates().getX()));
-                coordinates.addElement("y").setText(humanBeing.getCoordinates().getY() != null ? String.valueOf(humanBeing.getCoordinates().getY()) : "");
-
-                humanElement.addElement("creationDate").setText(humanBeing.getCreationDate().toString());
-                humanElement.addElement("realHero").setText(humanBeing.getRealHero() != null ? String.valueOf(humanBeing.getRealHero()) : "");
-                humanElement.addElement("hasToothpick").setText(humanBeing.getHasToothpick() != null ? String.valueOf(humanBeing.getHasToothpick()) : "");
-                humanElement.addElement("impactSpeed").setText(String.valueOf(humanBeing.getImpactSpeed()));
-                humanElement.addElement("soundtrackName").setText(String.valueOf(humanBeing.getSoundtrackName()));
-                humanElement.addElement("minutesOfWaiting").setText(humanBeing.getMinutesOfWaiting() != null ? String.valueOf(humanBeing.getMinutesOfWaiting()) : "");
-                humanElement.addElement("weaponType").setText(String.valueOf(humanBeing.getWeaponType()));
-
-                Element carElement = humanElement.addElement("car");
-                carElement.addElement("name").setText(humanBeing.getCar() != null ? String.valueOf(humanBeing.getCar()) : "");
-            }
-
-            OutputFormat format = OutputFormat.createPrettyPrint();
-            format.setEncoding("UTF-8");
-            StringWriter stringWriter = new StringWriter();
-            XMLWriter xmlWriter = new XMLWriter(stringWriter, format);
-            xmlWriter.write(document);
-            xmlWriter.close();
-            String xmlData = stringWriter.toString();
-
-            // Отправка дампа на сервер
-            Request request = new Request("save_dump", xmlData);
-            client.sendRequest(request);
-            // Получение и вывод ответа сервера
-            Response response = client.recieveRequest();
+            // Отправка дампа на сервер: запрос без данных, XML идёт телом того же сообщения
+            Request request = new Request("save_dump", (String) null);
+            // Ожидание и вывод ответа сервера
+            Response response = Client.await(client.sendRequest(request, out -> writeXml(collection, out)));
             if (response != null) {
                 console.println(response.getMessage());
             } else {
@@ -99,78 +62,129 @@ public class DumpManager {
         }
     }
 
+    /**
+     * Потоково записывает коллекцию {@link HumanBeing} компактным XML в кодировке UTF-8.
+     *
+     * @param collection коллекция для сериализации
+     * @param out        поток, в который пишется XML; не закрывается
+     * @throws IOException если не удалось записать XML
+     */
+    public void writeXml(TreeMap<Integer, HumanBeing> collection, OutputStream out) throws IOException {
+        try {
+            new XmlCollectionWriter().write(collection.entrySet(), out);
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Сериализует коллекцию {@link HumanBeing} в XML-строку.
+     *
+     * @param collection коллекция для сериализации
+     * @param pretty     true — с переносами строк и отступами
+     * @return XML-дамп коллекции
+     * @throws IOException если не удалось записать XML
+     */
+    public String toXml(TreeMap<Integer, HumanBeing> collection, boolean pretty) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try {
+            new XmlCollectionWriter(pretty).write(collection.entrySet(), stringWriter);
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Сериализует коллекцию {@link HumanBeing} в компактную XML-строку.
+     *
+     * @param collection коллекция для сериализации
+     * @return XML-дамп коллекции
+     * @throws IOException если не удалось записать XML
+     */
+    public String toXml(TreeMap<Integer, HumanBeing> collection) throws IOException {
+        return toXml(collection, false);
+    }
+
     /**
      * Загружает коллекцию {@link HumanBeing} из XML-дампа, полученного с сервера.
-     * Очищает переданную коллекцию, парсит XML и добавляет элементы в коллекцию.
-     * В случае ошибок парсинга или получения дампа выводит сообщения в консоль.
+     * Когда дамп получен, очищает переданное хранилище, потоково парсит XML и добавляет элементы в хранилище по мере чтения.
+     * Если дамп не получен, хранилище не изменяется. В случае ошибок парсинга или получения дампа выводит сообщения в консоль.
      *
-     * @param collection коллекция для загрузки данных
+     * @param collection хранилище для загрузки данных
+     * @return версия загруженной коллекции на сервере или null, если коллекция не получена
      */
-    public void readCollection(TreeMap<Integer, HumanBeing> collection) {
-        collection.clear();
+    public String readCollection(CollectionStorage collection) {
         try {
             // Отправляем запрос на сервер для получения XML-дампа коллекции
             Request request = new Request("get_dump", "");
-            client.sendRequest(request);
-            Response response = client.recieveRequest();
+            Response response = Client.await(client.sendSlowRequest(request));
             if (response == null) {
                 console.printError("Нет ответа от сервера при получении коллекции!");
-                return;
+                return null;
             }
             String xmlContent = response.getMessage();
-
-            if (xmlContent == null || xmlContent.isEmpty()) {
+            if (response.getBody() == null && (!response.isSuccess() || xmlContent == null || xmlContent.isEmpty())) {
                 console.printError("Коллекция пуста или не получена с сервера!");
-                return;
+                return null;
             }
 
-            SAXReader reader = new SAXReader();
-            Document document = reader.read(new StringReader(xmlContent));
-            Element root = document.getRootElement();
-
-            for (Element humanElement : root.elements("humanBeing")) {
-                try {
-                    int id = Integer.parseInt(humanElement.attributeValue("id"));
-
-                    String name = humanElement.elementText("name");
-                    LocalDate creationDate = LocalDate.parse(humanElement.elementText("creationDate"));
-
-                    Element coordElement = humanElement.element("coordinates");
-                    long x = Long.parseLong(coordElement.elementText("x"));
-                    Float y = !Objects.equals(coordElement.elementText("y"), "") ? Float.parseFloat(coordElement.elementText("y")) : null;
-                    Coordinates coordinates = new Coordinates.Builder().x(x).y(y).build();
-
-                    Boolean realHero = !Objects.equals(humanElement.elementText("realHero"), "") ? Boolean.parseBoolean(humanElement.elementText("realHero")) : null;
-                    Boolean hasToothpick = !Objects.equals(humanElement.elementText("hasToothpick"), "") ? Boolean.parseBoolean(humanElement.elementText("hasToothpick")) : null;
-                    float impactSpeed = Float.parseFloat(humanElement.elementText("impactSpeed"));
-                    String soundtrackName = humanElement.elementText("soundtrackName");
-                    Double minutesOfWaiting = !Objects.equals(humanElement.elementText("minutesOfWaiting"), "") ? Double.parseDouble(humanElement.elementText("minutesOfWaiting")) : null;
-                    WeaponType weaponType = WeaponType.valueOf(humanElement.elementText("weaponType"));
-
-                    Element carElement = humanElement.element("car");
-                    String nameCar = carElement.elementText("name");
-                    Car car = new Car.Builder().name(nameCar).build();
-
-                    HumanBeing human = new HumanBeing.Builder(id, creationDate).name(name)
-                            .coordinates(coordinates)
-                            .realHero(realHero)
-                            .hasToothpick(hasToothpick)
-                            .impactSpeed(impactSpeed)
-                            .soundtrackName(soundtrackName)
-                            .minutesOfWaiting(minutesOfWaiting)
-                            .weaponType(weaponType)
-                            .car(car)
-                            .build();
-
-                    collection.put(id, human);
-                } catch (Exception e) {
-                    console.printError("Ошибка парсинга элемента humanBeing: " + e.getMessage());
-                }
+            // Прежнее содержимое заменяется, только когда дамп уже получен
+            collection.clear();
+            XmlCollectionReader reader = new XmlCollectionReader(collection::put, console::printError);
+            if (response.getBody() != null) {
+                // Дамп пришёл телом сообщения и разбирается прямо из него
+                reader.read(response.getBody());
+            } else {
+                reader.read(new StringReader(xmlContent));
             }
 
             console.println("Коллекция успешно загружена с сервера!");
+            return response.getVersion();
         } catch (Exception e) {
             console.printError("Ошибка при получении или парсинге коллекции: " + e.getMessage());
+            return null;
         }
     }
+
+    /**
+     * Разбирает XML-дамп и добавляет элементы в коллекцию.
+     * Ошибка в одном элементе не прерывает разбор остальных.
+     *
+     * @param xmlContent XML-дамп коллекции
+     * @param collection коллекция для загрузки данных
+     * @throws XMLStreamException если XML-дамп некорректен
+     */
+    public void parseXml(String xmlContent, TreeMap<Integer, HumanBeing> collection) throws XMLStreamException {
+        parseXml(new StringReader(xmlContent), collection);
+    }
+
+    /**
+     * Потоково разбирает XML-дамп из потока байт и добавляет элементы в коллекцию по мере чтения.
+     *
+     * @param xmlContent поток с XML-дампом коллекции в кодировке, указанной в его заголовке
+     * @param collection коллекция для загрузки данных
+     * @throws XMLStreamException если XML-дамп некорректен
+     */
+    public void parseXml(InputStream xmlContent, TreeMap<Integer, HumanBeing> collection) throws XMLStreamException {
+        new XmlCollectionReader(
+                human -> collection.put(human.getId(), human),
+                console::printError
+        ).read(xmlContent);
+    }
+
+    /**
+     * Потоково разбирает XML-дамп и добавляет элементы в коллекцию по мере чтения.
+     * В памяти одновременно находится только один разбираемый элемент.
+     *
+     * @param xmlContent поток с XML-дампом коллекции
+     * @param collection коллекция для загрузки данных
+     * @throws XMLStreamException если XML-дамп некорректен
+     */
+    public void parseXml(Reader xmlContent, TreeMap<Integer, HumanBeing> collection) throws XMLStreamException {
+        new XmlCollectionReader(
+                human -> collection.put(human.getId(), human),
+                console::printError
+        ).read(xmlContent);
+    }
 }
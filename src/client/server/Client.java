@@ -1,57 +1,283 @@
 package client.server;
 
 
+import common.serverUtils.Message;
 import common.serverUtils.Request;
 import common.serverUtils.Response;
+import common.serverUtils.Transport;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.PushbackInputStream;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import static common.serverUtils.Serializer.deserialize;
-import static common.serverUtils.Serializer.serialize;
 
+/**
+ * Клиент сервера коллекции.
+ * <p>
+ * Каждый запрос получает номер, который сервер возвращает в ответе, поэтому одновременно может ожидать ответа
+ * сколько угодно запросов: {@link #sendRequest(Request)} сразу возвращает {@link CompletableFuture}, а ответы
+ * принимает отдельный поток, который ждёт датаграмм на {@link Selector} и завершает ожидание запроса с тем же номером.
+ * Ответ, пришедший после истечения времени ожидания, отбрасывается и не принимается за ответ на другой запрос.
+ * </p>
+ * <p>
+ * Запрос без ответа отправляется повторно с тем же номером через тайм-аут, который подстраивается
+ * под время ответа сервера ({@link RttEstimator}) и удваивается с каждой попыткой; после {@link #MAX_RETRIES}
+ * повторов запрос завершается с {@link TimeoutException}. Повтор изменения сервер узнаёт по номеру и не выполняет
+ * второй раз, а запросы чтения выполняет заново. Поэтому, пока от сервера приходят фрагменты ответа,
+ * сроки ожидания не истекают: иначе большой ответ запрашивался бы повторно, ещё не успев прийти.
+ * </p>
+ */
 public class Client {
-    private static final int TIME_OUT = 3000;
-    private static final int BUFFER_SIZE = 8096;
+    private static final int MAX_RETRIES = 3;
     private static final int SERVER_PORT = 1448;
-    private DatagramChannel channel;
+    private final DatagramChannel channel;
+    private final Transport transport;
+    private final Selector selector;
+    private final InetSocketAddress serverAddress = new InetSocketAddress("localhost", SERVER_PORT);
+    // Номера начинаются со случайного числа, чтобы не совпасть с номерами прежнего клиента с тем же адресом
+    private final AtomicLong requestIds = new AtomicLong(ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE));
+    private final Map<Long, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final RttEstimator rtt = new RttEstimator();
+    // Момент, до которого спит поток приёма, по System.nanoTime()
+    private volatile long wakeAt = Long.MAX_VALUE;
 
     public Client() throws IOException {
+        this(Transport.DEFAULT_MAX_PAYLOAD);
+    }
+
+    public Client(int maxPayload) throws IOException {
         channel = DatagramChannel.open();
         channel.configureBlocking(false);
+        transport = new Transport(channel, maxPayload);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        Thread receiver = new Thread(this::receiveLoop, "Приём ответов");
+        receiver.setDaemon(true);
+        receiver.start();
     }
 
-    public void sendRequest(Request request) throws IOException {
-        if (request == null){
-            return;
+    /**
+     * Отправляет запрос, не дожидаясь ответа.
+     *
+     * @return ответ сервера; завершается с {@link TimeoutException}, если сервер не ответил ни на одну попытку
+     */
+    public CompletableFuture<Response> sendRequest(Request request) throws IOException {
+        return sendRequest(request, null);
+    }
+
+    /**
+     * Отправляет запрос, за которым в том же сообщении следует потоково формируемое тело, не дожидаясь ответа.
+     *
+     * @param body тело сообщения или null
+     */
+    public CompletableFuture<Response> sendRequest(Request request, Transport.Body body) throws IOException {
+        return send(new PendingRequest(request, body, body != null));
+    }
+
+    /**
+     * Отправляет запрос, ответ на который сервер готовит долго или присылает большим сообщением (например, get_dump),
+     * не дожидаясь ответа. Каждая попытка ждёт наибольший тайм-аут: повтор запроса чтения сервер выполнит заново.
+     */
+    public CompletableFuture<Response> sendSlowRequest(Request request) throws IOException {
+        return send(new PendingRequest(request, null, true));
+    }
+
+    private CompletableFuture<Response> send(PendingRequest entry) throws IOException {
+        long requestId = requestIds.incrementAndGet();
+        entry.request.setRequestId(requestId);
+        pending.put(requestId, entry);
+        try {
+            transmit(entry);
+        } catch (IOException e) {
+            pending.remove(requestId);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        if (entry.deadline < wakeAt) selector.wakeup();
+        return entry.response;
+    }
+
+    /**
+     * Отправляет запрос и назначает срок ожидания ответа на эту попытку.
+     * Запрос с телом и медленный запрос отправляются с наибольшим тайм-аутом: сервер обрабатывает их заметно дольше обычного.
+     */
+    private void transmit(PendingRequest entry) throws IOException {
+        long timeout = entry.slow ? RttEstimator.MAX_RTO : rtt.timeout(entry.attempts);
+        entry.sentAt = System.nanoTime();
+        entry.deadline = entry.sentAt + timeout;
+        entry.attempts++;
+        if (entry.body != null) {
+            transport.send(entry.request, entry.body, serverAddress);
+        } else {
+            transport.send(entry.request, serverAddress);
+        }
+    }
+
+    /**
+     * Отправляет запрос и ждёт ответа.
+     *
+     * @return ответ сервера или null, если запрос не удалось отправить или сервер не ответил
+     */
+    public Response call(Request request) {
+        try {
+            return await(sendRequest(request));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ждёт ответа на отправленный запрос.
+     *
+     * @return ответ сервера или null, если сервер не ответил ни на одну попытку
+     */
+    public static Response await(CompletableFuture<Response> response) {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @return количество запросов, ожидающих ответа
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Принимает ответы, пока открыт канал. Поток спит на селекторе, пока нет датаграмм, до ближайшего тайм-аута
+     * запроса, но не дольше {@link Transport#SWEEP_INTERVAL} мс, чтобы вовремя запросить недостающие фрагменты.
+     */
+    private void receiveLoop() {
+        while (channel.isOpen()) {
+            try {
+                long next = retransmitExpired();
+                wakeAt = next;
+                long wait = TimeUnit.NANOSECONDS.toMillis(next - System.nanoTime());
+                if (wait > 0) {
+                    selector.select(wait);
+                } else {
+                    selector.selectNow();
+                }
+                selector.selectedKeys().clear();
+                transport.drain(this::dispatch);
+                transport.sweep();
+            } catch (IOException e) {
+                // Ошибка одной датаграммы не должна останавливать приём остальных
+            }
         }
-        ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-        InetSocketAddress inetSocketAddress = new InetSocketAddress("localhost", SERVER_PORT);
-        byteBuffer.clear();
-        byteBuffer = ByteBuffer.wrap(serialize(request));
-        channel.send(byteBuffer, inetSocketAddress);
-        byteBuffer.clear();
-    }
-
-    public Response recieveRequest() throws IOException, ClassNotFoundException {
-        ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-        long startTime = System.currentTimeMillis();
-        Response response = null;
-        while (System.currentTimeMillis() - startTime < TIME_OUT) {
-            InetSocketAddress inetSocketAddress = (InetSocketAddress) channel.receive(byteBuffer);
-            if (inetSocketAddress == null){
-                continue;
+    }
+
+    /**
+     * Повторяет запросы, срок ожидания которых истёк, и завершает исчерпавшие попытки.
+     *
+     * @return ближайший срок ожидания по {@link System#nanoTime()}
+     */
+    private long retransmitExpired() {
+        long now = System.nanoTime();
+        long next = now + TimeUnit.MILLISECONDS.toNanos(Transport.SWEEP_INTERVAL);
+        // Какому запросу отвечает собираемое сообщение, станет известно только после сборки, поэтому ждут все
+        boolean receiving = transport.isReceiving(serverAddress);
+        for (Map.Entry<Long, PendingRequest> item : pending.entrySet()) {
+            PendingRequest entry = item.getValue();
+            if (entry.deadline - now <= 0) {
+                if (receiving) {
+                    // Срок переносится без новой попытки
+                    entry.deadline = now + rtt.getRto();
+                } else if (entry.attempts > MAX_RETRIES) {
+                    pending.remove(item.getKey(), entry);
+                    entry.response.completeExceptionally(new TimeoutException("Сервер не ответил на запрос"));
+                    continue;
+                } else {
+                    try {
+                        transmit(entry);
+                    } catch (IOException e) {
+                        pending.remove(item.getKey(), entry);
+                        entry.response.completeExceptionally(e);
+                        continue;
+                    }
+                }
             }
-            Object object = deserialize(byteBuffer.array());
-            if (object instanceof Response) {
-                response = (Response) object;
+            next = Math.min(next, entry.deadline);
+        }
+        return next;
+    }
+
+    /**
+     * Передаёт ответ тому, кто ждёт запрос с тем же номером.
+     */
+    private void dispatch(Message message) {
+        try {
+            Object object = deserialize(message.getBody());
+            if (!(object instanceof Response)) return;
+            Response response = (Response) object;
+            PendingRequest waiting = pending.remove(response.getRequestId());
+            if (waiting == null) return;
+            if (waiting.attempts == 1) rtt.sample(System.nanoTime() - waiting.sentAt);
+            attachBody(response, message);
+            waiting.response.complete(response);
+        } catch (IOException | ClassNotFoundException e) {
+            // Повреждённый ответ отбрасывается: запрос завершится по истечении времени ожидания
+        } finally {
+            message.release();
+        }
+    }
+
+    /**
+     * Оставляет ответу тело, пришедшее вслед за ним в том же сообщении.
+     * Тело однофрагментного сообщения лежит в буфере пула и копируется, многофрагментного — передаётся как есть.
+     */
+    private static void attachBody(Response response, Message message) throws IOException {
+        if (!message.isPooled()) {
+            PushbackInputStream body = new PushbackInputStream(message.getBody(), 1);
+            int first = body.read();
+            if (first >= 0) {
+                body.unread(first);
+                response.setBody(body);
             }
-            byteBuffer.clear();
-            return response;
+            return;
+        }
+        byte[] rest = message.getBody().readAllBytes();
+        if (rest.length > 0) {
+            response.setBody(new ByteArrayInputStream(rest));
+        }
+    }
+
+    /**
+     * Запрос, ожидающий ответа. Поля попытки меняет отправивший поток, затем только поток приёма.
+     */
+    private static class PendingRequest {
+        private final Request request;
+        private final Transport.Body body;
+        private final boolean slow;
+        private final CompletableFuture<Response> response = new CompletableFuture<>();
+        private volatile long sentAt;
+        private volatile long deadline = Long.MAX_VALUE;
+        private volatile int attempts;
+
+        PendingRequest(Request request, Transport.Body body, boolean slow) {
+            this.request = request;
+            this.body = body;
+            this.slow = slow;
         }
-        return new Response("Ошибка : ответа от сервера не последовало");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,51 @@
+package client.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оценка времени ответа сервера и тайм-аута повторной отправки запроса, как в TCP (RFC 6298):
+ * сглаженное время ответа SRTT и его разброс RTTVAR обновляются по каждому измерению,
+ * а тайм-аут равен SRTT + 4·RTTVAR в пределах от {@link #MIN_RTO} до {@link #MAX_RTO}.
+ * Обновляется одним потоком, читается любыми.
+ */
+class RttEstimator {
+    static final long INITIAL_RTO = TimeUnit.MILLISECONDS.toNanos(500);
+    static final long MIN_RTO = TimeUnit.MILLISECONDS.toNanos(100);
+    static final long MAX_RTO = TimeUnit.SECONDS.toNanos(2);
+
+    private long srtt = -1;
+    private long rttvar;
+    private volatile long rto = INITIAL_RTO;
+
+    /**
+     * Учитывает время ответа на запрос, отправленный один раз: по ответу на повторённый запрос
+     * нельзя понять, на какую из отправок он пришёл (алгоритм Карна).
+     *
+     * @param rtt время от отправки до ответа в наносекундах
+     */
+    void sample(long rtt) {
+        if (srtt < 0) {
+            srtt = rtt;
+            rttvar = rtt / 2;
+        } else {
+            rttvar = (3 * rttvar + Math.abs(srtt - rtt)) / 4;
+            srtt = (7 * srtt + rtt) / 8;
+        }
+        rto = Math.min(MAX_RTO, Math.max(MIN_RTO, srtt + 4 * rttvar));
+    }
+
+    /**
+     * @param attempt номер отправки, начиная с 0
+     * @return тайм-аут отправки: текущий тайм-аут, удвоенный за каждую неудачную попытку, но не больше {@link #MAX_RTO}
+     */
+    long timeout(int attempt) {
+        return Math.min(MAX_RTO, rto << Math.min(attempt, 16));
+    }
+
+    /**
+     * @return текущий тайм-аут в наносекундах
+     */
+    long getRto() {
+        return rto;
+    }
+}
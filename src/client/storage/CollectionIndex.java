@@ -0,0 +1,98 @@
+package client.storage;
+
+import common.HumanBeing;
+import common.WeaponType;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Вторичные индексы {@link TreeMapStorage}.
+ * Обновляются при каждом изменении хранилища, поэтому запросы по имени машины,
+ * типу оружия и статистике impactSpeed и minutesOfWaiting не просматривают всю коллекцию.
+ */
+class CollectionIndex {
+    // Имя машины -> элементы с этой машиной в порядке ключей
+    private final TreeMap<String, TreeMap<Integer, HumanBeing>> byCar = new TreeMap<>();
+    private final EnumMap<WeaponType, Integer> weaponTypes = new EnumMap<>(WeaponType.class);
+    private final RunningStatistics impactSpeed = new RunningStatistics();
+    private final RunningStatistics minutesOfWaiting = new RunningStatistics();
+
+    /**
+     * Добавляет элемент в индексы.
+     *
+     * @param humanBeing элемент, появившийся в коллекции
+     */
+    void add(HumanBeing humanBeing) {
+        if (humanBeing.getCar() != null) {
+            byCar.computeIfAbsent(humanBeing.getCar().getName(), name -> new TreeMap<>())
+                    .put(humanBeing.getId(), humanBeing);
+        }
+        if (humanBeing.getWeaponType() != null) weaponTypes.merge(humanBeing.getWeaponType(), 1, Integer::sum);
+        impactSpeed.add(humanBeing.getImpactSpeed());
+        if (humanBeing.getMinutesOfWaiting() != null) minutesOfWaiting.add(humanBeing.getMinutesOfWaiting());
+    }
+
+    /**
+     * Убирает элемент из индексов.
+     *
+     * @param humanBeing элемент, удалённый из коллекции или заменённый другим
+     */
+    void remove(HumanBeing humanBeing) {
+        if (humanBeing.getCar() != null) {
+            TreeMap<Integer, HumanBeing> sameCar = byCar.get(humanBeing.getCar().getName());
+            if (sameCar != null) {
+                sameCar.remove(humanBeing.getId());
+                if (sameCar.isEmpty()) byCar.remove(humanBeing.getCar().getName());
+            }
+        }
+        if (humanBeing.getWeaponType() != null) {
+            weaponTypes.computeIfPresent(humanBeing.getWeaponType(), (type, count) -> count == 1 ? null : count - 1);
+        }
+        impactSpeed.remove(humanBeing.getImpactSpeed());
+        if (humanBeing.getMinutesOfWaiting() != null) minutesOfWaiting.remove(humanBeing.getMinutesOfWaiting());
+    }
+
+    /**
+     * Очищает индексы.
+     */
+    void clear() {
+        byCar.clear();
+        weaponTypes.clear();
+        impactSpeed.clear();
+        minutesOfWaiting.clear();
+    }
+
+    /**
+     * Возвращает элементы, имя машины которых меньше заданного, упорядоченные по имени машины и ключу.
+     * Выполняется за O(log n + k), где k — размер результата.
+     *
+     * @param carName имя машины для сравнения
+     * @return подходящие элементы
+     */
+    List<HumanBeing> lessThanCar(String carName) {
+        List<HumanBeing> result = new ArrayList<>();
+        for (TreeMap<Integer, HumanBeing> sameCar : byCar.headMap(carName, false).values()) {
+            result.addAll(sameCar.values());
+        }
+        return result;
+    }
+
+    /**
+     * @return количество элементов с каждым типом оружия
+     */
+    Map<WeaponType, Integer> weaponTypeCounts() {
+        return new EnumMap<>(weaponTypes);
+    }
+
+    FieldStatistics impactSpeedStatistics() {
+        return impactSpeed.snapshot();
+    }
+
+    FieldStatistics minutesOfWaitingStatistics() {
+        return minutesOfWaiting.snapshot();
+    }
+}
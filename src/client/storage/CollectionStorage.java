@@ -0,0 +1,135 @@
+package client.storage;
+
+import common.HumanBeing;
+import common.WeaponType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+
+/**
+ * Хранилище локальной копии коллекции {@link HumanBeing}, на котором работает менеджер коллекции.
+ * Элементы упорядочены по ключу, равному id элемента.
+ * <p>
+ * Реализации различаются представлением элементов в памяти: {@link TreeMapStorage} хранит объекты,
+ * {@link ColumnarStorage} — поля всех элементов в массивах примитивов, собирая объекты только при чтении,
+ * {@link OffHeapStorage} — записи фиксированной длины вне кучи, при необходимости в отображённом файле.
+ * Помимо доступа по ключу хранилище отвечает на запросы, которые менеджер не должен выполнять полным обходом объектов:
+ * фильтр по имени машины, количество элементов каждого типа оружия и статистику числовых полей.
+ * </p>
+ */
+public interface CollectionStorage extends Iterable<HumanBeing>, AutoCloseable {
+
+    /**
+     * Создаёт хранилище по названию, заданному опцией --storage=.
+     *
+     * @param name treemap, columnar, offheap или offheap:файл для хранилища вне кучи в отображённом файле
+     * @return новое пустое хранилище или null, если название неизвестно
+     * @throws UncheckedIOException если не удалось открыть файл хранилища
+     */
+    static CollectionStorage create(String name) {
+        if (name.startsWith("offheap:")) {
+            try {
+                return new OffHeapStorage(Path.of(name.substring("offheap:".length())));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        switch (name) {
+            case "treemap":
+                return new TreeMapStorage();
+            case "columnar":
+                return new ColumnarStorage();
+            case "offheap":
+                return new OffHeapStorage();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return элемент с заданным ключом или null
+     */
+    HumanBeing get(int key);
+
+    boolean containsKey(int key);
+
+    /**
+     * Добавляет элемент или заменяет элемент с тем же ключом.
+     */
+    void put(HumanBeing humanBeing);
+
+    /**
+     * @return true, если элемент с таким ключом существовал и удалён
+     */
+    boolean remove(int key);
+
+    /**
+     * Удаляет элементы с ключами больше заданного.
+     *
+     * @return количество удалённых элементов
+     */
+    int removeGreater(int key);
+
+    /**
+     * Удаляет элементы с ключами меньше заданного.
+     *
+     * @return количество удалённых элементов
+     */
+    int removeLower(int key);
+
+    void clear();
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return наибольший ключ или 0, если хранилище пусто
+     */
+    int lastKey();
+
+    /**
+     * @return обход элементов по возрастанию ключей; изменять хранилище во время обхода нельзя
+     */
+    @Override
+    Iterator<HumanBeing> iterator();
+
+    /**
+     * @return делимый пополам обход элементов по возрастанию ключей для параллельных запросов
+     */
+    @Override
+    Spliterator<HumanBeing> spliterator();
+
+    /**
+     * @return элементы, имя машины которых меньше заданного
+     */
+    List<HumanBeing> lessThanCar(String carName);
+
+    /**
+     * @return количество элементов с каждым типом оружия
+     */
+    Map<WeaponType, Integer> weaponTypeCounts();
+
+    FieldStatistics impactSpeedStatistics();
+
+    /**
+     * @return статистика заданных значений поля minutesOfWaiting
+     */
+    FieldStatistics minutesOfWaitingStatistics();
+
+    /**
+     * Освобождает ресурсы хранилища вне кучи; после закрытия хранилищем пользоваться нельзя.
+     *
+     * @throws UncheckedIOException если не удалось закрыть или удалить файлы хранилища
+     */
+    @Override
+    default void close() {
+    }
+}
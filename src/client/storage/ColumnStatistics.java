@@ -0,0 +1,70 @@
+package client.storage;
+
+import common.utility.CompensatedSum;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Статистика поля для хранилищ с колонками примитивов. Количество и сумма поддерживаются при каждом изменении;
+ * минимум и максимум тоже, но удаление крайнего значения делает их устаревшими,
+ * и тогда они пересчитываются одним последовательным проходом по колонке при следующем запросе.
+ */
+class ColumnStatistics {
+    private final CompensatedSum sum = new CompensatedSum();
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private boolean stale;
+
+    void add(double value) {
+        sum.add(value);
+        if (count++ == 0) {
+            min = value;
+            max = value;
+        } else if (!stale) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+    }
+
+    void remove(double value) {
+        if (--count == 0) {
+            clear();
+            return;
+        }
+        sum.add(-value);
+        if (value <= min || value >= max) stale = true;
+    }
+
+    void clear() {
+        sum.clear();
+        count = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+        stale = false;
+    }
+
+    /**
+     * @param column обход всех текущих значений поля, нужен только если минимум и максимум устарели
+     */
+    FieldStatistics snapshot(Column column) {
+        if (stale) {
+            double[] extremes = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            column.forEach(value -> {
+                if (value < extremes[0]) extremes[0] = value;
+                if (value > extremes[1]) extremes[1] = value;
+            });
+            min = extremes[0];
+            max = extremes[1];
+            stale = false;
+        }
+        return new FieldStatistics(count, count == 0 ? 0 : sum.get(), min, max);
+    }
+
+    /**
+     * Обход значений одного поля всех элементов хранилища.
+     */
+    interface Column {
+        void forEach(DoubleConsumer action);
+    }
+}
@@ -0,0 +1,337 @@
+package client.storage;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+/**
+ * Колоночное хранилище: каждое поле всех элементов лежит в своём массиве примитивов,
+ * строка i всех массивов — один элемент. Строки закодированы словарями {@link StringDictionary},
+ * отсутствие необязательных значений отмечено битовыми масками, ключ ищется через {@link IntIndex}.
+ * <p>
+ * Элемент занимает несколько десятков байт вместо сотен для графа объектов {@link HumanBeing} в TreeMap,
+ * а подсчёты по полю читают один плотный массив. Объекты {@link HumanBeing} собираются только при чтении элемента,
+ * например для вывода. Удалённая строка замещается последней, поэтому массивы остаются плотными;
+ * порядок ключей для обхода вычисляется сортировкой при первом обходе после изменения.
+ * </p>
+ */
+public class ColumnarStorage implements CollectionStorage {
+    private static final WeaponType[] WEAPON_TYPES = WeaponType.values();
+
+    private final IntIndex rows = new IntIndex(false);
+    private final StringDictionary texts = new StringDictionary();
+    private final StringDictionary carNames = new StringDictionary();
+    private int size;
+
+    private int[] ids = new int[16];
+    private int[] names = new int[16];
+    private long[] xs = new long[16];
+    private float[] ys = new float[16];
+    private int[] creationDays = new int[16];
+    private float[] impactSpeeds = new float[16];
+    private int[] soundtracks = new int[16];
+    private double[] minutes = new double[16];
+    private byte[] weaponTypes = new byte[16];
+    private int[] cars = new int[16];
+
+    private final BitSet hasCoordinates = new BitSet();
+    private final BitSet hasY = new BitSet();
+    private final BitSet hasRealHero = new BitSet();
+    private final BitSet realHero = new BitSet();
+    private final BitSet hasToothpick = new BitSet();
+    private final BitSet toothpick = new BitSet();
+    private final BitSet hasMinutes = new BitSet();
+    private final BitSet hasCar = new BitSet();
+    private final BitSet[] flags = {hasCoordinates, hasY, hasRealHero, realHero, hasToothpick, toothpick, hasMinutes, hasCar};
+
+    private final int[] weaponTypeCounts = new int[WEAPON_TYPES.length];
+    private final ColumnStatistics impactSpeedStatistics = new ColumnStatistics();
+    private final ColumnStatistics minutesStatistics = new ColumnStatistics();
+
+    // Номера строк по возрастанию ключей; пересчитываются после изменения состава ключей
+    private int[] order = new int[0];
+    private boolean orderValid = true;
+
+    @Override
+    public HumanBeing get(int key) {
+        int row = rows.get(key);
+        return row < 0 ? null : materialize(row);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return rows.get(key) >= 0;
+    }
+
+    @Override
+    public void put(HumanBeing humanBeing) {
+        int row = rows.get(humanBeing.getId());
+        if (row < 0) {
+            ensureCapacity(size + 1);
+            row = size++;
+            ids[row] = humanBeing.getId();
+            rows.put(humanBeing.getId(), row);
+            orderValid = false;
+        } else {
+            release(row);
+        }
+        write(row, humanBeing);
+    }
+
+    @Override
+    public boolean remove(int key) {
+        int row = rows.get(key);
+        if (row < 0) return false;
+        removeRow(row);
+        return true;
+    }
+
+    @Override
+    public int removeGreater(int key) {
+        int count = 0;
+        // Обход с конца: на место удалённой строки встаёт последняя, уже проверенная
+        for (int row = size - 1; row >= 0; row--) {
+            if (ids[row] > key) {
+                removeRow(row);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int removeLower(int key) {
+        int count = 0;
+        for (int row = size - 1; row >= 0; row--) {
+            if (ids[row] < key) {
+                removeRow(row);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        rows.clear();
+        texts.clear();
+        carNames.clear();
+        for (BitSet bits : flags) {
+            bits.clear();
+        }
+        Arrays.fill(weaponTypeCounts, 0);
+        impactSpeedStatistics.clear();
+        minutesStatistics.clear();
+        order = new int[0];
+        orderValid = true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int lastKey() {
+        int last = 0;
+        for (int row = 0; row < size; row++) {
+            if (ids[row] > last) last = ids[row];
+        }
+        return last;
+    }
+
+    @Override
+    public Iterator<HumanBeing> iterator() {
+        int[] sorted = sortedRows();
+        return new Iterator<>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public HumanBeing next() {
+                if (position >= size) throw new NoSuchElementException();
+                return materialize(sorted[position++]);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<HumanBeing> spliterator() {
+        return new RowSpliterator(sortedRows(), 0, size, this::materialize);
+    }
+
+    @Override
+    public List<HumanBeing> lessThanCar(String carName) {
+        // Каждое различное имя машины сравнивается один раз, затем просматривается колонка кодов
+        boolean[] less = new boolean[carNames.capacity()];
+        for (int code = 0; code < less.length; code++) {
+            String name = carNames.get(code);
+            less[code] = name != null && name.compareTo(carName) < 0;
+        }
+        List<HumanBeing> result = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            int code = cars[row];
+            if (hasCar.get(row) && code != StringDictionary.NULL && less[code]) result.add(materialize(row));
+        }
+        result.sort(Comparator.comparing((HumanBeing h) -> h.getCar().getName()).thenComparing(HumanBeing::getId));
+        return result;
+    }
+
+    @Override
+    public Map<WeaponType, Integer> weaponTypeCounts() {
+        Map<WeaponType, Integer> counts = new EnumMap<>(WeaponType.class);
+        for (int i = 0; i < WEAPON_TYPES.length; i++) {
+            if (weaponTypeCounts[i] > 0) counts.put(WEAPON_TYPES[i], weaponTypeCounts[i]);
+        }
+        return counts;
+    }
+
+    @Override
+    public FieldStatistics impactSpeedStatistics() {
+        return impactSpeedStatistics.snapshot(action -> {
+            for (int row = 0; row < size; row++) action.accept(impactSpeeds[row]);
+        });
+    }
+
+    @Override
+    public FieldStatistics minutesOfWaitingStatistics() {
+        return minutesStatistics.snapshot(action -> {
+            for (int row = hasMinutes.nextSetBit(0); row >= 0 && row < size; row = hasMinutes.nextSetBit(row + 1)) {
+                action.accept(minutes[row]);
+            }
+        });
+    }
+
+    private void write(int row, HumanBeing humanBeing) {
+        names[row] = texts.acquire(humanBeing.getName());
+        Coordinates coordinates = humanBeing.getCoordinates();
+        hasCoordinates.set(row, coordinates != null);
+        hasY.set(row, coordinates != null && coordinates.getY() != null);
+        xs[row] = coordinates != null ? coordinates.getX() : 0;
+        ys[row] = coordinates != null && coordinates.getY() != null ? coordinates.getY() : 0;
+        creationDays[row] = (int) humanBeing.getCreationDate().toEpochDay();
+        hasRealHero.set(row, humanBeing.getRealHero() != null);
+        realHero.set(row, Boolean.TRUE.equals(humanBeing.getRealHero()));
+        hasToothpick.set(row, humanBeing.getHasToothpick() != null);
+        toothpick.set(row, Boolean.TRUE.equals(humanBeing.getHasToothpick()));
+        impactSpeeds[row] = humanBeing.getImpactSpeed();
+        soundtracks[row] = texts.acquire(humanBeing.getSoundtrackName());
+        hasMinutes.set(row, humanBeing.getMinutesOfWaiting() != null);
+        minutes[row] = humanBeing.getMinutesOfWaiting() != null ? humanBeing.getMinutesOfWaiting() : 0;
+        WeaponType weaponType = humanBeing.getWeaponType();
+        weaponTypes[row] = (byte) (weaponType == null ? 0 : weaponType.ordinal() + 1);
+        hasCar.set(row, humanBeing.getCar() != null);
+        cars[row] = humanBeing.getCar() != null ? carNames.acquire(humanBeing.getCar().getName()) : StringDictionary.NULL;
+
+        if (weaponType != null) weaponTypeCounts[weaponType.ordinal()]++;
+        impactSpeedStatistics.add(impactSpeeds[row]);
+        if (hasMinutes.get(row)) minutesStatistics.add(minutes[row]);
+    }
+
+    /**
+     * Снимает вклад строки в словари, гистограмму и статистику перед её перезаписью или удалением.
+     */
+    private void release(int row) {
+        texts.release(names[row]);
+        texts.release(soundtracks[row]);
+        carNames.release(cars[row]);
+        if (weaponTypes[row] != 0) weaponTypeCounts[weaponTypes[row] - 1]--;
+        impactSpeedStatistics.remove(impactSpeeds[row]);
+        if (hasMinutes.get(row)) minutesStatistics.remove(minutes[row]);
+    }
+
+    private void removeRow(int row) {
+        release(row);
+        rows.remove(ids[row]);
+        int last = --size;
+        if (row != last) {
+            copyRow(last, row);
+            rows.put(ids[row], row);
+        }
+        for (BitSet bits : flags) {
+            bits.clear(last);
+        }
+        orderValid = false;
+    }
+
+    private void copyRow(int from, int to) {
+        ids[to] = ids[from];
+        names[to] = names[from];
+        xs[to] = xs[from];
+        ys[to] = ys[from];
+        creationDays[to] = creationDays[from];
+        impactSpeeds[to] = impactSpeeds[from];
+        soundtracks[to] = soundtracks[from];
+        minutes[to] = minutes[from];
+        weaponTypes[to] = weaponTypes[from];
+        cars[to] = cars[from];
+        for (BitSet bits : flags) {
+            bits.set(to, bits.get(from));
+        }
+    }
+
+    private HumanBeing materialize(int row) {
+        Coordinates coordinates = hasCoordinates.get(row)
+                ? new Coordinates.Builder().x(xs[row]).y(hasY.get(row) ? ys[row] : null).build()
+                : null;
+        return new HumanBeing.Builder(ids[row], LocalDate.ofEpochDay(creationDays[row]))
+                .name(texts.get(names[row]))
+                .coordinates(coordinates)
+                .realHero(hasRealHero.get(row) ? realHero.get(row) : null)
+                .hasToothpick(hasToothpick.get(row) ? toothpick.get(row) : null)
+                .impactSpeed(impactSpeeds[row])
+                .soundtrackName(texts.get(soundtracks[row]))
+                .minutesOfWaiting(hasMinutes.get(row) ? minutes[row] : null)
+                .weaponType(weaponTypes[row] == 0 ? null : WEAPON_TYPES[weaponTypes[row] - 1])
+                .car(hasCar.get(row) ? new Car.Builder().name(carNames.get(cars[row])).build() : null)
+                .build();
+    }
+
+    /**
+     * @return номера строк по возрастанию ключей
+     */
+    private int[] sortedRows() {
+        if (orderValid && order.length == size) return order;
+        // Ключ в старших 32 битах, номер строки в младших: сортировка примитивов без компаратора
+        long[] packed = new long[size];
+        for (int row = 0; row < size; row++) packed[row] = (long) ids[row] << 32 | row;
+        Arrays.sort(packed);
+        order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = (int) packed[i];
+        orderValid = true;
+        return order;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) return;
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        creationDays = Arrays.copyOf(creationDays, newCapacity);
+        impactSpeeds = Arrays.copyOf(impactSpeeds, newCapacity);
+        soundtracks = Arrays.copyOf(soundtracks, newCapacity);
+        minutes = Arrays.copyOf(minutes, newCapacity);
+        weaponTypes = Arrays.copyOf(weaponTypes, newCapacity);
+        cars = Arrays.copyOf(cars, newCapacity);
+    }
+}
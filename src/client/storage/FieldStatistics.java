@@ -0,0 +1,61 @@
+package client.storage;
+
+/**
+ * Статистика одного числового поля коллекции на момент запроса:
+ * количество значений, сумма, минимум, максимум и среднее.
+ * Хранилища поддерживают её при каждом изменении, поэтому получение статистики не требует обхода коллекции.
+ */
+public class FieldStatistics {
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+
+    /**
+     * @param count количество значений
+     * @param sum   сумма значений
+     * @param min   наименьшее значение или NaN, если значений нет
+     * @param max   наибольшее значение или NaN, если значений нет
+     */
+    public FieldStatistics(long count, double sum, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return количество значений
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return сумма значений
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return наименьшее значение или NaN, если значений нет
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return наибольшее значение или NaN, если значений нет
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return среднее значение или NaN, если значений нет
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+}
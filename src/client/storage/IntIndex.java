@@ -0,0 +1,112 @@
+package client.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Индекс «ключ — номер строки» с открытой адресацией и линейным пробированием.
+ * Пары хранятся подряд в одном {@link IntBuffer} без объектов-обёрток; таблица заполняется не более чем наполовину.
+ * Удаление сдвигает следующие записи цепочки назад, поэтому «надгробий» нет и поиск не замедляется со временем.
+ * Ключи должны быть положительными: 0 обозначает пустую ячейку.
+ */
+class IntIndex {
+    private static final int EMPTY = 0;
+    private static final int NOT_FOUND = -1;
+
+    private final boolean direct;
+    private IntBuffer table;
+    private int mask;
+    private int shift;
+    private int size;
+
+    /**
+     * @param direct true — хранить таблицу вне кучи, в {@link ByteBuffer#allocateDirect}
+     */
+    IntIndex(boolean direct) {
+        this.direct = direct;
+        allocate(16);
+    }
+
+    /**
+     * @return номер строки по ключу или -1, если ключа нет
+     */
+    int get(int key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int current = table.get(slot * 2);
+            if (current == key) return table.get(slot * 2 + 1);
+            if (current == EMPTY) return NOT_FOUND;
+        }
+    }
+
+    void put(int key, int row) {
+        if ((size + 1) * 2 > mask + 1) resize();
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int current = table.get(slot * 2);
+            if (current == key) {
+                table.put(slot * 2 + 1, row);
+                return;
+            }
+            if (current == EMPTY) {
+                table.put(slot * 2, key);
+                table.put(slot * 2 + 1, row);
+                size++;
+                return;
+            }
+        }
+    }
+
+    void remove(int key) {
+        int slot = slot(key);
+        while (true) {
+            int current = table.get(slot * 2);
+            if (current == EMPTY) return;
+            if (current == key) break;
+            slot = (slot + 1) & mask;
+        }
+        // Сдвигаем назад записи, которые без удалённой оказались бы недостижимы
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            int current = table.get(next * 2);
+            if (current == EMPTY) break;
+            int home = slot(current);
+            boolean reachable = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (reachable) continue;
+            table.put(hole * 2, current);
+            table.put(hole * 2 + 1, table.get(next * 2 + 1));
+            hole = next;
+        }
+        table.put(hole * 2, EMPTY);
+        size--;
+    }
+
+    void clear() {
+        allocate(16);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(int key) {
+        // Фибоначчиево хеширование: старшие биты произведения равномерно распределены даже для подряд идущих ключей
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    private void resize() {
+        IntBuffer old = table;
+        int oldCapacity = mask + 1;
+        allocate(oldCapacity * 2);
+        size = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int key = old.get(slot * 2);
+            if (key != EMPTY) put(key, old.get(slot * 2 + 1));
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = direct ? ByteBuffer.allocateDirect(capacity * 2 * Integer.BYTES).asIntBuffer() : IntBuffer.allocate(capacity * 2);
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+}
@@ -0,0 +1,87 @@
+package client.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Растущая область памяти вне кучи: {@link ByteBuffer#allocateDirect} или отображённый в память файл.
+ * Данные в области не видны сборщику мусора; для файла их страницы может выгружать сама операционная система.
+ * Размер области ограничен 2 ГБ, как и у любого {@link ByteBuffer}.
+ */
+class OffHeapBuffer {
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+
+    /**
+     * Создаёт область в памяти процесса.
+     */
+    OffHeapBuffer(int capacity) {
+        this.file = null;
+        this.channel = null;
+        this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Создаёт область, отображённую на файл. Прежнее содержимое файла удаляется.
+     *
+     * @throws IOException если файл не удалось открыть или отобразить
+     */
+    OffHeapBuffer(Path file, int capacity) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return текущий буфер области; после {@link #ensureCapacity} его нужно запрашивать заново
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Увеличивает область так, чтобы в ней помещалось не меньше заданного числа байт, сохраняя содержимое.
+     *
+     * @throws IllegalStateException если область больше 2 ГБ не помещается в {@link ByteBuffer}
+     * @throws UncheckedIOException  если не удалось расширить файл
+     */
+    void ensureCapacity(long capacity) {
+        if (capacity <= buffer.capacity()) return;
+        if (capacity > MAX_CAPACITY) throw new IllegalStateException("Хранилище вне кучи переполнено");
+        int newCapacity = (int) Math.min(MAX_CAPACITY, Math.max(capacity, buffer.capacity() + (long) (buffer.capacity() >> 1)));
+        if (channel != null) {
+            // Файл дорастает до нового размера сам, прежние страницы остаются на месте
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity).order(ByteOrder.nativeOrder());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(newCapacity).order(ByteOrder.nativeOrder());
+        grown.put(buffer.clear());
+        buffer = grown.clear();
+    }
+
+    /**
+     * Закрывает файл области и удаляет его: данные в нём нужны только пока открыто хранилище.
+     * Область в памяти процесса освобождает сборщик мусора.
+     *
+     * @throws IOException если файл не удалось закрыть или удалить
+     */
+    void close() throws IOException {
+        if (channel == null) return;
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,391 @@
+package client.storage;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+/**
+ * Хранилище вне кучи для коллекций, которые не помещаются в кучу или нагружают сборщик мусора.
+ * Каждый элемент — запись фиксированной длины {@link #RECORD_SIZE} в {@link OffHeapBuffer},
+ * строки name, soundtrackName и имя машины лежат в отдельной арене {@link StringArena},
+ * индекс «ключ — номер записи» {@link IntIndex} тоже находится вне кучи.
+ * <p>
+ * Области могут быть отображены на файлы: тогда их страницы выгружает и подгружает операционная система,
+ * а занятая процессом память не растёт вместе с коллекцией. Файлы служат только местом под данные:
+ * они перезаписываются при создании хранилища и удаляются при его закрытии.
+ * Удалённая запись замещается последней, поэтому записи лежат плотно.
+ * </p>
+ * В куче остаются гистограмма типов оружия, статистика полей и порядок записей по ключу для обхода.
+ */
+public class OffHeapStorage implements CollectionStorage {
+    private static final WeaponType[] WEAPON_TYPES = WeaponType.values();
+
+    // Раскладка записи: смещения полей в байтах
+    private static final int ID = 0;
+    private static final int CREATION_DAY = 4;
+    private static final int X = 8;
+    private static final int MINUTES = 16;
+    private static final int Y = 24;
+    private static final int IMPACT_SPEED = 28;
+    private static final int NAME = 32;
+    private static final int SOUNDTRACK = 36;
+    private static final int CAR = 40;
+    private static final int FLAGS = 44;
+    private static final int WEAPON_TYPE = 45;
+    private static final int RECORD_SIZE = 48;
+
+    // Биты байта FLAGS
+    private static final int HAS_COORDINATES = 1;
+    private static final int HAS_Y = 1 << 1;
+    private static final int HAS_REAL_HERO = 1 << 2;
+    private static final int REAL_HERO = 1 << 3;
+    private static final int HAS_TOOTHPICK = 1 << 4;
+    private static final int TOOTHPICK = 1 << 5;
+    private static final int HAS_MINUTES = 1 << 6;
+    private static final int HAS_CAR = 1 << 7;
+
+    private static final int INITIAL_RECORDS = 1024;
+    private static final int INITIAL_STRINGS = 64 * 1024;
+
+    private final OffHeapBuffer records;
+    private final StringArena strings;
+    private final IntIndex rows = new IntIndex(true);
+    private int size;
+
+    private final int[] weaponTypeCounts = new int[WEAPON_TYPES.length];
+    private final ColumnStatistics impactSpeedStatistics = new ColumnStatistics();
+    private final ColumnStatistics minutesStatistics = new ColumnStatistics();
+
+    // Номера записей по возрастанию ключей; пересчитываются после изменения состава ключей
+    private int[] order = new int[0];
+    private boolean orderValid = true;
+
+    /**
+     * Создаёт хранилище в памяти процесса вне кучи.
+     */
+    public OffHeapStorage() {
+        records = new OffHeapBuffer(INITIAL_RECORDS * RECORD_SIZE);
+        strings = new StringArena(new OffHeapBuffer(INITIAL_STRINGS));
+    }
+
+    /**
+     * Создаёт хранилище в отображённых в память файлах: записи в заданном файле, строки — в файле с суффиксом .strings.
+     *
+     * @param file файл под записи элементов
+     * @throws IOException если файлы не удалось открыть
+     */
+    public OffHeapStorage(Path file) throws IOException {
+        records = new OffHeapBuffer(file, INITIAL_RECORDS * RECORD_SIZE);
+        strings = new StringArena(new OffHeapBuffer(file.resolveSibling(file.getFileName() + ".strings"), INITIAL_STRINGS));
+    }
+
+    @Override
+    public HumanBeing get(int key) {
+        int row = rows.get(key);
+        return row < 0 ? null : materialize(row);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return rows.get(key) >= 0;
+    }
+
+    @Override
+    public void put(HumanBeing humanBeing) {
+        int row = rows.get(humanBeing.getId());
+        if (row < 0) {
+            records.ensureCapacity((long) (size + 1) * RECORD_SIZE);
+            row = size++;
+            rows.put(humanBeing.getId(), row);
+            orderValid = false;
+        } else {
+            release(row);
+        }
+        write(row, humanBeing);
+        compactIfNeeded();
+    }
+
+    @Override
+    public boolean remove(int key) {
+        int row = rows.get(key);
+        if (row < 0) return false;
+        removeRow(row);
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public int removeGreater(int key) {
+        int count = 0;
+        // Обход с конца: на место удалённой записи встаёт последняя, уже проверенная
+        for (int row = size - 1; row >= 0; row--) {
+            if (id(row) > key) {
+                removeRow(row);
+                count++;
+            }
+        }
+        compactIfNeeded();
+        return count;
+    }
+
+    @Override
+    public int removeLower(int key) {
+        int count = 0;
+        for (int row = size - 1; row >= 0; row--) {
+            if (id(row) < key) {
+                removeRow(row);
+                count++;
+            }
+        }
+        compactIfNeeded();
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        rows.clear();
+        strings.clear();
+        Arrays.fill(weaponTypeCounts, 0);
+        impactSpeedStatistics.clear();
+        minutesStatistics.clear();
+        order = new int[0];
+        orderValid = true;
+    }
+
+    /**
+     * Закрывает и удаляет файлы хранилища, если оно отображено на файлы.
+     *
+     * @throws UncheckedIOException если файлы не удалось закрыть или удалить
+     */
+    @Override
+    public void close() {
+        try {
+            try {
+                records.close();
+            } finally {
+                strings.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int lastKey() {
+        int last = 0;
+        for (int row = 0; row < size; row++) {
+            last = Math.max(last, id(row));
+        }
+        return last;
+    }
+
+    @Override
+    public Iterator<HumanBeing> iterator() {
+        int[] sorted = sortedRows();
+        return new Iterator<>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public HumanBeing next() {
+                if (position >= size) throw new NoSuchElementException();
+                return materialize(sorted[position++]);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<HumanBeing> spliterator() {
+        return new RowSpliterator(sortedRows(), 0, size, this::materialize);
+    }
+
+    @Override
+    public List<HumanBeing> lessThanCar(String carName) {
+        ByteBuffer buffer = records.buffer();
+        List<HumanBeing> result = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            int base = row * RECORD_SIZE;
+            if ((buffer.get(base + FLAGS) & HAS_CAR) == 0) continue;
+            String name = strings.get(buffer.getInt(base + CAR));
+            if (name != null && name.compareTo(carName) < 0) result.add(materialize(row));
+        }
+        result.sort(Comparator.comparing((HumanBeing h) -> h.getCar().getName()).thenComparing(HumanBeing::getId));
+        return result;
+    }
+
+    @Override
+    public Map<WeaponType, Integer> weaponTypeCounts() {
+        Map<WeaponType, Integer> counts = new EnumMap<>(WeaponType.class);
+        for (int i = 0; i < WEAPON_TYPES.length; i++) {
+            if (weaponTypeCounts[i] > 0) counts.put(WEAPON_TYPES[i], weaponTypeCounts[i]);
+        }
+        return counts;
+    }
+
+    @Override
+    public FieldStatistics impactSpeedStatistics() {
+        return impactSpeedStatistics.snapshot(action -> {
+            ByteBuffer buffer = records.buffer();
+            for (int row = 0; row < size; row++) action.accept(buffer.getFloat(row * RECORD_SIZE + IMPACT_SPEED));
+        });
+    }
+
+    @Override
+    public FieldStatistics minutesOfWaitingStatistics() {
+        return minutesStatistics.snapshot(action -> {
+            ByteBuffer buffer = records.buffer();
+            for (int row = 0; row < size; row++) {
+                int base = row * RECORD_SIZE;
+                if ((buffer.get(base + FLAGS) & HAS_MINUTES) != 0) action.accept(buffer.getDouble(base + MINUTES));
+            }
+        });
+    }
+
+    private int id(int row) {
+        return records.buffer().getInt(row * RECORD_SIZE + ID);
+    }
+
+    private void write(int row, HumanBeing humanBeing) {
+        ByteBuffer buffer = records.buffer();
+        int base = row * RECORD_SIZE;
+        Coordinates coordinates = humanBeing.getCoordinates();
+        int flags = 0;
+        if (coordinates != null) flags |= HAS_COORDINATES;
+        if (coordinates != null && coordinates.getY() != null) flags |= HAS_Y;
+        if (humanBeing.getRealHero() != null) flags |= HAS_REAL_HERO;
+        if (Boolean.TRUE.equals(humanBeing.getRealHero())) flags |= REAL_HERO;
+        if (humanBeing.getHasToothpick() != null) flags |= HAS_TOOTHPICK;
+        if (Boolean.TRUE.equals(humanBeing.getHasToothpick())) flags |= TOOTHPICK;
+        if (humanBeing.getMinutesOfWaiting() != null) flags |= HAS_MINUTES;
+        if (humanBeing.getCar() != null) flags |= HAS_CAR;
+        WeaponType weaponType = humanBeing.getWeaponType();
+
+        buffer.putInt(base + ID, humanBeing.getId());
+        buffer.putInt(base + CREATION_DAY, (int) humanBeing.getCreationDate().toEpochDay());
+        buffer.putLong(base + X, coordinates != null ? coordinates.getX() : 0);
+        buffer.putDouble(base + MINUTES, humanBeing.getMinutesOfWaiting() != null ? humanBeing.getMinutesOfWaiting() : 0);
+        buffer.putFloat(base + Y, (flags & HAS_Y) != 0 ? coordinates.getY() : 0);
+        buffer.putFloat(base + IMPACT_SPEED, humanBeing.getImpactSpeed());
+        buffer.putInt(base + NAME, strings.add(humanBeing.getName()));
+        buffer.putInt(base + SOUNDTRACK, strings.add(humanBeing.getSoundtrackName()));
+        buffer.putInt(base + CAR, humanBeing.getCar() != null ? strings.add(humanBeing.getCar().getName()) : StringArena.NULL);
+        buffer.put(base + FLAGS, (byte) flags);
+        buffer.put(base + WEAPON_TYPE, (byte) (weaponType == null ? 0 : weaponType.ordinal() + 1));
+
+        if (weaponType != null) weaponTypeCounts[weaponType.ordinal()]++;
+        impactSpeedStatistics.add(humanBeing.getImpactSpeed());
+        if ((flags & HAS_MINUTES) != 0) minutesStatistics.add(humanBeing.getMinutesOfWaiting());
+    }
+
+    /**
+     * Снимает вклад записи в арену строк, гистограмму и статистику перед её перезаписью или удалением.
+     */
+    private void release(int row) {
+        ByteBuffer buffer = records.buffer();
+        int base = row * RECORD_SIZE;
+        strings.release(buffer.getInt(base + NAME));
+        strings.release(buffer.getInt(base + SOUNDTRACK));
+        strings.release(buffer.getInt(base + CAR));
+        byte weaponType = buffer.get(base + WEAPON_TYPE);
+        if (weaponType != 0) weaponTypeCounts[weaponType - 1]--;
+        impactSpeedStatistics.remove(buffer.getFloat(base + IMPACT_SPEED));
+        if ((buffer.get(base + FLAGS) & HAS_MINUTES) != 0) minutesStatistics.remove(buffer.getDouble(base + MINUTES));
+    }
+
+    private void removeRow(int row) {
+        release(row);
+        rows.remove(id(row));
+        int last = --size;
+        if (row != last) {
+            ByteBuffer buffer = records.buffer();
+            buffer.put(row * RECORD_SIZE, buffer, last * RECORD_SIZE, RECORD_SIZE);
+            rows.put(id(row), row);
+        }
+        orderValid = false;
+    }
+
+    /**
+     * Сжимает арену строк, когда освобождённых записей в ней больше живых: после удалений, как и после перезаписи.
+     */
+    private void compactIfNeeded() {
+        if (strings.needsCompaction()) compactStrings();
+    }
+
+    /**
+     * Переписывает живые строки в начало арены и обновляет их смещения в записях.
+     */
+    private void compactStrings() {
+        ByteBuffer buffer = records.buffer();
+        ByteBuffer target = strings.startCompaction();
+        for (int row = 0; row < size; row++) {
+            int base = row * RECORD_SIZE;
+            buffer.putInt(base + NAME, strings.move(buffer.getInt(base + NAME), target));
+            buffer.putInt(base + SOUNDTRACK, strings.move(buffer.getInt(base + SOUNDTRACK), target));
+            buffer.putInt(base + CAR, strings.move(buffer.getInt(base + CAR), target));
+        }
+        strings.finishCompaction(target);
+    }
+
+    private HumanBeing materialize(int row) {
+        ByteBuffer buffer = records.buffer();
+        int base = row * RECORD_SIZE;
+        int flags = buffer.get(base + FLAGS);
+        byte weaponType = buffer.get(base + WEAPON_TYPE);
+        Coordinates coordinates = (flags & HAS_COORDINATES) != 0
+                ? new Coordinates.Builder().x(buffer.getLong(base + X))
+                        .y((flags & HAS_Y) != 0 ? buffer.getFloat(base + Y) : null).build()
+                : null;
+        return new HumanBeing.Builder(buffer.getInt(base + ID), LocalDate.ofEpochDay(buffer.getInt(base + CREATION_DAY)))
+                .name(strings.get(buffer.getInt(base + NAME)))
+                .coordinates(coordinates)
+                .realHero((flags & HAS_REAL_HERO) != 0 ? (flags & REAL_HERO) != 0 : null)
+                .hasToothpick((flags & HAS_TOOTHPICK) != 0 ? (flags & TOOTHPICK) != 0 : null)
+                .impactSpeed(buffer.getFloat(base + IMPACT_SPEED))
+                .soundtrackName(strings.get(buffer.getInt(base + SOUNDTRACK)))
+                .minutesOfWaiting((flags & HAS_MINUTES) != 0 ? buffer.getDouble(base + MINUTES) : null)
+                .weaponType(weaponType == 0 ? null : WEAPON_TYPES[weaponType - 1])
+                .car((flags & HAS_CAR) != 0 ? new Car.Builder().name(strings.get(buffer.getInt(base + CAR))).build() : null)
+                .build();
+    }
+
+    /**
+     * @return номера записей по возрастанию ключей
+     */
+    private int[] sortedRows() {
+        if (orderValid && order.length == size) return order;
+        // Ключ в старших 32 битах, номер записи в младших: сортировка примитивов без компаратора
+        long[] packed = new long[size];
+        for (int row = 0; row < size; row++) packed[row] = (long) id(row) << 32 | row;
+        Arrays.sort(packed);
+        order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = (int) packed[i];
+        orderValid = true;
+        return order;
+    }
+}
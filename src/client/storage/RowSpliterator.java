@@ -0,0 +1,55 @@
+package client.storage;
+
+import common.HumanBeing;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Обход части упорядоченных по ключу строк хранилища, делящийся пополам для {@link java.util.concurrent.ForkJoinPool}.
+ * Объект {@link HumanBeing} собирается из строки только в момент, когда до неё дошёл обход.
+ */
+class RowSpliterator implements Spliterator<HumanBeing> {
+    private final int[] sorted;
+    private final IntFunction<HumanBeing> materializer;
+    private int from;
+    private final int to;
+
+    /**
+     * @param sorted       номера строк по возрастанию ключей
+     * @param materializer сборка элемента по номеру строки
+     */
+    RowSpliterator(int[] sorted, int from, int to, IntFunction<HumanBeing> materializer) {
+        this.sorted = sorted;
+        this.materializer = materializer;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super HumanBeing> action) {
+        if (from >= to) return false;
+        action.accept(materializer.apply(sorted[from++]));
+        return true;
+    }
+
+    @Override
+    public Spliterator<HumanBeing> trySplit() {
+        int middle = (from + to) >>> 1;
+        if (middle <= from) return null;
+        Spliterator<HumanBeing> prefix = new RowSpliterator(sorted, from, middle, materializer);
+        from = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - from;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
@@ -0,0 +1,41 @@
+package client.storage;
+
+import common.utility.CompensatedSum;
+
+import java.util.TreeMap;
+
+/**
+ * Точная статистика поля для хранилища из объектов: минимум и максимум берутся из счётчиков значений,
+ * упорядоченных по величине, и остаются верными после удалений без повторного обхода коллекции.
+ */
+class RunningStatistics {
+    private final TreeMap<Double, Integer> values = new TreeMap<>();
+    private final CompensatedSum sum = new CompensatedSum();
+    private long count;
+
+    void add(double value) {
+        values.merge(value, 1, Integer::sum);
+        count++;
+        sum.add(value);
+    }
+
+    void remove(double value) {
+        Integer occurrences = values.get(value);
+        if (occurrences == null) return;
+        if (occurrences == 1) values.remove(value);
+        else values.put(value, occurrences - 1);
+        if (--count == 0) sum.clear();
+        else sum.add(-value);
+    }
+
+    void clear() {
+        values.clear();
+        count = 0;
+        sum.clear();
+    }
+
+    FieldStatistics snapshot() {
+        if (count == 0) return new FieldStatistics(0, 0, Double.NaN, Double.NaN);
+        return new FieldStatistics(count, sum.get(), values.firstKey(), values.lastKey());
+    }
+}
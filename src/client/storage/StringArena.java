@@ -0,0 +1,107 @@
+package client.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Строки хранилища вне кучи: записи «длина, байты UTF-8» дописываются подряд в {@link OffHeapBuffer},
+ * строка обозначается смещением своей записи, null — смещением -1.
+ * Освобождённые записи только учитываются; когда их становится больше живых,
+ * хранилище переписывает живые строки заново через {@link #startCompaction}, {@link #move} и {@link #finishCompaction}.
+ */
+class StringArena {
+    static final int NULL = -1;
+    // Сжатие не запускается ради нескольких освобождённых записей
+    private static final int MIN_GARBAGE = 1 << 20;
+
+    private final OffHeapBuffer data;
+    private int end;
+    private long garbage;
+
+    StringArena(OffHeapBuffer data) {
+        this.data = data;
+    }
+
+    /**
+     * @return смещение новой записи строки
+     */
+    int add(String value) {
+        if (value == null) return NULL;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int offset = end;
+        data.ensureCapacity((long) end + Integer.BYTES + bytes.length);
+        ByteBuffer buffer = data.buffer();
+        buffer.putInt(offset, bytes.length);
+        buffer.put(offset + Integer.BYTES, bytes);
+        end = offset + Integer.BYTES + bytes.length;
+        return offset;
+    }
+
+    String get(int offset) {
+        if (offset == NULL) return null;
+        ByteBuffer buffer = data.buffer();
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Отмечает запись как неиспользуемую.
+     */
+    void release(int offset) {
+        if (offset == NULL) return;
+        garbage += Integer.BYTES + data.buffer().getInt(offset);
+    }
+
+    /**
+     * @return true, если неиспользуемых записей больше, чем живых, и их объём заметен
+     */
+    boolean needsCompaction() {
+        return garbage > MIN_GARBAGE && garbage * 2 > end;
+    }
+
+    /**
+     * Начинает сжатие: живые записи переносятся во временную область вызовами {@link #move},
+     * после чего {@link #finishCompaction} возвращает их в начало арены.
+     *
+     * @return временная область под живые записи
+     */
+    ByteBuffer startCompaction() {
+        return ByteBuffer.allocateDirect((int) (end - garbage));
+    }
+
+    /**
+     * Переносит запись во временную область.
+     *
+     * @return новое смещение записи
+     */
+    int move(int offset, ByteBuffer target) {
+        if (offset == NULL) return NULL;
+        ByteBuffer buffer = data.buffer();
+        int length = Integer.BYTES + buffer.getInt(offset);
+        int moved = target.position();
+        target.put(buffer.slice(offset, length));
+        return moved;
+    }
+
+    void finishCompaction(ByteBuffer target) {
+        data.buffer().put(0, target, 0, target.position());
+        end = target.position();
+        garbage = 0;
+    }
+
+    void clear() {
+        end = 0;
+        garbage = 0;
+    }
+
+    /**
+     * Освобождает область арены.
+     *
+     * @throws IOException если не удалось закрыть или удалить файл области
+     */
+    void close() throws IOException {
+        data.close();
+    }
+}
@@ -0,0 +1,72 @@
+package client.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Словарь строк для колоночного хранилища: каждая различная строка хранится один раз,
+ * а в колонке лежит её целочисленный код. Код null — -1.
+ * Словарь считает ссылки на каждую строку и освобождает код, когда строка больше нигде не используется.
+ */
+class StringDictionary {
+    static final int NULL = -1;
+
+    private final HashMap<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private int[] references = new int[16];
+    private int[] free = new int[16];
+    private int freeCount;
+
+    /**
+     * Возвращает код строки, добавляя её в словарь при необходимости, и увеличивает число ссылок на неё.
+     */
+    int acquire(String value) {
+        if (value == null) return NULL;
+        Integer code = codes.get(value);
+        if (code == null) {
+            if (freeCount > 0) {
+                code = free[--freeCount];
+                values.set(code, value);
+            } else {
+                code = values.size();
+                values.add(value);
+                if (code == references.length) references = Arrays.copyOf(references, code * 2);
+            }
+            codes.put(value, code);
+        }
+        references[code]++;
+        return code;
+    }
+
+    /**
+     * Уменьшает число ссылок на строку и удаляет её из словаря, если ссылок не осталось.
+     */
+    void release(int code) {
+        if (code == NULL) return;
+        if (--references[code] > 0) return;
+        codes.remove(values.get(code));
+        values.set(code, null);
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = code;
+    }
+
+    String get(int code) {
+        return code == NULL ? null : values.get(code);
+    }
+
+    /**
+     * @return верхняя граница кодов: все действующие коды меньше неё
+     */
+    int capacity() {
+        return values.size();
+    }
+
+    void clear() {
+        codes.clear();
+        values.clear();
+        references = new int[16];
+        freeCount = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package client.storage;
+
+import common.HumanBeing;
+import common.WeaponType;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.TreeMap;
+
+/**
+ * Хранилище по умолчанию: элементы-объекты в {@link TreeMap} и вторичные индексы {@link CollectionIndex}
+ * по имени машины, типу оружия и числовым полям, обновляемые при каждом изменении.
+ */
+public class TreeMapStorage implements CollectionStorage {
+    private final TreeMap<Integer, HumanBeing> collection = new TreeMap<>();
+    private final CollectionIndex index = new CollectionIndex();
+
+    @Override
+    public HumanBeing get(int key) {
+        return collection.get(key);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return collection.containsKey(key);
+    }
+
+    @Override
+    public void put(HumanBeing humanBeing) {
+        HumanBeing old = collection.put(humanBeing.getId(), humanBeing);
+        if (old != null) index.remove(old);
+        index.add(humanBeing);
+    }
+
+    @Override
+    public boolean remove(int key) {
+        HumanBeing old = collection.remove(key);
+        if (old == null) return false;
+        index.remove(old);
+        return true;
+    }
+
+    @Override
+    public int removeGreater(int key) {
+        return removeRange(collection.tailMap(key, false));
+    }
+
+    @Override
+    public int removeLower(int key) {
+        return removeRange(collection.headMap(key, false));
+    }
+
+    private int removeRange(SortedMap<Integer, HumanBeing> range) {
+        int count = range.size();
+        for (HumanBeing humanBeing : range.values()) index.remove(humanBeing);
+        range.clear();
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        collection.clear();
+        index.clear();
+    }
+
+    @Override
+    public int size() {
+        return collection.size();
+    }
+
+    @Override
+    public int lastKey() {
+        return collection.isEmpty() ? 0 : collection.lastKey();
+    }
+
+    @Override
+    public Iterator<HumanBeing> iterator() {
+        return Collections.unmodifiableCollection(collection.values()).iterator();
+    }
+
+    @Override
+    public Spliterator<HumanBeing> spliterator() {
+        return collection.values().spliterator();
+    }
+
+    @Override
+    public List<HumanBeing> lessThanCar(String carName) {
+        return index.lessThanCar(carName);
+    }
+
+    @Override
+    public Map<WeaponType, Integer> weaponTypeCounts() {
+        return index.weaponTypeCounts();
+    }
+
+    @Override
+    public FieldStatistics impactSpeedStatistics() {
+        return index.impactSpeedStatistics();
+    }
+
+    @Override
+    public FieldStatistics minutesOfWaitingStatistics() {
+        return index.minutesOfWaitingStatistics();
+    }
+}
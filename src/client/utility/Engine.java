@@ -5,21 +5,32 @@ import client.managers.CollectionManager;
 import client.managers.CommandManager;
 import client.managers.DumpManager;
 import client.server.Client;
+import client.storage.CollectionStorage;
+import client.storage.TreeMapStorage;
 import common.utility.Console;
 import common.utility.StandartConsole;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class Engine {
-    public void run() throws IOException {
+    /**
+     * Запускает клиент.
+     *
+     * @param args аргументы командной строки: --storage=treemap|columnar|offheap|offheap:файл
+     *             выбирает хранилище локальной копии коллекции
+     */
+    public void run(String[] args) throws IOException {
         Console console = new StandartConsole();
 
         var localClient = new Client();
         var dumpManager = new DumpManager(console, localClient);
-        var collectionManager = new CollectionManager(dumpManager);
-        if (!collectionManager.loadCollection()) {
-            System.exit(1);
-        }
+        CollectionStorage storage = parseStorageOption(args, console);
+        // Файлы хранилища вне кучи удаляются при любом завершении клиента, в том числе по Ctrl+C
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeStorage(storage, console), "Закрытие хранилища"));
+        var collectionManager = new CollectionManager(dumpManager, localClient, storage);
+        // Без связи с сервером клиент всё равно запускается: изменения накопятся локально до save
+        collectionManager.loadCollection();
 
         var commandManager = new CommandManager() {{
             register("help", new Help(console, this));
@@ -38,11 +49,40 @@ public class Engine {
             register("remove_lower", new RemoveLower(console, collectionManager));
             register("replace_if_greater", new ReplaceIfGreater(console, collectionManager));
             register("sum_of_impact_speed", new SumOfImpactSpeed(console, collectionManager));
+            register("stats", new Stats(console, collectionManager));  // additional command
             register("filter_less_than_car", new FilterLessThanCar(console, collectionManager));
             register("print_field_descending_weapon_type", new PrintFieldDescendingWeaponType(console, collectionManager));
         }};
         commandManager.register("show_command_history", new ShowCommandHistory(console, commandManager));  // additional command
 
-        new Runner(console, commandManager).interactiveMode();
+        new Runner(console, commandManager, collectionManager).interactiveMode();
+    }
+
+    /**
+     * Определяет хранилище локальной копии коллекции по опции --storage=.
+     *
+     * @return выбранное хранилище, по умолчанию {@link TreeMapStorage}
+     */
+    private static CollectionStorage parseStorageOption(String[] args, Console console) {
+        for (String arg : args) {
+            if (arg.startsWith("--storage=")) {
+                try {
+                    CollectionStorage storage = CollectionStorage.create(arg.substring("--storage=".length()));
+                    if (storage != null) return storage;
+                    console.printError("Неизвестное хранилище " + arg + ", используется treemap");
+                } catch (UncheckedIOException e) {
+                    console.printError("Не удалось открыть файл хранилища: " + e.getCause().getMessage() + ", используется treemap");
+                }
+            }
+        }
+        return new TreeMapStorage();
+    }
+
+    private static void closeStorage(CollectionStorage storage, Console console) {
+        try {
+            storage.close();
+        } catch (UncheckedIOException e) {
+            console.printError("Не удалось удалить файлы хранилища: " + e.getCause().getMessage());
+        }
     }
 }
@@ -1,6 +1,8 @@
 package client.utility;
 
+import client.managers.CollectionManager;
 import client.managers.CommandManager;
+import common.serverUtils.Response;
 import common.utility.Console;
 import common.utility.ExecutionResponse;
 
@@ -8,6 +10,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -16,8 +19,14 @@ import java.util.Scanner;
 /**
  * Класс-обёртка для запуска приложения и обработки пользовательских команд.
  * Позволяет работать в интерактивном режиме, выполнять скрипты, контролировать рекурсию и историю команд.
+ * Изменения коллекции из скрипта отправляются на сервер конвейером и пакетами, не дожидаясь ответа на каждую команду.
  */
 public class Runner {
+    /**
+     * Сколько изменений из скрипта может одновременно ожидать ответа сервера: несколько пакетов по
+     * {@link CollectionManager#BATCH_SIZE} команд.
+     */
+    private static final int SCRIPT_PIPELINE_WINDOW = 4 * CollectionManager.BATCH_SIZE;
     /**
      * Консоль для взаимодействия с пользователем.
      */
@@ -26,6 +35,10 @@ public class Runner {
      * Менеджер команд приложения.
      */
     private final CommandManager commandManager;
+    /**
+     * Менеджер коллекции, отправляющий изменения из скриптов конвейером, или null.
+     */
+    private final CollectionManager collectionManager;
     /**
      * Стек выполняемых скриптов для контроля рекурсии.
      */
@@ -42,8 +55,20 @@ public class Runner {
      * @param commandManager менеджер команд
      */
     public Runner(Console console, CommandManager commandManager) {
+        this(console, commandManager, null);
+    }
+
+    /**
+     * Конструктор Runner с конвейерной отправкой изменений из скриптов.
+     *
+     * @param console           консоль для взаимодействия с пользователем
+     * @param commandManager    менеджер команд
+     * @param collectionManager менеджер коллекции или null, чтобы каждая команда скрипта ждала ответа сервера
+     */
+    public Runner(Console console, CommandManager commandManager, CollectionManager collectionManager) {
         this.console = console;
         this.commandManager = commandManager;
+        this.collectionManager = collectionManager;
     }
 
     /**
@@ -112,17 +137,24 @@ public class Runner {
     /**
      * Запускает выполнение команд из скрипта.
      * Контролирует рекурсию, собирает вывод выполнения и возвращает результат.
+     * Изменения коллекции отправляются конвейером: вместо ответа в вывод сначала ставится место,
+     * куда ответ сервера подставляется по мере получения. Скрипт останавливается на первой команде,
+     * отклонённой сервером, но уже отправленные к этому моменту изменения дожидаются ответов.
      *
      * @param argument имя файла скрипта
      * @return результат выполнения скрипта
      */
     private ExecutionResponse scriptMode(String argument) {
         String[] userCommand;
-        StringBuilder executionOutput = new StringBuilder();
+        List<String> executionOutput = new ArrayList<>();
+        // Команды, ожидающие ответа сервера: строка вывода и номер изменения в конвейере
+        ArrayDeque<int[]> awaiting = new ArrayDeque<>();
 
         if (!new File(argument).exists()) return new ExecutionResponse(false, "Файл не существует!");
         if (!Files.isReadable(Paths.get(argument))) return new ExecutionResponse(false, "Прав для чтения нет!");
 
+        boolean pipelining = collectionManager != null && scriptStack.isEmpty();
+        if (pipelining) collectionManager.setPipelineWindow(SCRIPT_PIPELINE_WINDOW);
         scriptStack.add(argument);
         try (Scanner scriptScanner = new Scanner(new File(argument))) {
 
@@ -137,23 +169,34 @@ public class Runner {
                     userCommand = (console.readln().trim() + " ").split(" ", 2);
                     userCommand[1] = userCommand[1].trim();
                 }
-                executionOutput.append(console.getPrompt()).append(String.join(" ", userCommand)).append("\n");
+                executionOutput.add(console.getPrompt() + String.join(" ", userCommand));
                 var needLaunch = true;
                 if (userCommand[0].equals("execute_script")) {
                     needLaunch = checkRecursion(userCommand[1], scriptScanner);
                 }
 
+                int sequence = collectionManager != null ? collectionManager.getPipelinedCount() : 0;
                 commandStatus = needLaunch ? launchCommand(userCommand) : new ExecutionResponse("Превышена максимальная глубина рекурсии");
-                if (userCommand[0].equals("execute_script")) console.selectFileScanner(scriptScanner);
-                executionOutput.append(commandStatus.getMessage()).append("\n");
+                if (userCommand[0].equals("execute_script")) {
+                    console.selectFileScanner(scriptScanner);
+                } else if (collectionManager != null && collectionManager.getPipelinedCount() > sequence) {
+                    // Команда отправлена без ожидания ответа: её вывод появится, когда ответ придёт
+                    awaiting.add(new int[]{executionOutput.size(), sequence});
+                }
+                executionOutput.add(commandStatus.getMessage());
+                ExecutionResponse rejected = resolvePipelined(executionOutput, awaiting, false);
+                if (rejected != null) commandStatus = rejected;
             } while (commandStatus.getExitCode() && !commandStatus.getMessage().equals("exit") && console.isCanReadln());
 
+            ExecutionResponse rejected = resolvePipelined(executionOutput, awaiting, true);
+            if (rejected != null && commandStatus.getExitCode()) commandStatus = rejected;
+
             console.selectConsoleScanner();
             if (!commandStatus.getExitCode() && !(userCommand[0].equals("execute_script") && !userCommand[1].isEmpty())) {
-                executionOutput.append("Проверьте скрипт на корректность введенных данных!\n");
+                executionOutput.add("Проверьте скрипт на корректность введенных данных!");
             }
 
-            return new ExecutionResponse(commandStatus.getExitCode(), executionOutput.toString());
+            return new ExecutionResponse(commandStatus.getExitCode(), String.join("\n", executionOutput) + "\n");
         } catch (FileNotFoundException exception) {
             return new ExecutionResponse(false, "Файл со скриптом не найден!");
         } catch (NoSuchElementException exception) {
@@ -163,10 +206,37 @@ public class Runner {
             System.exit(0);
         } finally {
             scriptStack.remove(scriptStack.size() - 1);
+            if (pipelining) collectionManager.setPipelineWindow(1);
         }
         return new ExecutionResponse("");
     }
 
+    /**
+     * Подставляет в вывод скрипта ответы сервера на команды, отправленные конвейером, в порядке команд.
+     *
+     * @param executionOutput вывод скрипта по строкам
+     * @param awaiting        команды, ожидающие ответа: строка вывода и номер изменения
+     * @param wait            ждать ли ответов, которые ещё не получены
+     * @return результат первой команды, отклонённой сервером, или null
+     */
+    private ExecutionResponse resolvePipelined(List<String> executionOutput, ArrayDeque<int[]> awaiting, boolean wait) {
+        ExecutionResponse rejected = null;
+        while (!awaiting.isEmpty()) {
+            int[] command = awaiting.peekFirst();
+            Response response = wait
+                    ? collectionManager.takePipelined(command[1])
+                    : collectionManager.pollPipelined(command[1]);
+            if (response == null && !wait) break;
+            awaiting.pollFirst();
+            if (response == null) continue;
+            executionOutput.set(command[0], response.getMessage());
+            if (!response.isSuccess() && rejected == null) {
+                rejected = new ExecutionResponse(false, response.getMessage());
+            }
+        }
+        return rejected;
+    }
+
     /**
      * Выполняет команду по её названию и аргументам.
      * Обрабатывает специальные случаи (execute_script), возвращает результат выполнения.
@@ -2,13 +2,16 @@ package common;
 
 import common.utility.Validatable;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
  * Класс, представляющий автомобиль.
  * Реализует интерфейс Validatable для проверки полей.
  */
-public class Car implements Validatable {
+public class Car implements Validatable, Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String name; //Поле не может быть null
 
     /**
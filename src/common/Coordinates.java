@@ -2,6 +2,7 @@ package common;
 
 import common.utility.Validatable;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -9,7 +10,9 @@ import java.util.Objects;
  * Реализует интерфейс Validatable для проверки полей.
  * Координата x должна быть больше -167, координата y не может быть null.
  */
-public class Coordinates implements Validatable {
+public class Coordinates implements Validatable, Serializable {
+    private static final long serialVersionUID = 1L;
+
     private long x; //Значение поля должно быть больше -167, Поле не может быть null
     private Float y;
 
@@ -3,6 +3,7 @@ package common;
 import common.utility.Element;
 import common.utility.Validatable;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
@@ -15,7 +16,9 @@ import java.util.Objects;
  * Поля автоматически генерируются: id и creationDate.
  * Обязательные поля: name, coordinates, soundtrackName, weaponType.
  */
-public class HumanBeing extends Element implements Validatable {
+public class HumanBeing extends Element implements Validatable, Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final Integer id; //Поле не может быть null, Значение поля должно быть больше 0, Значение этого поля должно быть уникальным, Значение этого поля должно генерироваться автоматически
     private String name; //Поле не может быть null, Строка не может быть пустой
     private Coordinates coordinates; //Поле не может быть null
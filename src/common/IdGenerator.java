@@ -1,21 +1,64 @@
 package common;
 
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Генератор уникальных идентификаторов для объектов HumanBeing.
- * Обеспечивает уникальность и последовательность ID.
+ * Обеспечивает уникальность и последовательность ID, в том числе при выдаче из нескольких потоков.
+ * <p>
+ * Если задан источник блоков {@link BlockSource}, id выдаются из блоков подряд идущих номеров,
+ * которые сервер закрепляет за клиентом целиком: разные клиенты никогда не получают один и тот же id,
+ * а на каждый новый элемент не нужен отдельный запрос. Внутри блока id выдаются без блокировок
+ * сравнением с обменом; блокировка берётся только на время получения следующего блока.
+ * Вместе с блоком заранее запрашивается запасной, поэтому без связи с сервером можно создать ещё
+ * до {@link #BLOCK_SIZE} элементов; когда кончается и запас, id не выдаются до восстановления связи:
+ * локальный счётчик пересёкся бы с блоками других клиентов.
+ * Без источника id выдаются по локальному счётчику от наибольшего известного id.
+ * </p>
  */
 public class IdGenerator {
-    private static Integer humanBeingCounter = 0;
+    /**
+     * Сколько id запрашивается у сервера за один раз.
+     */
+    public static final int BLOCK_SIZE = 1000;
+    private static final long NEXT_ID = 1L << 32;
+
+    private static final AtomicInteger humanBeingCounter = new AtomicInteger();
+    // Текущий блок: следующий id в старших 32 битах, граница блока (не включительно) в младших
+    private static final AtomicLong block = new AtomicLong();
+    private static final ReentrantLock leaseLock = new ReentrantLock();
+    // Запасной блок в той же упаковке или 0; доступ под leaseLock
+    private static long spare;
+    private static volatile BlockSource blockSource;
+
+    /**
+     * Источник блоков id, обычно запрос lease_ids к серверу.
+     */
+    public interface BlockSource {
+        /**
+         * @param count размер блока
+         * @return первый id блока из count подряд идущих id или -1, если блок получить не удалось
+         */
+        int lease(int count);
+    }
 
     /**
-     * Устанавливает текущее значение счетчика идентификаторов.
+     * Задаёт источник блоков id. Ранее полученный блок сбрасывается.
      *
-     * @param idCounter новое значение счетчика
+     * @param source источник или null, чтобы выдавать id по локальному счётчику
      */
-    private static void setHumanBeingCounter(Integer idCounter) {
-        humanBeingCounter = idCounter;
+    public static void setBlockSource(BlockSource source) {
+        leaseLock.lock();
+        try {
+            blockSource = source;
+            block.set(0);
+            spare = 0;
+        } finally {
+            leaseLock.unlock();
+        }
     }
 
     /**
@@ -25,25 +68,89 @@ public class IdGenerator {
      * @param humanBeingTreeMap коллекция существующих объектов HumanBeing
      */
     public static void restoreHumanBeingCounter(TreeMap<Integer, HumanBeing> humanBeingTreeMap) {
-        if (humanBeingTreeMap.isEmpty()) {
-            setHumanBeingCounter(0);
+        // TreeMap сортирован => .lastKey() - максимальный ID
+        restoreHumanBeingCounter(humanBeingTreeMap.isEmpty() ? 0 : humanBeingTreeMap.lastKey());
+    }
+
+    /**
+     * Восстанавливает счетчик идентификаторов по максимальному ID существующей коллекции.
+     *
+     * @param lastKey максимальный ID в коллекции или 0, если коллекция пуста
+     */
+    public static void restoreHumanBeingCounter(int lastKey) {
+        if (lastKey == 0) {
+            humanBeingCounter.set(0);
             return;
         }
 
-        // TreeMap сортирован => .lastKey() - максимальный ID
-        Integer lastKey = humanBeingTreeMap.lastKey();
-        if (lastKey > humanBeingCounter) {
-            setHumanBeingCounter(lastKey);
-        }
+        humanBeingCounter.accumulateAndGet(lastKey, Math::max);
     }
 
     /**
      * Генерирует и возвращает новый уникальный идентификатор для HumanBeing.
      *
      * @return новый уникальный идентификатор
+     * @throws IllegalStateException если сервер недоступен и закреплённые за клиентом id кончились
      */
     public static int assignHumanBeingId() {
-        humanBeingCounter++;
-        return humanBeingCounter;
+        int id = tryAssignHumanBeingId();
+        if (id < 0) throw new IllegalStateException("Нет связи с сервером и свободных id для новых элементов");
+        return id;
+    }
+
+    /**
+     * Выдаёт новый уникальный идентификатор, если он есть.
+     *
+     * @return новый идентификатор или -1, если сервер недоступен и закреплённые за клиентом id кончились
+     */
+    public static int tryAssignHumanBeingId() {
+        if (blockSource == null) return humanBeingCounter.incrementAndGet();
+        while (true) {
+            long current = block.get();
+            int next = (int) (current >>> 32);
+            if (next < (int) current) {
+                if (block.compareAndSet(current, current + NEXT_ID)) {
+                    // Локальный счётчик не должен потом выдать id из уже использованной части блока
+                    humanBeingCounter.accumulateAndGet(next, Math::max);
+                    return next;
+                }
+            } else if (!leaseBlock(current)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Заменяет исчерпанный блок запасным, если его ещё никто не заменил, и запрашивает новый запас.
+     *
+     * @param exhausted исчерпанный блок, увиденный вызывающим потоком
+     * @return true, если текущий блок можно использовать; false, если блок получить не удалось
+     */
+    private static boolean leaseBlock(long exhausted) {
+        leaseLock.lock();
+        try {
+            // Пока ждали блокировку, новый блок мог получить другой поток
+            if (block.get() != exhausted) return true;
+            BlockSource source = blockSource;
+            if (source == null) return false;
+            if (spare == 0) spare = lease(source);
+            if (spare == 0) return false;
+            block.set(spare);
+            // Без связи запас останется пустым, и следующий блок запросится, когда кончится текущий
+            spare = lease(source);
+            return true;
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    /**
+     * @return упакованный блок или 0, если блок получить не удалось
+     */
+    private static long lease(BlockSource source) {
+        int first = source.lease(BLOCK_SIZE);
+        // Граница блока должна поместиться в int
+        if (first <= 0 || first > Integer.MAX_VALUE - BLOCK_SIZE) return 0;
+        return (long) first << 32 | (first + BLOCK_SIZE);
     }
-}
\ No newline at end of file
+}
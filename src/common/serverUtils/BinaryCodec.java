@@ -0,0 +1,321 @@
+package common.serverUtils;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Компактный двоичный кодек для {@link Request}, {@link Response} и {@link HumanBeing}.
+ * <p>
+ * Формат: байт {@link #MAGIC}, байт версии, байт типа объекта и поля объекта.
+ * Целые числа пишутся как varint (знаковые — в zigzag-кодировке), строки — длиной-varint и байтами UTF-8,
+ * необязательные значения — с признаком присутствия. Адрес клиента не передаётся:
+ * получатель берёт его из заголовка датаграммы.
+ * </p>
+ */
+public class BinaryCodec implements Codec {
+    /**
+     * Первый байт сообщения в этом формате. Отличается от первого байта потока сериализации Java.
+     */
+    public static final int MAGIC = 0x4C;
+    /**
+     * Версия 2 добавила в ответ признак успешного выполнения команды,
+     * версия 3 — версию коллекции и списки изменённых и удалённых элементов,
+     * версия 4 — номер запроса в запросе и ответе, версия 5 — пакеты запросов и ответов.
+     */
+    public static final int VERSION = 5;
+    /**
+     * Наибольшая длина строки в байтах: не больше наибольшего сообщения транспорта.
+     */
+    public static final int MAX_STRING_LENGTH = Transport.DEFAULT_MAX_MESSAGE;
+
+    private static final int TYPE_REQUEST = 1;
+    private static final int TYPE_RESPONSE = 2;
+    private static final int TYPE_HUMAN_BEING = 3;
+
+    @Override
+    public void encode(Serializable obj, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(MAGIC);
+        data.writeByte(VERSION);
+        if (obj instanceof Request) {
+            data.writeByte(TYPE_REQUEST);
+            writeRequest(data, (Request) obj);
+        } else if (obj instanceof Response) {
+            data.writeByte(TYPE_RESPONSE);
+            writeResponse(data, (Response) obj);
+        } else if (obj instanceof HumanBeing) {
+            data.writeByte(TYPE_HUMAN_BEING);
+            writeHumanBeing(data, (HumanBeing) obj);
+        } else {
+            throw new IOException("Двоичный кодек не поддерживает " + obj.getClass().getName());
+        }
+        data.flush();
+    }
+
+    @Override
+    public Object decode(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readUnsignedByte() != MAGIC) {
+            throw new StreamCorruptedException("Неизвестный формат сообщения");
+        }
+        int version = data.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new StreamCorruptedException("Неподдерживаемая версия формата: " + version);
+        }
+        int type = data.readUnsignedByte();
+        switch (type) {
+            case TYPE_REQUEST:
+                return readRequest(data, version, false);
+            case TYPE_RESPONSE:
+                return readResponse(data, version, false);
+            case TYPE_HUMAN_BEING:
+                return readHumanBeing(data);
+            default:
+                throw new StreamCorruptedException("Неизвестный тип объекта: " + type);
+        }
+    }
+
+    private static void writeRequest(DataOutputStream out, Request request) throws IOException {
+        writeString(out, request.getClientRequest());
+        writeString(out, request.getDataRequest());
+        out.writeBoolean(request.getHumanBeing() != null);
+        if (request.getHumanBeing() != null) writeHumanBeing(out, request.getHumanBeing());
+        writeString(out, request.getLogin());
+        writeString(out, request.getPassword());
+        writeVarLong(out, request.getRequestId());
+        List<Request> batch = request.getBatch();
+        writeVarLong(out, batch == null ? 0 : batch.size() + 1L);
+        if (batch != null) {
+            for (Request part : batch) writeRequest(out, part);
+        }
+    }
+
+    /**
+     * @param nested true для запроса внутри пакета: вложенные пакеты не допускаются
+     */
+    private static Request readRequest(DataInputStream in, int version, boolean nested) throws IOException {
+        Request request = new Request(readString(in), readString(in));
+        if (in.readBoolean()) request.setHumanBeing(readHumanBeing(in));
+        request.setLogin(readString(in));
+        request.setPassword(readString(in));
+        if (version >= 4) request.setRequestId(readVarLong(in));
+        if (version < 5) return request;
+        int batchCount = readCount(in);
+        if (batchCount >= 0) {
+            if (nested) throw new StreamCorruptedException("Вложенный пакет запросов");
+            List<Request> batch = new ArrayList<>(Math.min(batchCount, 1024));
+            for (int i = 0; i < batchCount; i++) batch.add(readRequest(in, version, true));
+            request.setBatch(batch);
+        }
+        return request;
+    }
+
+    private static void writeResponse(DataOutputStream out, Response response) throws IOException {
+        out.writeBoolean(response.isSuccess());
+        writeString(out, response.getMessage());
+        writeString(out, response.getVersion());
+        List<HumanBeing> changed = response.getChanged();
+        writeVarLong(out, changed == null ? 0 : changed.size() + 1L);
+        if (changed != null) {
+            for (HumanBeing humanBeing : changed) writeHumanBeing(out, humanBeing);
+        }
+        List<Integer> removed = response.getRemoved();
+        writeVarLong(out, removed == null ? 0 : removed.size() + 1L);
+        if (removed != null) {
+            for (Integer key : removed) writeVarLong(out, zigzag(key));
+        }
+        writeVarLong(out, response.getRequestId());
+        List<Response> batch = response.getBatch();
+        writeVarLong(out, batch == null ? 0 : batch.size() + 1L);
+        if (batch != null) {
+            for (Response part : batch) writeResponse(out, part);
+        }
+    }
+
+    /**
+     * @param nested true для ответа внутри пакета: вложенные пакеты не допускаются
+     */
+    private static Response readResponse(DataInputStream in, int version, boolean nested) throws IOException {
+        boolean success = version < 2 || in.readBoolean();
+        Response response = new Response(success, readString(in));
+        if (version < 3) return response;
+        response.setVersion(readString(in));
+        int changedCount = readCount(in);
+        if (changedCount >= 0) {
+            List<HumanBeing> changed = new ArrayList<>(Math.min(changedCount, 1024));
+            for (int i = 0; i < changedCount; i++) changed.add(readHumanBeing(in));
+            response.setChanged(changed);
+        }
+        int removedCount = readCount(in);
+        if (removedCount >= 0) {
+            List<Integer> removed = new ArrayList<>(Math.min(removedCount, 1024));
+            for (int i = 0; i < removedCount; i++) removed.add((int) unzigzag(readVarLong(in)));
+            response.setRemoved(removed);
+        }
+        if (version >= 4) response.setRequestId(readVarLong(in));
+        if (version < 5) return response;
+        int batchCount = readCount(in);
+        if (batchCount >= 0) {
+            if (nested) throw new StreamCorruptedException("Вложенный пакет ответов");
+            List<Response> batch = new ArrayList<>(Math.min(batchCount, 1024));
+            for (int i = 0; i < batchCount; i++) batch.add(readResponse(in, version, true));
+            response.setBatch(batch);
+        }
+        return response;
+    }
+
+    /**
+     * Читает длину списка, записанную как varint(длина + 1).
+     *
+     * @return длина или -1, если список отсутствует
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count - 1 > Integer.MAX_VALUE) throw new StreamCorruptedException("Слишком длинный список");
+        return (int) (count - 1);
+    }
+
+    /**
+     * Записывает {@link HumanBeing} без заголовка кодека.
+     */
+    public static void writeHumanBeing(DataOutputStream out, HumanBeing humanBeing) throws IOException {
+        writeVarLong(out, zigzag(humanBeing.getId()));
+        writeString(out, humanBeing.getName());
+        Coordinates coordinates = humanBeing.getCoordinates();
+        out.writeBoolean(coordinates != null);
+        if (coordinates != null) {
+            writeVarLong(out, zigzag(coordinates.getX()));
+            out.writeBoolean(coordinates.getY() != null);
+            if (coordinates.getY() != null) out.writeFloat(coordinates.getY());
+        }
+        writeVarLong(out, zigzag(humanBeing.getCreationDate().toEpochDay()));
+        writeBoolean(out, humanBeing.getRealHero());
+        writeBoolean(out, humanBeing.getHasToothpick());
+        out.writeFloat(humanBeing.getImpactSpeed());
+        writeString(out, humanBeing.getSoundtrackName());
+        out.writeBoolean(humanBeing.getMinutesOfWaiting() != null);
+        if (humanBeing.getMinutesOfWaiting() != null) out.writeDouble(humanBeing.getMinutesOfWaiting());
+        writeVarLong(out, humanBeing.getWeaponType() == null ? 0 : humanBeing.getWeaponType().ordinal() + 1);
+        Car car = humanBeing.getCar();
+        out.writeBoolean(car != null);
+        if (car != null) writeString(out, car.getName());
+    }
+
+    /**
+     * Читает {@link HumanBeing}, записанный {@link #writeHumanBeing}.
+     */
+    public static HumanBeing readHumanBeing(DataInputStream in) throws IOException {
+        int id = (int) unzigzag(readVarLong(in));
+        String name = readString(in);
+        Coordinates coordinates = null;
+        if (in.readBoolean()) {
+            long x = unzigzag(readVarLong(in));
+            Float y = in.readBoolean() ? in.readFloat() : null;
+            coordinates = new Coordinates.Builder().x(x).y(y).build();
+        }
+        LocalDate creationDate = LocalDate.ofEpochDay(unzigzag(readVarLong(in)));
+        Boolean realHero = readBoolean(in);
+        Boolean hasToothpick = readBoolean(in);
+        float impactSpeed = in.readFloat();
+        String soundtrackName = readString(in);
+        Double minutesOfWaiting = in.readBoolean() ? in.readDouble() : null;
+        long weaponOrdinal = readVarLong(in);
+        WeaponType[] weaponTypes = WeaponType.values();
+        if (weaponOrdinal < 0 || weaponOrdinal > weaponTypes.length) {
+            throw new StreamCorruptedException("Неизвестный тип оружия: " + weaponOrdinal);
+        }
+        WeaponType weaponType = weaponOrdinal == 0 ? null : weaponTypes[(int) weaponOrdinal - 1];
+        Car car = in.readBoolean() ? new Car.Builder().name(readString(in)).build() : null;
+        return new HumanBeing.Builder(id, creationDate)
+                .name(name)
+                .coordinates(coordinates)
+                .realHero(realHero)
+                .hasToothpick(hasToothpick)
+                .impactSpeed(impactSpeed)
+                .soundtrackName(soundtrackName)
+                .minutesOfWaiting(minutesOfWaiting)
+                .weaponType(weaponType)
+                .car(car)
+                .build();
+    }
+
+    /**
+     * Записывает строку как varint(длина + 1) и байты UTF-8; null записывается как 0.
+     */
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    /**
+     * Читает строку, записанную {@link #writeString}. Длина приходит из сети, поэтому массив растёт
+     * по мере чтения байт, а не выделяется сразу по заявленной длине.
+     */
+    public static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) return null;
+        if (length < 0 || length - 1 > MAX_STRING_LENGTH) throw new StreamCorruptedException("Слишком длинная строка");
+        byte[] bytes = in.readNBytes((int) (length - 1));
+        if (bytes.length != length - 1) throw new EOFException();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Записывает беззнаковое число по 7 бит в байте, старший бит — признак продолжения.
+     */
+    public static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new StreamCorruptedException("Слишком длинный varint");
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte(value == null ? 0 : value ? 2 : 1);
+    }
+
+    private static Boolean readBoolean(DataInputStream in) throws IOException {
+        int value = in.readUnsignedByte();
+        return value == 0 ? null : value == 2;
+    }
+}
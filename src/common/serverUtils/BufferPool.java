@@ -0,0 +1,86 @@
+package common.serverUtils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул прямых (direct) буферов одинакового размера.
+ * Буферы, освобождённые любым потоком, попадают в общий запас фиксированной ёмкости.
+ * Запас не привязан к потокам: буфер, принятый потоком ввода-вывода, обычно освобождает обработчик,
+ * а при виртуальных потоках локальные запасы терялись бы вместе с потоком.
+ * Новый буфер выделяется только если запас пуст.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> free;
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+
+    /**
+     * @param bufferSize размер каждого буфера в байтах
+     * @param capacity   максимальное количество свободных буферов в запасе
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Выдаёт очищенный буфер из пула или выделяет новый.
+     *
+     * @return буфер с position = 0 и limit = capacity
+     */
+    public ByteBuffer acquire() {
+        acquired.increment();
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            allocated.increment();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * Возвращает буфер в пул. Буферы сверх ёмкости запаса отдаются сборщику мусора.
+     *
+     * @param buffer буфер, ранее полученный через {@link #acquire()}
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize) return;
+        free.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return сколько раз буфер был выдан из пула
+     */
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return сколько буферов пришлось выделить заново
+     */
+    public long getAllocatedCount() {
+        return allocated.sum();
+    }
+
+    /**
+     * Возвращает сводку об использовании пула.
+     *
+     * @return строка со статистикой
+     */
+    public String describe() {
+        long acquiredCount = getAcquiredCount();
+        long allocatedCount = getAllocatedCount();
+        return "Буферов выдано: " + acquiredCount + "\n" +
+                "Буферов выделено: " + allocatedCount + " (" + allocatedCount * bufferSize / 1024 + " КБ)\n" +
+                "Доля выделений на выдачу: " + (acquiredCount == 0 ? 0 : (double) allocatedCount / acquiredCount) + "\n" +
+                "Свободных буферов в запасе: " + free.size();
+    }
+}
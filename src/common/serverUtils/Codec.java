@@ -0,0 +1,28 @@
+package common.serverUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Формат передачи объектов по сети.
+ * Реализации пишут объект в поток и читают его обратно, не закрывая сам поток.
+ */
+public interface Codec {
+    /**
+     * Записывает объект в поток.
+     *
+     * @param obj объект для записи
+     * @param out поток, в который пишется объект
+     */
+    void encode(Serializable obj, OutputStream out) throws IOException;
+
+    /**
+     * Читает объект из потока.
+     *
+     * @param in поток, из которого читается объект
+     * @return прочитанный объект
+     */
+    Object decode(InputStream in) throws IOException, ClassNotFoundException;
+}
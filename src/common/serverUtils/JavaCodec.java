@@ -0,0 +1,31 @@
+package common.serverUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Кодек на стандартной сериализации Java.
+ * Оставлен для совместимости со старыми клиентами и серверами.
+ */
+public class JavaCodec implements Codec {
+    /**
+     * Первый байт заголовка потока {@link ObjectOutputStream}.
+     */
+    public static final int MAGIC = 0xAC;
+
+    @Override
+    public void encode(Serializable obj, OutputStream out) throws IOException {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(out);
+        objectOutputStream.writeObject(obj);
+        objectOutputStream.flush();
+    }
+
+    @Override
+    public Object decode(InputStream in) throws IOException, ClassNotFoundException {
+        return new ObjectInputStream(in).readObject();
+    }
+}
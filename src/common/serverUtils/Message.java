@@ -0,0 +1,73 @@
+package common.serverUtils;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Полностью собранное из фрагментов сообщение.
+ * Содержит адрес отправителя и поток байт тела сообщения.
+ * Однофрагментное сообщение читается прямо из буфера пула, поэтому после обработки
+ * сообщение нужно освободить через {@link #release()}.
+ */
+public class Message {
+    private final InetSocketAddress address;
+    private final InputStream body;
+    private ByteBuffer buffer;
+    private final BufferPool pool;
+    private final int size;
+
+    /**
+     * @param size размер тела в байтах
+     */
+    public Message(InetSocketAddress address, InputStream body, int size) {
+        this.address = address;
+        this.body = body;
+        this.pool = null;
+        this.size = size;
+    }
+
+    /**
+     * @param buffer буфер из пула, тело сообщения занимает position..limit
+     * @param pool   пул, в который буфер вернётся при освобождении
+     */
+    public Message(InetSocketAddress address, ByteBuffer buffer, BufferPool pool) {
+        this.address = address;
+        this.body = new ByteBufferInputStream(buffer);
+        this.buffer = buffer;
+        this.pool = pool;
+        this.size = buffer.remaining();
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    /**
+     * @return размер тела сообщения в байтах
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return true, если тело лежит в буфере пула и станет недоступно после {@link #release()}
+     */
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Возвращает буфер сообщения в пул. После вызова тело читать нельзя.
+     */
+    public void release() {
+        if (pool != null && buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package common.serverUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сборщик сообщений из фрагментов.
+ * Хранит буферы частично полученных сообщений по ключу (адрес отправителя, id сообщения)
+ * и сообщает, какие фрагменты нужно запросить повторно.
+ * <p>
+ * Номер фрагмента приходит из сети, поэтому фрагменты с номером вне [0, maxFragments) отбрасываются.
+ * Одному адресу разрешено не больше {@link #MAX_PARTIALS_PER_ADDRESS} незавершённых сообщений, а всем вместе —
+ * не больше maxBufferedBytes байт; при превышении отбрасывается самое старое незавершённое сообщение.
+ * </p>
+ */
+public class MessageAssembler {
+    static final int MAX_PARTIALS_PER_ADDRESS = 16;
+
+    // Порядок вставки — порядок начала сборки: первым вытесняется самое старое сообщение
+    private final Map<Key, Partial> partials = new LinkedHashMap<>();
+    private final Map<InetSocketAddress, Integer> partialsPerAddress = new HashMap<>();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final long nackDelay;
+    private final long expireTime;
+    private final int maxFragments;
+    private final long maxBufferedBytes;
+    private long bufferedBytes = 0;
+
+    /**
+     * @param nackDelay        время простоя (мс), после которого запрашиваются недостающие фрагменты
+     * @param expireTime       время простоя (мс), после которого незавершённое сообщение отбрасывается
+     * @param maxFragments     наибольшее количество фрагментов в одном сообщении
+     * @param maxBufferedBytes наибольший суммарный размер фрагментов всех незавершённых сообщений
+     */
+    public MessageAssembler(long nackDelay, long expireTime, int maxFragments, long maxBufferedBytes) {
+        this.nackDelay = nackDelay;
+        this.expireTime = expireTime;
+        this.maxFragments = maxFragments;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Принимает очередной фрагмент.
+     *
+     * @return собранное сообщение, если получен последний недостающий фрагмент, иначе null
+     */
+    public synchronized Message accept(InetSocketAddress address, long messageId, int sequence, boolean last, byte[] payload) {
+        if (sequence < 0 || sequence >= maxFragments) {
+            rejected.increment();
+            return null;
+        }
+        if (sequence == 0 && last) {
+            return new Message(address, new ByteArrayInputStream(payload), payload.length);
+        }
+        Key key = new Key(address, messageId);
+        Partial partial = partials.get(key);
+        if (partial == null) {
+            if (partialsPerAddress.getOrDefault(address, 0) >= MAX_PARTIALS_PER_ADDRESS) evictOldest(address);
+            partial = new Partial();
+            partials.put(key, partial);
+            partialsPerAddress.merge(address, 1, Integer::sum);
+        }
+        if (!partial.accepts(sequence, last)) {
+            rejected.increment();
+            return null;
+        }
+        while (bufferedBytes + payload.length > maxBufferedBytes) {
+            // Место освобождается за счёт самых старых сообщений, пока очередь не дойдёт до этого
+            if (evictOldest(null) == partial) return null;
+        }
+        bufferedBytes += partial.put(sequence, last, payload);
+        if (!partial.isComplete()) {
+            return null;
+        }
+        remove(key, partial);
+        return new Message(address, partial.toStream(), partial.size);
+    }
+
+    /**
+     * Отбрасывает самое старое незавершённое сообщение.
+     *
+     * @param address адрес, сообщения которого отбрасываются, или null для любого адреса
+     * @return отброшенное сообщение или null, если подходящих сообщений нет
+     */
+    private Partial evictOldest(InetSocketAddress address) {
+        for (Map.Entry<Key, Partial> entry : partials.entrySet()) {
+            if (address == null || entry.getKey().address.equals(address)) {
+                Partial partial = entry.getValue();
+                remove(entry.getKey(), partial);
+                evicted.increment();
+                return partial;
+            }
+        }
+        return null;
+    }
+
+    private void remove(Key key, Partial partial) {
+        partials.remove(key);
+        bufferedBytes -= partial.size;
+        partialsPerAddress.computeIfPresent(key.address, (address, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Отбрасывает устаревшие сообщения и формирует запросы недостающих фрагментов
+     * для сообщений, по которым давно не приходило данных.
+     *
+     * @param now текущее время в мс
+     * @return список запросов на повторную передачу
+     */
+    public synchronized List<Nack> sweep(long now) {
+        List<Nack> nacks = new ArrayList<>();
+        Iterator<Map.Entry<Key, Partial>> iterator = partials.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Partial> entry = iterator.next();
+            Partial partial = entry.getValue();
+            long idle = now - partial.updatedAt;
+            if (idle > expireTime) {
+                iterator.remove();
+                bufferedBytes -= partial.size;
+                partialsPerAddress.computeIfPresent(entry.getKey().address, (address, count) -> count > 1 ? count - 1 : null);
+                expired.increment();
+            } else if (idle > nackDelay && now - partial.nackedAt > nackDelay) {
+                partial.nackedAt = now;
+                nacks.add(partial.toNack(entry.getKey()));
+            }
+        }
+        return nacks;
+    }
+
+    /**
+     * @return true, если от адреса собирается хотя бы одно сообщение: его фрагменты ещё приходят
+     * или оно ждёт повторной передачи недостающих
+     */
+    public synchronized boolean isAssembling(InetSocketAddress address) {
+        return partialsPerAddress.containsKey(address);
+    }
+
+    /**
+     * @return количество незавершённых сообщений, отброшенных из-за потери фрагментов
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * @return количество незавершённых сообщений, отброшенных из-за ограничений на их число и объём
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    /**
+     * @return количество фрагментов, отброшенных из-за недопустимого номера
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return суммарный размер фрагментов незавершённых сообщений в байтах
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * Запрос повторной передачи фрагментов одного сообщения.
+     */
+    public static class Nack {
+        private final InetSocketAddress address;
+        private final long messageId;
+        private final int resendFrom;
+        private final List<Integer> missing;
+
+        Nack(InetSocketAddress address, long messageId, int resendFrom, List<Integer> missing) {
+            this.address = address;
+            this.messageId = messageId;
+            this.resendFrom = resendFrom;
+            this.missing = missing;
+        }
+
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+
+        public long getMessageId() {
+            return messageId;
+        }
+
+        /**
+         * @return номер, начиная с которого нужно переслать все фрагменты, или -1, если последний фрагмент уже получен
+         */
+        public int getResendFrom() {
+            return resendFrom;
+        }
+
+        public List<Integer> getMissing() {
+            return missing;
+        }
+    }
+
+    private static class Key {
+        private final InetSocketAddress address;
+        private final long messageId;
+
+        Key(InetSocketAddress address, long messageId) {
+            this.address = address;
+            this.messageId = messageId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return messageId == key.messageId && address.equals(key.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(address, messageId);
+        }
+    }
+
+    private static class Partial {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private int received = 0;
+        private int size = 0;
+        private int last = -1;
+        private long updatedAt = System.currentTimeMillis();
+        private long nackedAt = 0;
+
+        /**
+         * @return false, если фрагмент противоречит уже полученным: лежит после последнего
+         * или сам объявлен последним, хотя получены фрагменты с большими номерами
+         */
+        boolean accepts(int sequence, boolean isLast) {
+            if (last >= 0 && (sequence > last || isLast && sequence != last)) return false;
+            return !isLast || sequence >= chunks.size() - 1;
+        }
+
+        /**
+         * @return на сколько байт выросло сообщение
+         */
+        int put(int sequence, boolean isLast, byte[] payload) {
+            int added = 0;
+            while (chunks.size() <= sequence) chunks.add(null);
+            if (chunks.get(sequence) == null) {
+                chunks.set(sequence, payload);
+                received++;
+                size += payload.length;
+                added = payload.length;
+            }
+            if (isLast) last = sequence;
+            updatedAt = System.currentTimeMillis();
+            return added;
+        }
+
+        boolean isComplete() {
+            return last >= 0 && received == last + 1;
+        }
+
+        InputStream toStream() {
+            List<InputStream> streams = new ArrayList<>(chunks.size());
+            for (byte[] chunk : chunks) streams.add(new ByteArrayInputStream(chunk));
+            return new SequenceInputStream(Collections.enumeration(streams));
+        }
+
+        Nack toNack(Key key) {
+            int bound = last >= 0 ? last : chunks.size();
+            List<Integer> missing = new ArrayList<>();
+            for (int i = 0; i < bound; i++) {
+                if (chunks.get(i) == null) missing.add(i);
+            }
+            return new Nack(key.address, key.messageId, last >= 0 ? -1 : chunks.size(), missing);
+        }
+    }
+}
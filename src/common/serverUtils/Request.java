@@ -2,17 +2,24 @@ package common.serverUtils;
 
 import common.HumanBeing;
 
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
+import java.util.List;
 
 public class Request implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String clientRequest;
     private String dataRequest;
     private HumanBeing humanBeing;
     private InetSocketAddress clientAddress;
     private String login;
     private String password;
+    private long requestId;
+    private List<Request> batch;
+    private transient InputStream body;
 
     public Request(String clientRequest, String dataRequest) {
         this.clientRequest = clientRequest;
@@ -28,6 +35,16 @@ public class Request implements Serializable {
         this.humanBeing = humanBeing;
     }
 
+    /**
+     * Пакет команд, которые сервер выполняет по порядку и на которые отвечает одним ответом.
+     *
+     * @param batch запросы пакета
+     */
+    public Request(List<Request> batch) {
+        this.clientRequest = "batch";
+        this.batch = batch;
+    }
+
     public Request(String clientRequest, HumanBeing humanBeing, String login, String password) {
         this.humanBeing = humanBeing;
         this.clientRequest = clientRequest;
@@ -75,12 +92,46 @@ public class Request implements Serializable {
         this.password = password;
     }
 
+    /**
+     * @return номер запроса, назначенный клиентом; сервер возвращает его в ответе
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * @return запросы пакета или null, если это одиночный запрос
+     */
+    public List<Request> getBatch() {
+        return batch;
+    }
+
+    public void setBatch(List<Request> batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * @return тело, пришедшее в одном сообщении вслед за запросом, или null
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    public void setBody(InputStream body) {
+        this.body = body;
+    }
+
     @Override
     public String toString() {
         return "Request{" +
                 "clientRequest=" + clientRequest +
                 ", dataRequest=" + dataRequest +
                 ", clientAddress=" + clientAddress +
+                ", requestId=" + requestId +
                 '}';
     }
 }
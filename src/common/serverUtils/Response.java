@@ -1,21 +1,49 @@
 package common.serverUtils;
 
+import common.HumanBeing;
+
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 public class Response implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private boolean success = true;
     private String message;
     private InetSocketAddress clientAddress;
+    private String version;
+    private List<HumanBeing> changed;
+    private List<Integer> removed;
+    private long requestId;
+    private List<Response> batch;
+    private transient ByteBuffer payload;
+    private transient InputStream body;
 
     public Response(String message) {
         this.message = message;
     }
 
+    /**
+     * @param success true, если команда выполнена
+     * @param message сообщение для пользователя
+     */
+    public Response(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
     public Response(String message, InetSocketAddress clientAddress) {
         this.message = message;
         this.clientAddress = clientAddress;
     }
 
+    public boolean isSuccess() {
+        return success;
+    }
+
     public String getMessage() {
         return message;
     }
@@ -31,4 +59,81 @@ public class Response implements Serializable {
     public InetSocketAddress getClientAddress() {
         return clientAddress;
     }
+
+    /**
+     * @return номер запроса, на который дан ответ
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * @return ответы на запросы пакета в том же порядке или null, если это ответ на одиночный запрос
+     */
+    public List<Response> getBatch() {
+        return batch;
+    }
+
+    public void setBatch(List<Response> batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * @return байты, которые отправятся в одном сообщении вслед за ответом, или null
+     */
+    public ByteBuffer getPayload() {
+        return payload;
+    }
+
+    public void setPayload(ByteBuffer payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * @return тело, пришедшее в одном сообщении вслед за ответом, или null
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    public void setBody(InputStream body) {
+        this.body = body;
+    }
+
+    /**
+     * @return версия коллекции на сервере, к которой приводит ответ, или null
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * @return элементы, добавленные или изменённые после версии клиента, или null
+     */
+    public List<HumanBeing> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<HumanBeing> changed) {
+        this.changed = changed;
+    }
+
+    /**
+     * @return ключи элементов, удалённых после версии клиента, или null
+     */
+    public List<Integer> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(List<Integer> removed) {
+        this.removed = removed;
+    }
 }
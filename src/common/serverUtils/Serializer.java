@@ -4,25 +4,64 @@ import common.exeptions.SerializeException;
 
 import java.io.*;
 
+/**
+ * Точка входа для (де)сериализации сетевых сообщений.
+ * Пишет объекты текущим кодеком (по умолчанию {@link BinaryCodec}),
+ * а при чтении определяет кодек по первому байту, поэтому понимает оба формата.
+ */
 public class Serializer {
-    // я нагло спер этот код из стаковерфлоа
+    private static final Codec JAVA_CODEC = new JavaCodec();
+    private static final Codec BINARY_CODEC = new BinaryCodec();
+    private static volatile Codec codec = BINARY_CODEC;
+
+    /**
+     * Устанавливает кодек, которым будут записываться сообщения.
+     *
+     * @param newCodec кодек
+     */
+    public static void setCodec(Codec newCodec) {
+        codec = newCodec;
+    }
+
+    public static Codec getCodec() {
+        return codec;
+    }
 
     public static byte[] serialize(Serializable obj) {
         try(ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()){
-            try(ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)){
-                objectOutputStream.writeObject(obj);
-            }
+            serialize(obj, byteArrayOutputStream);
             return byteArrayOutputStream.toByteArray();
         } catch (IOException e) {
             throw new SerializeException();
         }
     }
 
+    /**
+     * Записывает объект в поток текущим кодеком. Поток не закрывается.
+     */
+    public static void serialize(Serializable obj, OutputStream out) throws IOException {
+        codec.encode(obj, out);
+    }
+
     public static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
-        try(ByteArrayInputStream b = new ByteArrayInputStream(bytes)){
-            try(ObjectInputStream o = new ObjectInputStream(b)){
-                return o.readObject();
-            }
+        return deserialize(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Читает объект из потока, выбирая кодек по первому байту.
+     */
+    public static Object deserialize(InputStream in) throws IOException, ClassNotFoundException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 1);
+        int first = pushback.read();
+        if (first < 0) {
+            throw new EOFException();
+        }
+        pushback.unread(first);
+        if (first == BinaryCodec.MAGIC) {
+            return BINARY_CODEC.decode(pushback);
+        } else if (first == JavaCodec.MAGIC) {
+            return JAVA_CODEC.decode(pushback);
         }
+        throw new StreamCorruptedException("Неизвестный формат сообщения");
     }
 }
@@ -0,0 +1,546 @@
+package common.serverUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт поверх UDP, передающий сообщения произвольного размера.
+ * Сообщение режется на фрагменты не больше maxPayload байт, каждый фрагмент снабжается заголовком
+ * (id сообщения, порядковый номер, тип). Получатель собирает фрагменты через {@link MessageAssembler}
+ * и при потерях запрашивает только недостающие фрагменты.
+ * <p>
+ * Отправленные многофрагментные сообщения хранятся для повторной передачи, пока их фрагменты запрашивают:
+ * сообщение забывается через {@link #SENT_RETAIN_TIME} мс без запросов, когда получатель уже отбросил бы его
+ * незавершённым, а при превышении {@link #SENT_CACHE_BYTES} байт скопированных фрагментов — раньше,
+ * начиная с давно не запрашивавшихся. Сообщение с телом из буфера занимает только размер заголовка,
+ * поэтому ответы множеству клиентов из одного буфера не вытесняют друг друга.
+ * </p>
+ */
+public class Transport {
+    public static final int DEFAULT_MAX_PAYLOAD = 8192;
+    public static final int MAX_DATAGRAM = 65507;
+    public static final int DEFAULT_MAX_MESSAGE = 64 * 1024 * 1024;
+    public static final int DEFAULT_POOL_CAPACITY = 64;
+    /**
+     * Заголовок фрагмента: id сообщения (long), номер фрагмента (int), тип (byte).
+     */
+    public static final int HEADER_SIZE = 13;
+    public static final long SWEEP_INTERVAL = 100;
+
+    private static final byte DATA = 0;
+    private static final byte LAST = 1;
+    private static final byte NACK = 2;
+    private static final int SOCKET_BUFFER = 4 * 1024 * 1024;
+    private static final long MESSAGE_EXPIRE = 5000;
+    private static final long SENT_RETAIN_TIME = 2 * MESSAGE_EXPIRE;
+    private static final long SENT_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final long SEND_BACKOFF = 50_000;
+
+    private final DatagramChannel channel;
+    private final int maxPayload;
+    private final AtomicLong messageIds = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    private final MessageAssembler assembler;
+    private final BufferPool pool;
+    private ByteBuffer receiveBuffer;
+    // В порядке последнего обращения: первым забывается сообщение, фрагменты которого дольше всего не запрашивали
+    private final Map<Long, SentMessage> sentMessages = new LinkedHashMap<>(16, 0.75f, true);
+    private long sentBytes = 0;
+    private volatile long lastSweep = 0;
+    private final LongAdder datagramsIn = new LongAdder();
+    private final LongAdder datagramsOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final LongAdder resent = new LongAdder();
+
+    public Transport(DatagramChannel channel) throws IOException {
+        this(channel, DEFAULT_MAX_PAYLOAD);
+    }
+
+    public Transport(DatagramChannel channel, int maxPayload) throws IOException {
+        this(channel, maxPayload, DEFAULT_MAX_MESSAGE, DEFAULT_POOL_CAPACITY);
+    }
+
+    /**
+     * @param channel      канал, через который идёт обмен
+     * @param maxPayload   максимальный размер полезной нагрузки одного фрагмента
+     * @param maxMessage   максимальный размер принимаемого сообщения; от него зависит наибольший допустимый
+     *                     номер фрагмента и объём памяти под незавершённые сообщения (вдвое больше)
+     * @param poolCapacity сколько свободных буферов хранит пул; должно покрывать все сообщения,
+     *                     которые одновременно ждут обработки, иначе при всплеске буферы выделяются заново
+     */
+    public Transport(DatagramChannel channel, int maxPayload, int maxMessage, int poolCapacity) throws IOException {
+        if (maxPayload < 1 || maxPayload > MAX_DATAGRAM - HEADER_SIZE) {
+            throw new IllegalArgumentException("Недопустимый размер фрагмента: " + maxPayload);
+        }
+        if (maxMessage < 1) {
+            throw new IllegalArgumentException("Недопустимый размер сообщения: " + maxMessage);
+        }
+        this.channel = channel;
+        this.maxPayload = maxPayload;
+        // Отправитель может резать сообщения на фрагменты меньше наших, но не меньше размера по умолчанию
+        int fragmentSize = Math.min(maxPayload, DEFAULT_MAX_PAYLOAD);
+        this.assembler = new MessageAssembler(SWEEP_INTERVAL, MESSAGE_EXPIRE,
+                (maxMessage - 1) / fragmentSize + 1, 2L * maxMessage);
+        this.pool = new BufferPool(MAX_DATAGRAM, poolCapacity);
+        this.receiveBuffer = pool.acquire();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_BUFFER);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_BUFFER);
+    }
+
+    /**
+     * Сериализует объект и отправляет его адресату фрагментами.
+     */
+    public void send(Serializable obj, InetSocketAddress target) throws IOException {
+        try (FragmentOutputStream out = new FragmentOutputStream(target, true)) {
+            Serializer.serialize(obj, out);
+        }
+    }
+
+    /**
+     * Отправляет объект, за которым в том же сообщении следует тело произвольной длины.
+     * Тело пишется прямо во фрагменты по мере формирования и не накапливается целиком в памяти отправителя.
+     * Получатель читает тело из того же потока, что и объект, сразу после десериализации.
+     *
+     * @param obj    заголовок сообщения
+     * @param body   источник тела сообщения
+     * @param target адресат
+     */
+    public void send(Serializable obj, Body body, InetSocketAddress target) throws IOException {
+        try (FragmentOutputStream out = new FragmentOutputStream(target, true)) {
+            Serializer.serialize(obj, out);
+            body.writeTo(out);
+        }
+    }
+
+    /**
+     * Отправляет объект, за которым в том же сообщении следует содержимое буфера.
+     * Байты копируются из буфера прямо во фрагменты, минуя массивы в куче,
+     * поэтому буфер может быть отображённым в память файлом. Позиция буфера не меняется.
+     * Для повторной передачи хранятся только сериализованный объект и срез буфера:
+     * потерянные фрагменты собираются из них заново.
+     *
+     * @param obj    заголовок сообщения
+     * @param body   тело сообщения (position..limit)
+     * @param target адресат
+     */
+    public void send(Serializable obj, ByteBuffer body, InetSocketAddress target) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        Serializer.serialize(obj, head);
+        byte[] headBytes = head.toByteArray();
+        ByteBuffer slice = body.slice();
+        FragmentOutputStream out = new FragmentOutputStream(target, false);
+        try (out) {
+            out.write(headBytes);
+            out.write(slice.duplicate());
+        }
+        if (out.sequence > 1) remember(out.messageId, new BufferMessage(target, headBytes, slice, maxPayload));
+    }
+
+    /**
+     * Читает одну датаграмму из канала.
+     * Запросы повторной передачи обрабатываются сразу же.
+     * Полученное сообщение нужно освободить через {@link Message#release()}.
+     *
+     * @return сообщение, если датаграмма завершила его сборку, иначе null
+     */
+    public Message receive() throws IOException {
+        receiveBuffer.clear();
+        InetSocketAddress address = (InetSocketAddress) channel.receive(receiveBuffer);
+        if (address == null) {
+            return null;
+        }
+        return accept(address);
+    }
+
+    /**
+     * Вычитывает из канала все ожидающие датаграммы.
+     * Каждое собранное сообщение передаётся обработчику.
+     *
+     * @param handler обработчик собранных сообщений
+     * @return количество прочитанных датаграмм
+     */
+    public int drain(Consumer<Message> handler) throws IOException {
+        int count = 0;
+        while (true) {
+            receiveBuffer.clear();
+            InetSocketAddress address = (InetSocketAddress) channel.receive(receiveBuffer);
+            if (address == null) {
+                return count;
+            }
+            count++;
+            Message message = accept(address);
+            if (message != null) {
+                handler.accept(message);
+            }
+        }
+    }
+
+    private Message accept(InetSocketAddress address) throws IOException {
+        receiveBuffer.flip();
+        datagramsIn.increment();
+        bytesIn.add(receiveBuffer.remaining());
+        if (receiveBuffer.remaining() < HEADER_SIZE) {
+            malformed.increment();
+            return null;
+        }
+        long messageId = receiveBuffer.getLong();
+        int sequence = receiveBuffer.getInt();
+        byte type = receiveBuffer.get();
+        if (type == NACK) {
+            resend(address, messageId, sequence, receiveBuffer);
+            return null;
+        }
+        if (sequence == 0 && type == LAST) {
+            // Сообщение из одного фрагмента читается прямо из буфера, для следующей датаграммы берётся новый
+            Message message = new Message(address, receiveBuffer, pool);
+            receiveBuffer = pool.acquire();
+            return message;
+        }
+        byte[] payload = new byte[receiveBuffer.remaining()];
+        receiveBuffer.get(payload);
+        return assembler.accept(address, messageId, sequence, type == LAST, payload);
+    }
+
+    /**
+     * Запрашивает у отправителей недостающие фрагменты незавершённых сообщений.
+     * Вызывается периодически; чаще, чем раз в {@link #SWEEP_INTERVAL} мс, ничего не делает.
+     */
+    public void sweep() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep < SWEEP_INTERVAL) {
+            return;
+        }
+        lastSweep = now;
+        synchronized (sentMessages) {
+            forgetSent(now);
+        }
+        for (MessageAssembler.Nack nack : assembler.sweep(now)) {
+            int count = Math.min(nack.getMissing().size(), maxPayload / Integer.BYTES);
+            ByteBuffer buffer = pool.acquire();
+            buffer.putLong(nack.getMessageId()).putInt(nack.getResendFrom()).put(NACK);
+            for (int i = 0; i < count; i++) buffer.putInt(nack.getMissing().get(i));
+            buffer.flip();
+            try {
+                sendDatagram(buffer, nack.getAddress());
+            } finally {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return true, если от адреса принимается многофрагментное сообщение; незавершённое сообщение,
+     * по которому ничего не приходит, отбрасывается через несколько секунд
+     */
+    public boolean isReceiving(InetSocketAddress address) {
+        return assembler.isAssembling(address);
+    }
+
+    public DatagramChannel getChannel() {
+        return channel;
+    }
+
+    public BufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return сводка о принятых и отправленных датаграммах для вывода в консоль
+     */
+    public String describeTraffic() {
+        return "Получено датаграмм: " + datagramsIn.sum() + ", байт: " + bytesIn.sum() + "\n" +
+                "Отправлено датаграмм: " + datagramsOut.sum() + ", байт: " + bytesOut.sum() + "\n" +
+                "Отправлено повторно: " + resent.sum() + "\n" +
+                describeSent() + "\n" +
+                "Отброшено датаграмм без заголовка: " + malformed.sum() + "\n" +
+                "Отброшено фрагментов с недопустимым номером: " + assembler.getRejectedCount() + "\n" +
+                "Отброшено несобранных сообщений: " + assembler.getExpiredCount()
+                + " (из-за ограничений памяти " + assembler.getEvictedCount() + ")\n" +
+                "Байт в несобранных сообщениях: " + assembler.getBufferedBytes();
+    }
+
+    private String describeSent() {
+        synchronized (sentMessages) {
+            return "Хранится для повторной передачи: " + sentMessages.size() + " сообщений, " + sentBytes + " байт";
+        }
+    }
+
+    private void remember(long messageId, SentMessage message) {
+        synchronized (sentMessages) {
+            sentMessages.put(messageId, message);
+            sentBytes += message.retainedBytes();
+            forgetSent(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Забывает сообщения, которые давно не запрашивали, и самые давние сверх ограничения памяти.
+     * Вызывается под блокировкой sentMessages.
+     */
+    private void forgetSent(long now) {
+        Iterator<SentMessage> iterator = sentMessages.values().iterator();
+        while (iterator.hasNext()) {
+            SentMessage message = iterator.next();
+            if (now - message.usedAt <= SENT_RETAIN_TIME && sentBytes <= SENT_CACHE_BYTES) break;
+            iterator.remove();
+            sentBytes -= message.retainedBytes();
+        }
+    }
+
+    private void resend(InetSocketAddress address, long messageId, int resendFrom, ByteBuffer missing) throws IOException {
+        SentMessage message;
+        synchronized (sentMessages) {
+            message = sentMessages.get(messageId);
+            if (message != null) message.usedAt = System.currentTimeMillis();
+        }
+        if (message == null || !message.target.equals(address)) {
+            return;
+        }
+        int count = message.fragmentCount();
+        while (missing.remaining() >= Integer.BYTES) {
+            int sequence = missing.getInt();
+            if (sequence >= 0 && sequence < count) {
+                resendFragment(message, messageId, sequence, address);
+            }
+        }
+        if (resendFrom >= 0) {
+            for (int i = resendFrom; i < count; i++) {
+                resendFragment(message, messageId, i, address);
+            }
+        }
+    }
+
+    /**
+     * Собирает фрагмент отправленного сообщения в буфере из пула и отправляет его заново.
+     */
+    private void resendFragment(SentMessage message, long messageId, int sequence, InetSocketAddress address) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            buffer.putLong(messageId).putInt(sequence).put(sequence == message.fragmentCount() - 1 ? LAST : DATA);
+            message.writeFragment(sequence, buffer);
+            buffer.flip();
+            sendDatagram(buffer, address);
+            resent.increment();
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private void sendDatagram(ByteBuffer buffer, InetSocketAddress target) throws IOException {
+        datagramsOut.increment();
+        bytesOut.add(buffer.remaining());
+        while (channel.send(buffer, target) == 0) {
+            LockSupport.parkNanos(SEND_BACKOFF);
+        }
+    }
+
+    /**
+     * Поток, режущий записываемые в него байты на фрагменты и отправляющий их по мере заполнения.
+     * Байты пишутся прямо в буфер из пула, который возвращается в пул при закрытии.
+     */
+    private class FragmentOutputStream extends OutputStream {
+        private final InetSocketAddress target;
+        private final long messageId = messageIds.incrementAndGet();
+        private final ByteBuffer buffer = pool.acquire();
+        private final boolean copyFragments;
+        private final List<byte[]> fragments = new ArrayList<>();
+        private int sequence = 0;
+        private boolean closed = false;
+
+        /**
+         * @param copyFragments запомнить копии фрагментов многофрагментного сообщения для повторной передачи;
+         *                      false, если отправитель запоминает сообщение сам
+         */
+        FragmentOutputStream(InetSocketAddress target, boolean copyFragments) {
+            this.target = target;
+            this.copyFragments = copyFragments;
+            buffer.limit(HEADER_SIZE + maxPayload).position(HEADER_SIZE);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) emit(DATA);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) emit(DATA);
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /**
+         * Копирует оставшиеся байты буфера во фрагменты.
+         */
+        void write(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                if (!buffer.hasRemaining()) emit(DATA);
+                int count = Math.min(source.remaining(), buffer.remaining());
+                buffer.put(buffer.position(), source, source.position(), count);
+                buffer.position(buffer.position() + count);
+                source.position(source.position() + count);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                emit(LAST);
+            } finally {
+                pool.release(buffer);
+            }
+            if (copyFragments && sequence > 1) {
+                remember(messageId, new CopiedMessage(target, fragments));
+            }
+        }
+
+        private void emit(byte type) throws IOException {
+            buffer.flip();
+            buffer.putLong(0, messageId).putInt(8, sequence).put(12, type);
+            if (copyFragments && (type == DATA || sequence > 0)) {
+                byte[] copy = new byte[buffer.remaining() - HEADER_SIZE];
+                buffer.get(HEADER_SIZE, copy);
+                fragments.add(copy);
+            }
+            sendDatagram(buffer, target);
+            sequence++;
+            buffer.clear().limit(HEADER_SIZE + maxPayload).position(HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Источник тела сообщения, отправляемого через {@link #send(Serializable, Body, InetSocketAddress)}.
+     */
+    public interface Body {
+        /**
+         * Записывает тело в поток. Поток закрывать не нужно.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Отправленное многофрагментное сообщение, хранимое для повторной передачи фрагментов.
+     */
+    private abstract static class SentMessage {
+        private final InetSocketAddress target;
+        // Время отправки или последнего запроса фрагментов; меняется под блокировкой sentMessages
+        private long usedAt = System.currentTimeMillis();
+
+        SentMessage(InetSocketAddress target) {
+            this.target = target;
+        }
+
+        abstract int fragmentCount();
+
+        /**
+         * @return сколько байт кучи занимает только это сообщение
+         */
+        abstract long retainedBytes();
+
+        /**
+         * Дописывает в буфер полезную нагрузку фрагмента.
+         */
+        abstract void writeFragment(int sequence, ByteBuffer buffer);
+    }
+
+    /**
+     * Сообщение, тело которого формировалось потоком: повторить его можно только по копиям фрагментов.
+     */
+    private static class CopiedMessage extends SentMessage {
+        private final List<byte[]> payloads;
+        private final long size;
+
+        CopiedMessage(InetSocketAddress target, List<byte[]> payloads) {
+            super(target);
+            this.payloads = payloads;
+            long total = 0;
+            for (byte[] payload : payloads) total += payload.length;
+            this.size = total;
+        }
+
+        @Override
+        int fragmentCount() {
+            return payloads.size();
+        }
+
+        @Override
+        long retainedBytes() {
+            return size;
+        }
+
+        @Override
+        void writeFragment(int sequence, ByteBuffer buffer) {
+            buffer.put(payloads.get(sequence));
+        }
+    }
+
+    /**
+     * Сообщение из сериализованного объекта и тела в буфере. Фрагмент собирается заново из копии объекта
+     * и среза буфера тела, поэтому тело не копируется в кучу ни при отправке, ни при хранении.
+     */
+    private static class BufferMessage extends SentMessage {
+        private final byte[] head;
+        private final ByteBuffer body;
+        private final int maxPayload;
+
+        /**
+         * @param body срез тела: position = 0, limit = длина тела
+         */
+        BufferMessage(InetSocketAddress target, byte[] head, ByteBuffer body, int maxPayload) {
+            super(target);
+            this.head = head;
+            this.body = body;
+            this.maxPayload = maxPayload;
+        }
+
+        @Override
+        int fragmentCount() {
+            long size = (long) head.length + body.limit();
+            return (int) Math.max(1, (size + maxPayload - 1) / maxPayload);
+        }
+
+        @Override
+        long retainedBytes() {
+            // Буфер тела общий для всех ответов с ним и хранится отдельно
+            return head.length;
+        }
+
+        @Override
+        void writeFragment(int sequence, ByteBuffer buffer) {
+            long from = (long) sequence * maxPayload;
+            long to = Math.min(from + maxPayload, (long) head.length + body.limit());
+            if (from < head.length) {
+                int count = (int) (Math.min(to, head.length) - from);
+                buffer.put(head, (int) from, count);
+                from += count;
+            }
+            if (from < to) {
+                buffer.put(body.slice((int) (from - head.length), (int) (to - from)));
+            }
+        }
+    }
+}
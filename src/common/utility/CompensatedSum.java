@@ -0,0 +1,28 @@
+package common.utility;
+
+/**
+ * Сумма double с компенсацией ошибки округления (алгоритм Неймайера — вариант Кэхэна,
+ * допускающий вычитание), поэтому она не теряет точность на больших коллекциях и после удалений.
+ * Общая для клиента и сервера, чтобы sum_of_impact_speed давал одинаковый результат на одних данных.
+ * Не потокобезопасна.
+ */
+public class CompensatedSum {
+    private double sum;
+    private double compensation;
+
+    public void add(double value) {
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) compensation += (sum - total) + value;
+        else compensation += (value - total) + sum;
+        sum = total;
+    }
+
+    public void clear() {
+        sum = 0;
+        compensation = 0;
+    }
+
+    public double get() {
+        return sum + compensation;
+    }
+}
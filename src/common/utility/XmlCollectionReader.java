@@ -0,0 +1,173 @@
+package common.utility;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый (StAX) разборщик XML-дампа коллекции {@link HumanBeing}.
+ * Каждый элемент humanBeing собирается через {@link HumanBeing.Builder} в момент закрытия тега
+ * и сразу передаётся обработчику, поэтому в памяти одновременно находится только один элемент.
+ * Ошибка в значениях одного элемента не прерывает разбор остальных.
+ */
+public class XmlCollectionReader {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final Consumer<HumanBeing> onElement;
+    private final Consumer<String> onError;
+
+    /**
+     * @param onElement обработчик успешно разобранных элементов
+     * @param onError   обработчик сообщений об ошибках в отдельных элементах
+     */
+    public XmlCollectionReader(Consumer<HumanBeing> onElement, Consumer<String> onError) {
+        this.onElement = onElement;
+        this.onError = onError;
+    }
+
+    /**
+     * Разбирает дамп из потока байт.
+     *
+     * @param in поток с XML в кодировке, указанной в его заголовке
+     * @throws XMLStreamException если XML синтаксически некорректен
+     */
+    public void read(InputStream in) throws XMLStreamException {
+        read(FACTORY.createXMLStreamReader(in));
+    }
+
+    /**
+     * Разбирает дамп из потока символов.
+     *
+     * @param in поток с XML
+     * @throws XMLStreamException если XML синтаксически некорректен
+     */
+    public void read(Reader in) throws XMLStreamException {
+        read(FACTORY.createXMLStreamReader(in));
+    }
+
+    private void read(XMLStreamReader xml) throws XMLStreamException {
+        try {
+            ElementFields fields = null;
+            String container = null;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String tag = xml.getLocalName();
+                    if (tag.equals("humanBeing")) {
+                        fields = new ElementFields();
+                        fields.id = xml.getAttributeValue(null, "id");
+                    } else if (fields != null && (tag.equals("coordinates") || tag.equals("car"))) {
+                        container = tag;
+                        if (tag.equals("car")) fields.hasCar = true;
+                    } else if (fields != null) {
+                        fields.set(container, tag, xml.getElementText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String tag = xml.getLocalName();
+                    if (tag.equals("humanBeing") && fields != null) {
+                        emit(fields);
+                        fields = null;
+                    } else if (tag.equals(container)) {
+                        container = null;
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    private void emit(ElementFields fields) {
+        HumanBeing humanBeing;
+        try {
+            humanBeing = fields.build();
+        } catch (Exception e) {
+            onError.accept("Ошибка парсинга элемента humanBeing: " + e.getMessage());
+            return;
+        }
+        onElement.accept(humanBeing);
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Текстовые значения полей одного элемента до преобразования в {@link HumanBeing}.
+     */
+    private static class ElementFields {
+        private String id;
+        private String name;
+        private String x;
+        private String y;
+        private String creationDate;
+        private String realHero;
+        private String hasToothpick;
+        private String impactSpeed;
+        private String soundtrackName;
+        private String minutesOfWaiting;
+        private String weaponType;
+        private boolean hasCar;
+        private String carName;
+
+        void set(String container, String tag, String text) {
+            if ("coordinates".equals(container)) {
+                if (tag.equals("x")) x = text;
+                else if (tag.equals("y")) y = text;
+                return;
+            }
+            if ("car".equals(container)) {
+                if (tag.equals("name")) carName = text;
+                return;
+            }
+            switch (tag) {
+                case "name": name = text; break;
+                case "creationDate": creationDate = text; break;
+                case "realHero": realHero = text; break;
+                case "hasToothpick": hasToothpick = text; break;
+                case "impactSpeed": impactSpeed = text; break;
+                case "soundtrackName": soundtrackName = text; break;
+                case "minutesOfWaiting": minutesOfWaiting = text; break;
+                case "weaponType": weaponType = text; break;
+                default: break;
+            }
+        }
+
+        HumanBeing build() {
+            if (!hasCar) throw new IllegalArgumentException("отсутствует элемент car");
+            int parsedId = Integer.parseInt(id);
+            Coordinates coordinates = new Coordinates.Builder()
+                    .x(Long.parseLong(x))
+                    .y(isEmpty(y) ? null : Float.parseFloat(y))
+                    .build();
+            return new HumanBeing.Builder(parsedId, LocalDate.parse(creationDate))
+                    .name(name)
+                    .coordinates(coordinates)
+                    .realHero(isEmpty(realHero) ? null : Boolean.parseBoolean(realHero))
+                    .hasToothpick(isEmpty(hasToothpick) ? null : Boolean.parseBoolean(hasToothpick))
+                    .impactSpeed(Float.parseFloat(impactSpeed))
+                    .soundtrackName(soundtrackName)
+                    .minutesOfWaiting(isEmpty(minutesOfWaiting) ? null : Double.parseDouble(minutesOfWaiting))
+                    .weaponType(WeaponType.valueOf(weaponType))
+                    .car(new Car.Builder().name(carName).build())
+                    .build();
+        }
+
+        private static boolean isEmpty(String value) {
+            return value == null || value.isEmpty();
+        }
+    }
+}
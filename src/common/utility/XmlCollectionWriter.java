@@ -0,0 +1,130 @@
+package common.utility;
+
+import common.HumanBeing;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Потоковый (StAX) writer XML-дампа коллекции {@link HumanBeing}.
+ * Элементы пишутся прямо в выходной поток по мере обхода коллекции, без построения DOM-дерева,
+ * поэтому расход памяти не зависит от размера коллекции.
+ * По умолчанию пишет компактный XML без отступов, удобный для передачи по сети.
+ */
+public class XmlCollectionWriter {
+    private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+
+    private final boolean pretty;
+    private XMLStreamWriter xml;
+    private int depth;
+
+    /**
+     * Создаёт writer компактного XML.
+     */
+    public XmlCollectionWriter() {
+        this(false);
+    }
+
+    /**
+     * @param pretty true — переносить строки и расставлять отступы
+     */
+    public XmlCollectionWriter(boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    /**
+     * Записывает элементы в поток байт в кодировке UTF-8. Поток не закрывается.
+     *
+     * @param entries элементы коллекции (ключ — значение)
+     * @param out     поток, в который пишется XML
+     * @throws XMLStreamException если не удалось записать XML
+     */
+    public void write(Iterable<Map.Entry<Integer, HumanBeing>> entries, OutputStream out) throws XMLStreamException {
+        write(entries, FACTORY.createXMLStreamWriter(out, "UTF-8"));
+    }
+
+    /**
+     * Записывает элементы в поток символов. Поток не закрывается.
+     *
+     * @param entries элементы коллекции (ключ — значение)
+     * @param out     поток, в который пишется XML
+     * @throws XMLStreamException если не удалось записать XML
+     */
+    public void write(Iterable<Map.Entry<Integer, HumanBeing>> entries, Writer out) throws XMLStreamException {
+        write(entries, FACTORY.createXMLStreamWriter(out));
+    }
+
+    private void write(Iterable<Map.Entry<Integer, HumanBeing>> entries, XMLStreamWriter writer) throws XMLStreamException {
+        xml = writer;
+        depth = 0;
+        try {
+            xml.writeStartDocument("UTF-8", "1.0");
+            start("humanBeings");
+            for (Map.Entry<Integer, HumanBeing> entry : entries) {
+                writeHumanBeing(entry.getKey(), entry.getValue());
+            }
+            end();
+            xml.writeEndDocument();
+            if (pretty) xml.writeCharacters("\n");
+            xml.flush();
+        } finally {
+            xml.close();
+            xml = null;
+        }
+    }
+
+    private void writeHumanBeing(Integer key, HumanBeing humanBeing) throws XMLStreamException {
+        start("humanBeing");
+        xml.writeAttribute("id", String.valueOf(key));
+
+        leaf("name", humanBeing.getName());
+
+        start("coordinates");
+        leaf("x", String.valueOf(humanBeing.getCoordinates().getX()));
+        leaf("y", humanBeing.getCoordinates().getY() != null ? String.valueOf(humanBeing.getCoordinates().getY()) : "");
+        end();
+
+        leaf("creationDate", humanBeing.getCreationDate().toString());
+        leaf("realHero", humanBeing.getRealHero() != null ? String.valueOf(humanBeing.getRealHero()) : "");
+        leaf("hasToothpick", humanBeing.getHasToothpick() != null ? String.valueOf(humanBeing.getHasToothpick()) : "");
+        leaf("impactSpeed", String.valueOf(humanBeing.getImpactSpeed()));
+        leaf("soundtrackName", String.valueOf(humanBeing.getSoundtrackName()));
+        leaf("minutesOfWaiting", humanBeing.getMinutesOfWaiting() != null ? String.valueOf(humanBeing.getMinutesOfWaiting()) : "");
+        leaf("weaponType", String.valueOf(humanBeing.getWeaponType()));
+
+        start("car");
+        leaf("name", humanBeing.getCar() != null ? String.valueOf(humanBeing.getCar()) : "");
+        end();
+
+        end();
+    }
+
+    private void start(String tag) throws XMLStreamException {
+        indent();
+        xml.writeStartElement(tag);
+        depth++;
+    }
+
+    private void end() throws XMLStreamException {
+        depth--;
+        indent();
+        xml.writeEndElement();
+    }
+
+    private void leaf(String tag, String text) throws XMLStreamException {
+        indent();
+        xml.writeStartElement(tag);
+        xml.writeCharacters(text == null ? "" : text);
+        xml.writeEndElement();
+    }
+
+    private void indent() throws XMLStreamException {
+        if (!pretty) return;
+        xml.writeCharacters("\n");
+        for (int i = 0; i < depth; i++) xml.writeCharacters("  ");
+    }
+}
@@ -0,0 +1,774 @@
+package server.managers;
+
+import common.HumanBeing;
+import common.WeaponType;
+import common.utility.CompensatedSum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import server.utils.ServerLogger;
+
+/**
+ * Хранимая на сервере коллекция {@link HumanBeing}, общая для всех клиентов.
+ * Клиенты изменяют её отдельными командами, передавая только ключ или один элемент.
+ * <p>
+ * Элементы лежат в {@link ConcurrentSkipListMap}: чтение не блокируется вовсе и видит коллекцию
+ * на момент обхода, изменения элементов с разными ключами выполняются параллельно,
+ * условные изменения сделаны сравнением с обменом. Изменения одного ключа упорядочены блокировкой
+ * из набора {@link #KEY_LOCKS}, чтобы записи журнала шли в том же порядке, что и изменения коллекции.
+ * Удаление диапазонов, очистка и снимок берут {@link ReentrantReadWriteLock} на запись и ждут
+ * завершения изменений отдельных ключей, которые держат его на чтение.
+ * </p>
+ * <p>
+ * Каждое изменение записывается в {@link WriteAheadLog} и подтверждается клиенту только после того,
+ * как запись оказалась на диске; ожидание fsync идёт уже после снятия блокировки коллекции.
+ * Файл дампа служит снимком: при сохранении журнал начинается заново, а при запуске
+ * коллекция восстанавливается из снимка и журнала.
+ * </p>
+ * <p>
+ * Каждое изменение получает номер версии. Для каждого ключа хранится номер его последнего изменения,
+ * поэтому клиент, знающий версию своей копии, получает через {@link #changesSince(String)}
+ * только изменившиеся и удалённые с тех пор элементы. Версия передаётся клиенту строкой
+ * «эпоха-номер»: эпоха меняется при перезапуске сервера, и старые версии клиентов становятся недействительными.
+ * </p>
+ * Сумма impactSpeed поддерживается при каждом изменении с компенсацией ошибки округления, как и на клиенте.
+ */
+public class CollectionStore {
+    private static final Logger logger = ServerLogger.getInstance();
+    /**
+     * Сколько последних изменённых ключей помнит журнал версий. Клиентам, отставшим сильнее,
+     * нужна полная загрузка коллекции.
+     */
+    private static final int MAX_CHANGES = 100_000;
+    /**
+     * Число блокировок ключей; ключи с одинаковым остатком от деления делят одну блокировку.
+     */
+    private static final int KEY_LOCKS = 64;
+    private final ConcurrentSkipListMap<Integer, HumanBeing> collection = new ConcurrentSkipListMap<>();
+    // Размер skip-списка вычисляется обходом, поэтому считается отдельно
+    private final AtomicInteger size = new AtomicInteger();
+    // Изменения разных ключей идут параллельно, поэтому у суммы своя блокировка
+    private final CompensatedSum impactSpeedSum = new CompensatedSum();
+    private final ReentrantLock sumLock = new ReentrantLock();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_LOCKS];
+    private final ReentrantLock versionLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final DumpManager dumpManager;
+    private final WriteAheadLog wal;
+    private volatile boolean dirty = false;
+    private volatile LocalDateTime lastInitTime;
+    private volatile LocalDateTime lastSaveTime;
+    private final long epoch = System.currentTimeMillis();
+    // Номер версии -> ключ, изменённый последним с этим номером; у каждого ключа одна запись.
+    // Журнал версий защищён versionLock
+    private final TreeMap<Long, Integer> changes = new TreeMap<>();
+    private final HashMap<Integer, Long> keyVersions = new HashMap<>();
+    private long version;
+    private long oldestVersion;
+    private volatile long snapshotVersion;
+    // Пакет изменений: наибольшая запись журнала, подтверждения которой ждут в конце пакета.
+    // Защищены блокировкой коллекции на запись
+    private boolean batching;
+    private long batchSequence;
+
+    /**
+     * Коллекция без журнала: изменения попадают на диск только при сохранении.
+     *
+     * @param dumpManager менеджер файла дампа, из которого коллекция загружается и в который сохраняется
+     */
+    public CollectionStore(DumpManager dumpManager) {
+        this(dumpManager, null);
+    }
+
+    /**
+     * @param dumpManager менеджер файла дампа (снимка коллекции)
+     * @param wal         журнал изменений или null
+     */
+    public CollectionStore(DumpManager dumpManager, WriteAheadLog wal) {
+        this.dumpManager = dumpManager;
+        this.wal = wal;
+        for (int i = 0; i < KEY_LOCKS; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Загружает коллекцию из снимка и применяет к ней записи журнала.
+     *
+     * @throws IOException если журнал не удалось открыть
+     */
+    public void load() throws IOException {
+        lock.writeLock().lock();
+        try {
+            collection.clear();
+            dumpManager.loadCollection(humanBeing -> collection.put(humanBeing.getId(), humanBeing));
+            dirty = false;
+            if (wal != null) {
+                int replayed = wal.recover(collection);
+                if (replayed > 0) {
+                    logger.log(Level.INFO, "Из журнала восстановлено изменений: " + replayed);
+                    dirty = true;
+                }
+            }
+            size.set(collection.size());
+            recountSum();
+            lastInitTime = LocalDateTime.now();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Заменяет коллекцию XML-дампом, присланным клиентом целиком. Журнал при этом очищается.
+     *
+     * @param xmlData поток с XML-дампом
+     * @return true, если дамп корректен и коллекция заменена
+     */
+    public boolean restore(InputStream xmlData) {
+        snapshotLock.lock();
+        lock.writeLock().lock();
+        try {
+            if (!dumpManager.writeCollection(xmlData)) return false;
+            if (wal != null) wal.reset();
+            collection.clear();
+            dumpManager.loadCollection(humanBeing -> collection.put(humanBeing.getId(), humanBeing));
+            size.set(collection.size());
+            recountSum();
+            dirty = false;
+            snapshotVersion = resetChanges();
+            lastInitTime = LocalDateTime.now();
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка при очистке журнала: " + e.getMessage());
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Записывает снимок коллекции в файл дампа и начинает журнал заново.
+     * Изменения приостанавливаются только на время копирования ссылок на элементы,
+     * сам снимок пишется параллельно с новыми изменениями.
+     *
+     * @return true, если снимок записан
+     */
+    public boolean save() {
+        snapshotLock.lock();
+        try {
+            List<Map.Entry<Integer, HumanBeing>> entries;
+            long entriesVersion;
+            // Снимок и переключение журнала должны разделять одни и те же изменения
+            lock.writeLock().lock();
+            try {
+                entries = new ArrayList<>(size.get());
+                for (Map.Entry<Integer, HumanBeing> entry : collection.entrySet()) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+                entriesVersion = currentVersion();
+                if (wal != null) wal.rotate();
+                dirty = false;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Ошибка при переключении журнала: " + e.getMessage());
+                return false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!dumpManager.writeCollection(entries)) {
+                dirty = true;
+                return false;
+            }
+            if (wal != null) {
+                try {
+                    wal.deleteOld();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Не удалось удалить старый журнал: " + e.getMessage());
+                }
+            }
+            snapshotVersion = entriesVersion;
+            lastSaveTime = LocalDateTime.now();
+            return true;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Записывает снимок, если журнал вырос больше заданного размера.
+     *
+     * @param maxLogSize размер журнала в байтах, после которого нужен снимок
+     */
+    public void saveIfLogExceeds(long maxLogSize) {
+        if (dirty && wal != null && wal.size() >= maxLogSize) save();
+    }
+
+    /**
+     * Записывает коллекцию в файл дампа, если после последнего сохранения она менялась.
+     *
+     * @return true, если файл дампа соответствует коллекции
+     */
+    public boolean saveIfDirty() {
+        return !dirty || save();
+    }
+
+    public HumanBeing get(int key) {
+        return collection.get(key);
+    }
+
+    /**
+     * Добавляет элемент с ключом, равным его id.
+     *
+     * @return true, если элемента с таким ключом ещё не было
+     */
+    public boolean insert(HumanBeing humanBeing) {
+        long sequence;
+        ReentrantLock keyLock = lockKey(humanBeing.getId());
+        try {
+            if (collection.putIfAbsent(humanBeing.getId(), humanBeing) != null) return false;
+            size.incrementAndGet();
+            accountSum(null, humanBeing);
+            changed(humanBeing.getId());
+            sequence = log(wal -> wal.logPut(humanBeing));
+        } finally {
+            unlockKey(keyLock);
+        }
+        commit(sequence);
+        return true;
+    }
+
+    /**
+     * Заменяет элемент с ключом, равным id нового элемента.
+     *
+     * @return true, если элемент с таким ключом существовал
+     */
+    public boolean update(HumanBeing humanBeing) {
+        long sequence;
+        ReentrantLock keyLock = lockKey(humanBeing.getId());
+        try {
+            HumanBeing old = collection.replace(humanBeing.getId(), humanBeing);
+            if (old == null) return false;
+            accountSum(old, humanBeing);
+            changed(humanBeing.getId());
+            sequence = log(wal -> wal.logPut(humanBeing));
+        } finally {
+            unlockKey(keyLock);
+        }
+        commit(sequence);
+        return true;
+    }
+
+    /**
+     * @return true, если элемент с таким ключом существовал и удалён
+     */
+    public boolean remove(int key) {
+        long sequence;
+        ReentrantLock keyLock = lockKey(key);
+        try {
+            HumanBeing old = collection.remove(key);
+            if (old == null) return false;
+            size.decrementAndGet();
+            accountSum(old, null);
+            changed(key);
+            sequence = log(wal -> wal.logRemove(key));
+        } finally {
+            unlockKey(keyLock);
+        }
+        commit(sequence);
+        return true;
+    }
+
+    /**
+     * @return количество удалённых элементов
+     */
+    public int clear() {
+        long sequence;
+        int count;
+        lock.writeLock().lock();
+        try {
+            count = size.get();
+            if (count == 0) return 0;
+            collection.clear();
+            size.set(0);
+            recountSum();
+            // Пустой коллекции проще загрузиться заново, чем помнить удаление каждого ключа
+            resetChanges();
+            sequence = log(WriteAheadLog::logClear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(sequence);
+        return count;
+    }
+
+    /**
+     * Удаляет элементы, превышающие элемент с заданным ключом.
+     *
+     * @return количество удалённых элементов или -1, если элемента с таким ключом нет
+     */
+    public int removeGreater(int key) {
+        long sequence;
+        int count;
+        lock.writeLock().lock();
+        try {
+            if (!collection.containsKey(key)) return -1;
+            NavigableMap<Integer, HumanBeing> range = collection.tailMap(key, false);
+            List<Integer> removed = new ArrayList<>(range.keySet());
+            count = removed.size();
+            if (count == 0) return 0;
+            for (HumanBeing old : range.values()) accountSum(old, null);
+            // Версии получают уже удалённые ключи: синхронизация не должна застать их в коллекции
+            range.clear();
+            size.addAndGet(-count);
+            for (Integer removedKey : removed) changed(removedKey);
+            sequence = log(wal -> wal.logRemoveGreater(key));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(sequence);
+        return count;
+    }
+
+    /**
+     * Удаляет элементы с заданными ключами с одним ожиданием журнала на все удаления.
+     *
+     * @return количество удалённых элементов
+     */
+    public int removeAll(List<Integer> keys) {
+        long sequence = 0;
+        int removed = 0;
+        lock.readLock().lock();
+        try {
+            for (Integer key : keys) {
+                ReentrantLock keyLock = keyLocks[Math.floorMod(key, KEY_LOCKS)];
+                keyLock.lock();
+                try {
+                    HumanBeing old = collection.remove(key);
+                    if (old == null) continue;
+                    size.decrementAndGet();
+                    accountSum(old, null);
+                    changed(key);
+                    sequence = Math.max(sequence, log(wal -> wal.logRemove(key)));
+                    removed++;
+                } finally {
+                    keyLock.unlock();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        commit(sequence);
+        return removed;
+    }
+
+    /**
+     * Удаляет элементы, меньшие элемента с заданным ключом.
+     *
+     * @return количество удалённых элементов или -1, если элемента с таким ключом нет
+     */
+    public int removeLower(int key) {
+        long sequence;
+        int count;
+        lock.writeLock().lock();
+        try {
+            if (!collection.containsKey(key)) return -1;
+            NavigableMap<Integer, HumanBeing> range = collection.headMap(key, false);
+            List<Integer> removed = new ArrayList<>(range.keySet());
+            count = removed.size();
+            if (count == 0) return 0;
+            for (HumanBeing old : range.values()) accountSum(old, null);
+            // Версии получают уже удалённые ключи: синхронизация не должна застать их в коллекции
+            range.clear();
+            size.addAndGet(-count);
+            for (Integer removedKey : removed) changed(removedKey);
+            sequence = log(wal -> wal.logRemoveLower(key));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(sequence);
+        return count;
+    }
+
+    /**
+     * Заменяет элемент с ключом, равным id нового элемента, если новый элемент больше старого.
+     *
+     * @return null, если элемента с таким ключом нет; иначе true, если замена произведена
+     */
+    public Boolean replaceIfGreater(HumanBeing humanBeing) {
+        long sequence;
+        ReentrantLock keyLock = lockKey(humanBeing.getId());
+        try {
+            // Замена проходит, только если сравнивался именно тот элемент, что лежит в коллекции
+            while (true) {
+                HumanBeing old = collection.get(humanBeing.getId());
+                if (old == null) return null;
+                if (!isGreater(humanBeing, old)) return false;
+                if (collection.replace(humanBeing.getId(), old, humanBeing)) {
+                    accountSum(old, humanBeing);
+                    break;
+                }
+            }
+            changed(humanBeing.getId());
+            sequence = log(wal -> wal.logPut(humanBeing));
+        } finally {
+            unlockKey(keyLock);
+        }
+        commit(sequence);
+        return true;
+    }
+
+    /**
+     * Добавляет элемент или заменяет элемент с тем же ключом.
+     * Используется клиентами для отправки изменений, сделанных без связи с сервером.
+     *
+     * @return true, если элемент с таким ключом уже существовал
+     */
+    public boolean put(HumanBeing humanBeing) {
+        long sequence;
+        boolean existed;
+        ReentrantLock keyLock = lockKey(humanBeing.getId());
+        try {
+            HumanBeing old = collection.put(humanBeing.getId(), humanBeing);
+            existed = old != null;
+            if (!existed) size.incrementAndGet();
+            accountSum(old, humanBeing);
+            changed(humanBeing.getId());
+            sequence = log(wal -> wal.logPut(humanBeing));
+        } finally {
+            unlockKey(keyLock);
+        }
+        commit(sequence);
+        return existed;
+    }
+
+    /**
+     * Изменения коллекции после версии, известной клиенту.
+     *
+     * @param since версия, полученная клиентом вместе с дампом или предыдущими изменениями
+     * @return изменения или null, если версия неизвестна или слишком стара и клиенту нужна полная загрузка
+     */
+    public Changes changesSince(String since) {
+        long sinceVersion = parseVersion(since);
+        versionLock.lock();
+        try {
+            if (sinceVersion < oldestVersion || sinceVersion > version) return null;
+            List<HumanBeing> changed = new ArrayList<>();
+            List<Integer> removed = new ArrayList<>();
+            for (Integer key : changes.tailMap(sinceVersion, false).values()) {
+                HumanBeing humanBeing = collection.get(key);
+                if (humanBeing != null) changed.add(humanBeing);
+                else removed.add(key);
+            }
+            return new Changes(formatVersion(version), changed, removed);
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
+    /**
+     * Версия коллекции, не превышающая версию текущего файла дампа.
+     * Клиент, загрузивший дамп, получает с этой версии изменения, которые могли в дамп уже попасть;
+     * повторное применение изменения ничего не портит.
+     */
+    public String getSnapshotVersion() {
+        return formatVersion(snapshotVersion);
+    }
+
+    /**
+     * Запоминает новую версию изменённого ключа. Вызывается после изменения коллекции,
+     * поэтому клиент, получивший эту версию, увидит и новое значение ключа.
+     */
+    private void changed(Integer key) {
+        versionLock.lock();
+        try {
+            long current = ++version;
+            Long previous = keyVersions.put(key, current);
+            if (previous != null) changes.remove(previous);
+            changes.put(current, key);
+            if (changes.size() > MAX_CHANGES) {
+                Map.Entry<Long, Integer> oldest = changes.pollFirstEntry();
+                keyVersions.remove(oldest.getValue());
+                oldestVersion = oldest.getKey();
+            }
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
+    /**
+     * Забывает историю изменений: клиенты с более ранней версией загрузят коллекцию заново.
+     *
+     * @return новая версия коллекции
+     */
+    private long resetChanges() {
+        versionLock.lock();
+        try {
+            changes.clear();
+            keyVersions.clear();
+            oldestVersion = ++version;
+            return version;
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
+    private long currentVersion() {
+        versionLock.lock();
+        try {
+            return version;
+        } finally {
+            versionLock.unlock();
+        }
+    }
+
+    /**
+     * Берёт блокировку изменения одного ключа вместе с разделяемой блокировкой коллекции.
+     *
+     * @return блокировка ключа, которую нужно отпустить через {@link #unlockKey}
+     */
+    private ReentrantLock lockKey(int key) {
+        ReentrantLock keyLock = keyLocks[Math.floorMod(key, KEY_LOCKS)];
+        lock.readLock().lock();
+        keyLock.lock();
+        return keyLock;
+    }
+
+    private void unlockKey(ReentrantLock keyLock) {
+        keyLock.unlock();
+        lock.readLock().unlock();
+    }
+
+    private String formatVersion(long value) {
+        return epoch + "-" + value;
+    }
+
+    private long parseVersion(String value) {
+        if (value == null) return -1;
+        int separator = value.indexOf('-');
+        try {
+            if (separator < 0 || Long.parseLong(value.substring(0, separator)) != epoch) return -1;
+            return Long.parseLong(value.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Добавляет запись об изменении в журнал. Вызывается под блокировкой изменённого ключа или всей коллекции,
+     * чтобы порядок записей в журнале совпадал с порядком изменений.
+     *
+     * @return номер записи, которую нужно дождаться через {@link #commit(long)}, или 0 без журнала
+     */
+    private long log(LogAction action) {
+        dirty = true;
+        if (wal == null) return 0;
+        try {
+            return action.append(wal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Выполняет несколько изменений подряд как одно: блокировка коллекции на запись берётся один раз на весь пакет,
+     * а записи журнала подтверждаются одним ожиданием после последнего изменения. Другие изменения
+     * в это время ждут, чтение не блокируется. Изменения внутри пакета не должны сохранять снимок.
+     *
+     * @param changes изменения коллекции
+     * @return результат changes
+     */
+    public <T> T batch(Supplier<T> changes) {
+        T result;
+        long sequence;
+        lock.writeLock().lock();
+        try {
+            batching = true;
+            batchSequence = 0;
+            try {
+                result = changes.get();
+            } finally {
+                batching = false;
+                sequence = batchSequence;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(sequence);
+        return result;
+    }
+
+    /**
+     * Ждёт, пока запись журнала окажется на диске. Внутри пакета только запоминает запись до конца пакета.
+     */
+    private void commit(long sequence) {
+        if (wal == null || sequence == 0) return;
+        if (lock.isWriteLockedByCurrentThread() && batching) {
+            batchSequence = Math.max(batchSequence, sequence);
+            return;
+        }
+        try {
+            wal.await(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Сравнивает два объекта HumanBeing по ImpactSpeed, MinutesOfWaiting и Name.
+     *
+     * @return true если newHuman больше oldHuman
+     */
+    private static boolean isGreater(HumanBeing newHuman, HumanBeing oldHuman) {
+        float speedCompare = newHuman.getImpactSpeed() - oldHuman.getImpactSpeed();
+        if (speedCompare > 0) return true;
+
+        double waitingCompare = (newHuman.getMinutesOfWaiting() != null ? newHuman.getMinutesOfWaiting() : 0) -
+                (oldHuman.getMinutesOfWaiting() != null ? oldHuman.getMinutesOfWaiting() : 0);
+        if (waitingCompare > 0) return true;
+
+        return newHuman.getName().compareTo(oldHuman.getName()) > 0;
+    }
+
+    /**
+     * @return сумма impactSpeed всех элементов, поддерживаемая при каждом изменении
+     */
+    public double sumOfImpactSpeed() {
+        sumLock.lock();
+        try {
+            return impactSpeedSum.get();
+        } finally {
+            sumLock.unlock();
+        }
+    }
+
+    /**
+     * Учитывает в сумме impactSpeed замену элемента другим.
+     *
+     * @param removed убранный элемент или null
+     * @param added   добавленный элемент или null
+     */
+    private void accountSum(HumanBeing removed, HumanBeing added) {
+        sumLock.lock();
+        try {
+            if (removed != null) impactSpeedSum.add(-removed.getImpactSpeed());
+            if (added != null) impactSpeedSum.add(added.getImpactSpeed());
+        } finally {
+            sumLock.unlock();
+        }
+    }
+
+    /**
+     * Пересчитывает сумму impactSpeed по всей коллекции после её загрузки или очистки.
+     */
+    private void recountSum() {
+        sumLock.lock();
+        try {
+            impactSpeedSum.clear();
+            for (HumanBeing human : collection.values()) impactSpeedSum.add(human.getImpactSpeed());
+        } finally {
+            sumLock.unlock();
+        }
+    }
+
+    /**
+     * @return элементы, имя машины которых меньше заданного
+     */
+    public List<HumanBeing> filterLessThanCar(String carName) {
+        List<HumanBeing> result = new ArrayList<>();
+        for (HumanBeing h : collection.values()) {
+            if (h.getCar() != null && h.getCar().getName().compareTo(carName) < 0) {
+                result.add(h);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return значения weaponType всех элементов в порядке убывания
+     */
+    public List<WeaponType> weaponTypesDescending() {
+        List<WeaponType> result = new ArrayList<>();
+        for (HumanBeing h : collection.values()) {
+            result.add(h.getWeaponType());
+        }
+        result.sort(Comparator.reverseOrder());
+        return result;
+    }
+
+    /**
+     * @return копия элементов коллекции в порядке ключей
+     */
+    public List<HumanBeing> values() {
+        return new ArrayList<>(collection.values());
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return наибольший ключ коллекции или 0, если коллекция пуста
+     */
+    public int lastKey() {
+        Map.Entry<Integer, HumanBeing> last = collection.lastEntry();
+        return last == null ? 0 : last.getKey();
+    }
+
+    public LocalDateTime getLastInitTime() {
+        return lastInitTime;
+    }
+
+    public LocalDateTime getLastSaveTime() {
+        return lastSaveTime;
+    }
+
+    /**
+     * Изменённые и удалённые элементы вместе с версией коллекции, которую они дают.
+     */
+    public static class Changes {
+        private final String version;
+        private final List<HumanBeing> changed;
+        private final List<Integer> removed;
+
+        Changes(String version, List<HumanBeing> changed, List<Integer> removed) {
+            this.version = version;
+            this.changed = changed;
+            this.removed = removed;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public List<HumanBeing> getChanged() {
+            return changed;
+        }
+
+        public List<Integer> getRemoved() {
+            return removed;
+        }
+    }
+
+    private interface LogAction {
+        long append(WriteAheadLog wal) throws IOException;
+    }
+}
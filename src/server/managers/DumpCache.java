@@ -0,0 +1,73 @@
+package server.managers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш готового к отправке содержимого ответа на get_dump.
+ * Хранит прочитанный в буфер вне кучи файл дампа, пока у файла не изменятся
+ * идентификатор, размер или время изменения, либо пока кэш не сброшен явно.
+ * Сам файл кэш открытым не держит, поэтому сохранение может подменить его в любой момент.
+ * При промахе файл загружает только один поток, остальные ждут его и получают тот же буфер,
+ * поэтому одновременные запросы множества клиентов стоят одного чтения с диска.
+ */
+public class DumpCache {
+    private final DumpManager dumpManager;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile DumpManager.LoadedDump cached;
+
+    public DumpCache(DumpManager dumpManager) {
+        this.dumpManager = dumpManager;
+    }
+
+    /**
+     * @return содержимое файла дампа: буфер только для чтения с независимой позицией
+     * @throws IOException если файл не удалось прочитать
+     */
+    public ByteBuffer get() throws IOException {
+        DumpManager.LoadedDump dump = cached;
+        if (dump != null && dumpManager.isCurrent(dump)) {
+            hits.increment();
+            return dump.view();
+        }
+        loadLock.lock();
+        try {
+            // Пока ждали блокировку, файл мог загрузить другой поток
+            dump = cached;
+            if (dump != null && dumpManager.isCurrent(dump)) {
+                hits.increment();
+                return dump.view();
+            }
+            misses.increment();
+            dump = dumpManager.readDump();
+            cached = dump;
+            return dump.view();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает кэш, например после замены коллекции целиком.
+     */
+    public void invalidate() {
+        cached = null;
+        invalidations.increment();
+    }
+
+    /**
+     * @return сводка о попаданиях и промахах кэша
+     */
+    public String describe() {
+        DumpManager.LoadedDump dump = cached;
+        return "Кэш get_dump: попаданий " + hits.sum()
+                + ", промахов " + misses.sum()
+                + ", сбросов " + invalidations.sum()
+                + ", в кэше " + (dump == null ? "ничего" : dump.size() + " байт");
+    }
+}
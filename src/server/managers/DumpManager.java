@@ -1,8 +1,29 @@
 package server.managers;
 
 import common.HumanBeing;
+import common.utility.XmlCollectionReader;
+import common.utility.XmlCollectionWriter;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -10,11 +31,14 @@ import server.utils.ServerLogger;
 
 /**
  * Класс-менеджер для чтения и записи коллекции {@link HumanBeing} в XML-файл.
- * Позволяет сериализовать коллекцию в XML и десериализовать её обратно, используя Dom4j.
+ * Принимает XML-дамп потоком, проверяет его и атомарно подменяет файл.
+ * Доступ к файлу защищён {@link ReentrantReadWriteLock}, а не synchronized,
+ * чтобы блокирующий файловый ввод-вывод не закреплял виртуальные потоки за потоками-носителями.
  */
 public class DumpManager {
     private final String fileName;
     private static final Logger logger = ServerLogger.getInstance();
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
 
     /**
      * Конструктор менеджера дампа.
@@ -27,43 +51,206 @@ public class DumpManager {
 
     /**
      * Сохраняет коллекцию {@link HumanBeing} в XML-файл, принимая XML-дамп в виде строки.
-     * Получает XML-дамп коллекции в виде строки, парсит его и сохраняет в файл.
-     * В случае ошибки выводит сообщение в консоль.
      *
      * @param xmlData XML-дамп коллекции для сохранения
+     * @return true, если дамп корректен и сохранён
      */
-    public void writeCollection(String xmlData) {
+    public boolean writeCollection(String xmlData) {
+        return writeCollection(new ByteArrayInputStream(xmlData.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Сохраняет XML-дамп коллекции {@link HumanBeing}, читая его из потока.
+     * Дамп копируется во временный файл рядом с основным, проверяется потоковым разбором
+     * и только затем атомарно подменяет основной файл, поэтому оборванная или
+     * некорректная передача не портит сохранённую коллекцию.
+     * В случае ошибки пишет сообщение в лог.
+     *
+     * @param xmlData поток с XML-дампом коллекции
+     * @return true, если дамп корректен и сохранён
+     */
+    public boolean writeCollection(InputStream xmlData) {
+        return replaceFile(temp -> {
+            Files.copy(xmlData, temp, StandardCopyOption.REPLACE_EXISTING);
+            validate(temp);
+        });
+    }
+
+    /**
+     * Сохраняет элементы коллекции {@link HumanBeing} в XML-файл.
+     * Файл пишется потоково во временный файл и атомарно подменяет основной.
+     *
+     * @param entries элементы коллекции (ключ — значение)
+     * @return true, если коллекция сохранена
+     */
+    public boolean writeCollection(Iterable<Map.Entry<Integer, HumanBeing>> entries) {
+        return replaceFile(temp -> {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                new XmlCollectionWriter(true).write(entries, out);
+            }
+        });
+    }
+
+    /**
+     * Загружает коллекцию {@link HumanBeing} из XML-файла, передавая элементы обработчику по мере разбора.
+     * Ошибки в отдельных элементах пишутся в лог и не прерывают загрузку.
+     *
+     * @param onElement обработчик загруженных элементов
+     * @return true, если файл прочитан; false, если его нет или он некорректен
+     */
+    public boolean loadCollection(Consumer<HumanBeing> onElement) {
+        Path file = Paths.get(fileName);
+        fileLock.readLock().lock();
         try {
-            org.dom4j.io.SAXReader reader = new org.dom4j.io.SAXReader();
-            org.dom4j.Document document = reader.read(new java.io.StringReader(xmlData));
-            org.dom4j.io.OutputFormat format = org.dom4j.io.OutputFormat.createPrettyPrint();
-            format.setEncoding("UTF-8");
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-                org.dom4j.io.XMLWriter xmlWriter = new org.dom4j.io.XMLWriter(writer, format);
-                xmlWriter.write(document);
+            if (!Files.exists(file)) {
+                logger.log(Level.WARNING, "Файл дампа " + fileName + " не найден, коллекция пуста");
+                return false;
+            }
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                new XmlCollectionReader(onElement, error -> logger.log(Level.WARNING, error)).read(in);
             }
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Ошибка при загрузке коллекции: " + e.getMessage());
+            return false;
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Заполняет временный файл рядом с основным, сбрасывает его на диск и атомарно подменяет им основной.
+     * Временный файл удаляется в любом случае.
+     */
+    private boolean replaceFile(FileFiller filler) {
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            filler.fill(temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            fileLock.writeLock().lock();
+            try {
+                move(temp, target);
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+            return true;
         } catch (Exception e) {
             logger.log(Level.WARNING, "Ошибка при сохранении коллекции: " + e.getMessage());
+            return false;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Не удалось удалить временный файл " + temp);
+                }
+            }
+        }
+    }
+
+    private static void validate(Path file) throws IOException, XMLStreamException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            new XmlCollectionReader(
+                    humanBeing -> { },
+                    error -> logger.log(Level.WARNING, error)
+            ).read(in);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
     /**
-     * Возвращает XML-дамп коллекции, считанной из файла (или текущей коллекции).
-     * Используется для передачи коллекции клиенту по сети.
+     * Читает файл дампа целиком в буфер вне кучи, чтобы последующие отправки не обращались к диску.
+     * Файл закрывается сразу после чтения и не отображается в память: отображение держало бы файл открытым
+     * до сборки мусора, а в Windows открытый файл нельзя подменить при следующем сохранении.
+     * Если файла ещё нет, возвращается пустая коллекция.
      *
-     * @return XML-дамп коллекции или пустую строку в случае ошибки
+     * @return содержимое вместе с атрибутами файла на момент чтения
      */
-    public String readCollection() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-            StringBuilder xmlContent = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                xmlContent.append(line).append("\n");
+    LoadedDump readDump() throws IOException {
+        Path file = Paths.get(fileName);
+        fileLock.readLock().lock();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attributes.size() > Integer.MAX_VALUE) throw new IOException("Файл дампа больше 2 ГБ");
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) attributes.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) throw new EOFException("Файл дампа укоротился во время чтения");
             }
-            return xmlContent.toString();
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Ошибка при чтении XML-дампа: " + e.getMessage());
-            return "";
+            return new LoadedDump(buffer.flip(), attributes);
+        } catch (NoSuchFileException e) {
+            return new LoadedDump(emptyDump(), null);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private static ByteBuffer emptyDump() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new XmlCollectionWriter(true).write(List.of(), out);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * @return true, если файл дампа не менялся с момента чтения
+     */
+    boolean isCurrent(LoadedDump dump) {
+        try {
+            return dump.matches(Files.readAttributes(Paths.get(fileName), BasicFileAttributes.class));
+        } catch (IOException e) {
+            return false;
         }
     }
+
+    /**
+     * Содержимое файла дампа и атрибуты файла на момент чтения; для отсутствующего файла атрибутов нет.
+     */
+    static class LoadedDump {
+        private final ByteBuffer buffer;
+        private final Object fileKey;
+        private final FileTime lastModified;
+        private final long size;
+
+        LoadedDump(ByteBuffer buffer, BasicFileAttributes attributes) {
+            this.buffer = buffer;
+            this.fileKey = attributes != null ? attributes.fileKey() : null;
+            this.lastModified = attributes != null ? attributes.lastModifiedTime() : null;
+            this.size = buffer.remaining();
+        }
+
+        /**
+         * @return буфер только для чтения с независимой позицией
+         */
+        ByteBuffer view() {
+            return buffer.asReadOnlyBuffer();
+        }
+
+        long size() {
+            return size;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return Objects.equals(fileKey, attributes.fileKey())
+                    && Objects.equals(lastModified, attributes.lastModifiedTime())
+                    && size == attributes.size();
+        }
+    }
+
+    private interface FileFiller {
+        void fill(Path temp) throws Exception;
+    }
 }
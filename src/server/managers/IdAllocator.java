@@ -0,0 +1,107 @@
+package server.managers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Выдаёт клиентам блоки подряд идущих id для новых элементов (команда lease_ids).
+ * Выданный блок принадлежит одному клиенту, поэтому id разных клиентов не совпадают.
+ * <p>
+ * Блоки выдаются сравнением с обменом над счётчиком без блокировок. Граница выданных id хранится в файле
+ * и сдвигается с запасом в {@link #RESERVE} id, поэтому запись с fsync нужна раз на много блоков, а после
+ * перезапуска сервер продолжает выдачу с сохранённой границы и не повторяет уже выданные id.
+ * </p>
+ */
+public class IdAllocator implements Closeable {
+    /**
+     * Наибольший блок, который можно получить одним запросом.
+     */
+    public static final int MAX_LEASE = 100_000;
+    private static final int RESERVE = 100_000;
+
+    private final Path path;
+    private final ReentrantLock reserveLock = new ReentrantLock();
+    // Первый ещё не выданный id
+    private final AtomicInteger next = new AtomicInteger(1);
+    // Граница, записанная в файл: все id меньше неё могли быть выданы
+    private volatile int reserved = 1;
+    private FileChannel channel;
+
+    /**
+     * @param fileName имя файла с границей выданных id
+     */
+    public IdAllocator(String fileName) {
+        this.path = Paths.get(fileName).toAbsolutePath();
+    }
+
+    /**
+     * Открывает файл границы и продолжает выдачу с неё.
+     *
+     * @throws IOException если файл не удалось открыть или прочитать
+     */
+    public void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer mark = ByteBuffer.allocate(Integer.BYTES);
+        if (channel.read(mark, 0) == Integer.BYTES) {
+            reserved = Math.max(1, mark.flip().getInt());
+            next.set(reserved);
+        }
+    }
+
+    /**
+     * Выдаёт блок id.
+     *
+     * @param count   размер блока, от 1 до {@link #MAX_LEASE}
+     * @param lastKey наибольший ключ коллекции: id, уже занятые элементами, не выдаются
+     * @return первый id блока или -1, если блок не помещается в диапазон int
+     * @throws IOException если новую границу не удалось записать в файл
+     */
+    public int lease(int count, int lastKey) throws IOException {
+        while (true) {
+            int current = next.get();
+            long first = Math.max(current, (long) lastKey + 1);
+            long end = first + count;
+            if (end > Integer.MAX_VALUE) return -1;
+            if (end > reserved) {
+                reserve((int) end);
+                continue;
+            }
+            if (next.compareAndSet(current, (int) end)) return (int) first;
+        }
+    }
+
+    /**
+     * Записывает в файл границу не меньше заданной, чтобы после перезапуска её id не выдавались повторно.
+     */
+    private void reserve(int end) throws IOException {
+        reserveLock.lock();
+        try {
+            if (end <= reserved) return;
+            int mark = (int) Math.min(Integer.MAX_VALUE, (long) end + RESERVE);
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, mark), 0);
+            channel.force(false);
+            reserved = mark;
+        } finally {
+            reserveLock.unlock();
+        }
+    }
+
+    /**
+     * @return краткая сводка для консоли сервера
+     */
+    public String describe() {
+        return "Следующий id: " + next.get() + ", сохранённая граница: " + reserved;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
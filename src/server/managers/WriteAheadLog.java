@@ -0,0 +1,412 @@
+package server.managers;
+
+import common.HumanBeing;
+import common.serverUtils.BinaryCodec;
+import server.utils.ServerLogger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.NavigableMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи изменений коллекции.
+ * <p>
+ * Каждое изменение дописывается в конец файла отдельной записью: длина (int), CRC32 (int)
+ * и тело — код операции и её аргументы в формате {@link BinaryCodec}. Записи накапливаются в памяти,
+ * а отдельный поток сбрасывает накопленное одной записью в файл и одним fsync (групповая фиксация):
+ * пока идёт fsync, новые записи копятся для следующей группы.
+ * </p>
+ * <p>
+ * При создании снимка текущий файл журнала переименовывается в *.old, а после успешной записи снимка
+ * удаляется. Все операции задают значения ключей, а не изменяют их относительно старых, поэтому
+ * повторное применение записей, уже вошедших в снимок, даёт то же состояние.
+ * </p>
+ */
+public class WriteAheadLog implements Closeable {
+    private static final Logger logger = ServerLogger.getInstance();
+
+    private static final int PUT = 1;
+    private static final int REMOVE = 2;
+    private static final int CLEAR = 3;
+    private static final int REMOVE_GREATER = 4;
+    private static final int REMOVE_LOWER = 5;
+    private static final int RECORD_HEADER = 8;
+    private static final int MAX_RECORD = 1 << 20;
+
+    private final Path path;
+    private final Path oldPath;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasPending = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private ByteArrayOutputStream writing = new ByteArrayOutputStream();
+    private FileChannel channel;
+    private OutputStream channelOut;
+    private Thread flusher;
+    private boolean running = false;
+    private IOException failure;
+    private long appended = 0;
+    private long durable = 0;
+    private long size = 0;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+
+    /**
+     * @param fileName имя файла журнала
+     */
+    public WriteAheadLog(String fileName) {
+        this.path = Paths.get(fileName).toAbsolutePath();
+        this.oldPath = Paths.get(fileName + ".old").toAbsolutePath();
+    }
+
+    /**
+     * Применяет к коллекции записи журнала (сначала незавершённого снимка, затем текущего),
+     * отрезает недописанный хвост и открывает журнал для записи.
+     *
+     * @param collection коллекция, загруженная из последнего снимка
+     * @return количество применённых записей
+     */
+    public int recover(NavigableMap<Integer, HumanBeing> collection) throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) throw new IllegalStateException("Журнал уже открыт");
+            int count = 0;
+            if (Files.exists(oldPath)) count += replay(oldPath, collection);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long valid = 0;
+            if (channel.size() > 0) {
+                long[] validLength = new long[1];
+                count += replay(path, collection, validLength);
+                valid = validLength[0];
+                if (valid < channel.size()) {
+                    logger.log(Level.WARNING, "Журнал " + path + " обрезан до последней целой записи");
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            }
+            channel.position(valid);
+            channelOut = Channels.newOutputStream(channel);
+            size = valid;
+            running = true;
+            flusher = new Thread(this::flushLoop, "Журнал");
+            flusher.setDaemon(true);
+            flusher.start();
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long logPut(HumanBeing humanBeing) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PUT);
+        BinaryCodec.writeHumanBeing(out, humanBeing);
+        return append(bytes.toByteArray());
+    }
+
+    public long logRemove(int key) throws IOException {
+        return append(keyRecord(REMOVE, key));
+    }
+
+    public long logClear() throws IOException {
+        return append(new byte[]{CLEAR});
+    }
+
+    public long logRemoveGreater(int key) throws IOException {
+        return append(keyRecord(REMOVE_GREATER, key));
+    }
+
+    public long logRemoveLower(int key) throws IOException {
+        return append(keyRecord(REMOVE_LOWER, key));
+    }
+
+    /**
+     * Ждёт, пока запись с указанным номером не окажется на диске.
+     *
+     * @param sequence номер, полученный при добавлении записи
+     * @throws IOException если запись в файл журнала не удалась
+     */
+    public void await(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durable < sequence && failure == null) {
+                flushed.await();
+            }
+            if (durable < sequence) throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание записи журнала прервано");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Начинает новый файл журнала перед созданием снимка. Прежний файл сохраняется как *.old
+     * до вызова {@link #deleteOld()}; если он остался от неудачного снимка, текущий дописывается к нему.
+     * Вызывается, когда коллекция не изменяется.
+     */
+    public void rotate() throws IOException {
+        lock.lock();
+        try {
+            awaitAll();
+            if (Files.exists(oldPath)) {
+                try (FileChannel old = FileChannel.open(oldPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    long position = 0;
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, old);
+                    }
+                    old.force(true);
+                }
+                channel.truncate(0);
+            } else {
+                channel.close();
+                Files.move(path, oldPath, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channelOut = Channels.newOutputStream(channel);
+            }
+            channel.position(0);
+            channel.force(true);
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет журнал, уже вошедший в успешно записанный снимок.
+     */
+    public void deleteOld() throws IOException {
+        Files.deleteIfExists(oldPath);
+    }
+
+    /**
+     * Очищает журнал, когда коллекция целиком заменена новым снимком.
+     */
+    public void reset() throws IOException {
+        lock.lock();
+        try {
+            awaitAll();
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            size = 0;
+            Files.deleteIfExists(oldPath);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return размер текущего файла журнала в байтах, включая ещё не сброшенные записи
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return сводка о записях и групповых фиксациях журнала
+     */
+    public String describe() {
+        long recordCount = records.sum();
+        long groupCount = groups.sum();
+        return "Журнал: записей " + recordCount + ", групповых фиксаций " + groupCount
+                + ", записей на фиксацию " + (groupCount == 0 ? 0 : String.format("%.1f", (double) recordCount / groupCount))
+                + ", размер " + size() + " байт";
+    }
+
+    /**
+     * Дожидается сброса всех записей и останавливает поток журнала.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel == null) return;
+            awaitAll();
+            running = false;
+            hasPending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private long append(byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD) throw new IOException("Слишком большая запись журнала");
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        lock.lock();
+        try {
+            if (failure != null) throw failure;
+            if (!running) throw new IOException("Журнал закрыт");
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+            size += RECORD_HEADER + payload.length;
+            records.increment();
+            hasPending.signal();
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitAll() throws IOException {
+        if (failure != null) throw failure;
+        await(appended);
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            long target;
+            lock.lock();
+            try {
+                while (pending.size() == 0 && running) {
+                    hasPending.awaitUninterruptibly();
+                }
+                if (pending.size() == 0) return;
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                target = appended;
+            } finally {
+                lock.unlock();
+            }
+            IOException error = null;
+            try {
+                batch.writeTo(channelOut);
+                channel.force(false);
+                groups.increment();
+            } catch (IOException e) {
+                error = e;
+                logger.log(Level.SEVERE, "Ошибка записи журнала: " + e.getMessage());
+            }
+            batch.reset();
+            lock.lock();
+            try {
+                if (error != null) failure = error;
+                else durable = target;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static byte[] keyRecord(int operation, int key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(operation);
+        BinaryCodec.writeVarLong(out, BinaryCodec.zigzag(key));
+        return bytes.toByteArray();
+    }
+
+    private static int replay(Path file, NavigableMap<Integer, HumanBeing> collection) throws IOException {
+        return replay(file, collection, new long[1]);
+    }
+
+    /**
+     * Применяет записи файла до первой недописанной или повреждённой.
+     *
+     * @param validLength сюда записывается длина целой части файла
+     */
+    private static int replay(Path file, NavigableMap<Integer, HumanBeing> collection, long[] validLength) throws IOException {
+        int count = 0;
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD) break;
+                byte[] payload = new byte[length];
+                int crcValue;
+                try {
+                    crcValue = in.readInt();
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != crcValue) break;
+                try {
+                    apply(new DataInputStream(new ByteArrayInputStream(payload)), collection);
+                } catch (IOException e) {
+                    break;
+                }
+                valid += RECORD_HEADER + length;
+                count++;
+            }
+        }
+        validLength[0] = valid;
+        return count;
+    }
+
+    private static void apply(DataInputStream in, NavigableMap<Integer, HumanBeing> collection) throws IOException {
+        int operation = in.readUnsignedByte();
+        switch (operation) {
+            case PUT: {
+                HumanBeing humanBeing = BinaryCodec.readHumanBeing(in);
+                collection.put(humanBeing.getId(), humanBeing);
+                break;
+            }
+            case REMOVE:
+                collection.remove(readKey(in));
+                break;
+            case CLEAR:
+                collection.clear();
+                break;
+            case REMOVE_GREATER:
+                collection.tailMap(readKey(in), false).clear();
+                break;
+            case REMOVE_LOWER:
+                collection.headMap(readKey(in), false).clear();
+                break;
+            default:
+                throw new IOException("Неизвестная операция журнала: " + operation);
+        }
+    }
+
+    private static int readKey(DataInputStream in) throws IOException {
+        return (int) BinaryCodec.unzigzag(BinaryCodec.readVarLong(in));
+    }
+}
@@ -5,32 +5,41 @@ import server.utils.ServerLogger;
 import java.io.IOException;
 import java.net.BindException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static common.serverUtils.Serializer.deserialize;
-import static common.serverUtils.Serializer.serialize;
+import common.serverUtils.Message;
 import common.serverUtils.Request;
 import common.serverUtils.Response;
+import common.serverUtils.Transport;
 
 
 public class Server {
     private final Logger logger = ServerLogger.getInstance();
     private final int port;
-    private final int bufferSize = 2048;
+    private final int maxPayload;
+    private final int maxMessage;
+    private final int poolCapacity;
     private DatagramChannel channel;
-    private final ExecutorService responseCashedPoll = Executors.newCachedThreadPool();
-    private final ExecutorService readCashedPoll = Executors.newCachedThreadPool();
-    private final Lock serverLock = new ReentrantLock();
+    private Transport transport;
 
     public Server(int port) {
+        this(port, Transport.DEFAULT_MAX_PAYLOAD, Transport.DEFAULT_MAX_MESSAGE, Transport.DEFAULT_POOL_CAPACITY);
+    }
+
+    /**
+     * @param maxPayload   максимальный размер полезной нагрузки одного фрагмента
+     * @param maxMessage   максимальный размер принимаемого запроса
+     * @param poolCapacity сколько свободных буферов датаграмм хранит пул
+     */
+    public Server(int port, int maxPayload, int maxMessage, int poolCapacity) {
         this.port = port;
+        this.maxPayload = maxPayload;
+        this.maxMessage = maxMessage;
+        this.poolCapacity = poolCapacity;
     }
 
     public void startServer() throws IOException {
@@ -42,35 +51,46 @@ public class Server {
             logger.log(Level.SEVERE, "Порт занят");
             System.exit(1);
         }
+        transport = new Transport(channel, maxPayload, maxMessage, poolCapacity);
         logger.log(Level.INFO, "Открыт порт " + this.port);
     }
 
-    public Request receiveRequest() {
+    /**
+     * Вычитывает все ожидающие в канале датаграммы и передаёт собранные сообщения обработчику.
+     * Вызывается только из потока ввода-вывода.
+     *
+     * @param handler обработчик собранных сообщений
+     */
+    public void drainMessages(Consumer<Message> handler) {
         try {
-            ByteBuffer byteBuffer = ByteBuffer.allocate(bufferSize);
-            byteBuffer.clear();
-
-            serverLock.lock();
-            InetSocketAddress inetSocketAddress;
-            try {
-                inetSocketAddress = (InetSocketAddress) channel.receive(byteBuffer);
-            } finally {
-                serverLock.unlock();
-            }
+            transport.drain(handler);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "IO ошибка при чтении датаграмм");
+        }
+    }
 
-            byteBuffer.flip();
-            Object object = deserialize(byteBuffer.array());
-            Request request;
-            if (object instanceof Request) {
-                request = (Request) object;
-            } else {
-                return new Request("", "");
+    /**
+     * Десериализует запрос из собранного сообщения.
+     * Остаток сообщения после запроса доступен как {@link Request#getBody()},
+     * поэтому освобождать сообщение нужно только после обработки запроса.
+     *
+     * @return запрос или null, если сообщение повреждено или содержит не запрос
+     */
+    public Request parseRequest(Message message) {
+        try {
+            InetSocketAddress inetSocketAddress = message.getAddress();
+            Object object = deserialize(message.getBody());
+            if (!(object instanceof Request)) {
+                logger.log(Level.WARNING, "Получено сообщение, не являющееся запросом");
+                return null;
             }
-            byteBuffer.clear();
+            Request request = (Request) object;
             request.setClientAddress(inetSocketAddress);
-            logger.log(Level.INFO, "Получен запрос" + inetSocketAddress.toString());
+            request.setBody(message.getBody());
+            logger.log(Level.FINE, () -> "Получен запрос" + inetSocketAddress);
             return request;
         } catch (IOException | ClassNotFoundException e) {
+            logger.log(Level.WARNING, "Получен повреждённый запрос");
             return null;
         }
     }
@@ -79,30 +99,44 @@ public class Server {
         if (response == null) {
             return;
         }
-        responseCashedPoll.submit(() -> {
-                    try {
-                        ByteBuffer byteBuffer = ByteBuffer.allocate(bufferSize);
-                        byteBuffer.clear();
-                        byteBuffer = ByteBuffer.wrap(serialize(response));
-                        channel.send(byteBuffer, response.getClientAddress());
-                        byteBuffer.clear();
-                        logger.log(Level.INFO, "Отправлен ответ на "+response.getClientAddress().toString());
-                    } catch (IOException e) {
-                        logger.log(Level.SEVERE, "IO ошибка во время ответа по адресу "+response.getClientAddress().toString());
-                    }
-                }
-        );
+        try {
+            if (response.getPayload() != null) {
+                transport.send(response, response.getPayload(), response.getClientAddress());
+            } else {
+                transport.send(response, response.getClientAddress());
+            }
+            logger.log(Level.FINE, () -> "Отправлен ответ на " + response.getClientAddress());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "IO ошибка во время ответа по адресу "+response.getClientAddress().toString());
+        }
     }
 
-    public DatagramChannel getChannel() {
-        return this.channel;
+    /**
+     * Запрашивает повторную передачу потерянных фрагментов у клиентов.
+     */
+    public void sweep() {
+        try {
+            transport.sweep();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "IO ошибка при запросе недостающих фрагментов");
+        }
+    }
+
+    /**
+     * @return сводка об использовании пула буферов транспорта
+     */
+    public String describeBuffers() {
+        return transport.getPool().describe();
     }
 
-    public ExecutorService getResponseCashedPoll() {
-        return this.responseCashedPoll;
+    /**
+     * @return сводка о принятых и отправленных датаграммах
+     */
+    public String describeTraffic() {
+        return transport.describeTraffic();
     }
 
-    public ExecutorService getReadCashedPoll() {
-        return this.readCashedPoll;
+    public DatagramChannel getChannel() {
+        return this.channel;
     }
 }
\ No newline at end of file
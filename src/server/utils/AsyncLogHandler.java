@@ -0,0 +1,192 @@
+package server.utils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Асинхронный обработчик журнала сервера. Поток, пишущий в журнал, только кладёт запись в {@link RingBuffer};
+ * форматирование и вывод делает один фоновый поток пачками: вся пачка уходит в файл одной записью,
+ * а записи уровня не ниже консольного — одной печатью в System.err.
+ * <p>
+ * Если буфер заполнен, запись отбрасывается и учитывается в счётчике потерянных: журнал никогда не задерживает
+ * обработку запросов. О потерянных записях фоновый поток сообщает в самом журнале.
+ * </p>
+ */
+class AsyncLogHandler extends Handler {
+    private static final int BATCH_SIZE = 512;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final RingBuffer<Entry> buffer;
+    private final Level consoleLevel;
+    private final Formatter messages = new SimpleFormatter();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Thread writer;
+    private volatile OutputStream file;
+    private volatile boolean running = true;
+    private volatile boolean sleeping;
+
+    /**
+     * @param capacity     ёмкость буфера записей
+     * @param consoleLevel наименьший уровень записей, которые дублируются в System.err
+     */
+    AsyncLogHandler(int capacity, Level consoleLevel) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.consoleLevel = consoleLevel;
+        this.writer = new Thread(this::drain, "Журнал");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Начинает дописывать журнал в файл. Записи, сделанные раньше, попадают только в консоль.
+     *
+     * @throws IOException если файл не удалось открыть
+     */
+    void openFile(Path path) throws IOException {
+        OutputStream previous = file;
+        file = new FileOutputStream(path.toFile(), true);
+        // Старый файл закроет фоновый поток: он может как раз писать в него пачку
+        if (previous != null) LockSupport.unpark(writer);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) return;
+        // Имя потока запоминается сразу: форматирует запись другой поток
+        if (!buffer.offer(new Entry(record, Thread.currentThread().getName()))) {
+            dropped.increment();
+            return;
+        }
+        if (sleeping) LockSupport.unpark(writer);
+    }
+
+    @Override
+    public void flush() {
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Дописывает оставшиеся записи и закрывает файл. Повторный вызов ничего не делает.
+     */
+    @Override
+    public void close() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return краткая сводка для консоли сервера
+     */
+    String describe() {
+        return "Журнал: записано " + written.sum() + ", потеряно " + dropped.sum()
+                + ", в буфере " + buffer.size() + " из " + buffer.capacity();
+    }
+
+    private void drain() {
+        StringBuilder fileBatch = new StringBuilder();
+        StringBuilder consoleBatch = new StringBuilder();
+        OutputStream current = null;
+        long reportedDrops = 0;
+        while (true) {
+            int count = 0;
+            Entry entry;
+            while (count < BATCH_SIZE && (entry = buffer.poll()) != null) {
+                String line = format(entry);
+                fileBatch.append(line);
+                if (entry.record.getLevel().intValue() >= consoleLevel.intValue()) consoleBatch.append(line);
+                count++;
+            }
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                String line = format(new Entry(new LogRecord(Level.WARNING,
+                        "Буфер журнала переполнен, потеряно записей: " + (drops - reportedDrops)), writer.getName()));
+                fileBatch.append(line);
+                consoleBatch.append(line);
+                reportedDrops = drops;
+            }
+
+            if (current != file) {
+                closeQuietly(current);
+                current = file;
+            }
+            if (current != null && fileBatch.length() > 0) {
+                try {
+                    current.write(fileBatch.toString().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    consoleBatch.append("Ошибка записи журнала в файл: ").append(e.getMessage()).append('\n');
+                }
+            }
+            if (consoleBatch.length() > 0) System.err.print(consoleBatch);
+            written.add(count);
+            fileBatch.setLength(0);
+            consoleBatch.setLength(0);
+
+            if (count == 0) {
+                if (!running && buffer.isEmpty()) break;
+                sleeping = true;
+                // Повторная проверка после объявления о сне: иначе можно пропустить запись, добавленную между ними
+                if (running && buffer.isEmpty()) LockSupport.parkNanos(IDLE_NANOS);
+                sleeping = false;
+            }
+        }
+        closeQuietly(current);
+    }
+
+    private String format(Entry entry) {
+        LogRecord record = entry.record;
+        StringBuilder line = new StringBuilder(128)
+                .append(TIME.format(LocalDateTime.ofInstant(record.getInstant(), ZoneId.systemDefault())))
+                .append(' ').append(record.getLevel().getName())
+                .append(" [").append(entry.thread).append("] ")
+                .append(messages.formatMessage(record)).append('\n');
+        if (record.getThrown() != null) {
+            StringWriter trace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+        return line.toString();
+    }
+
+    private static void closeQuietly(OutputStream stream) {
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+            // Файл журнала больше не нужен, сообщать об ошибке некуда
+        }
+    }
+
+    private static class Entry {
+        private final LogRecord record;
+        private final String thread;
+
+        Entry(LogRecord record, String thread) {
+            this.record = record;
+            this.thread = thread;
+        }
+    }
+}
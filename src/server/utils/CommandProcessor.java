@@ -0,0 +1,320 @@
+package server.utils;
+
+import common.HumanBeing;
+import common.WeaponType;
+import common.serverUtils.Request;
+import common.serverUtils.Response;
+import server.managers.CollectionStore;
+import server.managers.DumpCache;
+import server.managers.IdAllocator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Выполняет команды клиентов над общей коллекцией {@link CollectionStore}.
+ * Команды изменения передают только ключ (в dataRequest) или один элемент (в humanBeing),
+ * поэтому объём трафика не зависит от размера коллекции.
+ * Команда batch выполняет по порядку несколько команд изменения, присланных одним запросом,
+ * и отвечает списком ответов в том же порядке.
+ */
+public class CommandProcessor {
+    /**
+     * Команды, которые могут входить в пакет: они только изменяют коллекцию и не сохраняют снимок.
+     */
+    private static final Set<String> BATCH_COMMANDS = Set.of("insert", "update", "put", "remove_key", "remove_keys",
+            "replace_if_greater", "remove_greater", "remove_lower", "clear");
+    /**
+     * Команды, повтор которых снова изменил бы коллекцию или выдал бы новые id.
+     * Остальные команды только читают коллекцию или сохраняют её файл, и их можно выполнить повторно.
+     */
+    private static final Set<String> RUN_ONCE_COMMANDS = Set.of("insert", "update", "put", "remove_key", "remove_keys",
+            "replace_if_greater", "remove_greater", "remove_lower", "clear", "batch", "lease_ids", "save_dump");
+    private final Map<String, Function<Request, Response>> commands = new HashMap<>();
+    private final CollectionStore store;
+    private final DumpCache dumpCache;
+    private final IdAllocator idAllocator;
+
+    public CommandProcessor(CollectionStore store, DumpCache dumpCache, IdAllocator idAllocator) {
+        this.store = store;
+        this.dumpCache = dumpCache;
+        this.idAllocator = idAllocator;
+
+        commands.put("save_dump", this::saveDump);
+        commands.put("get_dump", this::getDump);
+        commands.put("save", this::save);
+        commands.put("sync", this::sync);
+        commands.put("put", this::put);
+        commands.put("lease_ids", this::leaseIds);
+        commands.put("insert", this::insert);
+        commands.put("update", this::update);
+        commands.put("remove_key", this::removeKey);
+        commands.put("remove_keys", this::removeKeys);
+        commands.put("clear", this::clear);
+        commands.put("remove_greater", this::removeGreater);
+        commands.put("remove_lower", this::removeLower);
+        commands.put("replace_if_greater", this::replaceIfGreater);
+        commands.put("sum_of_impact_speed", this::sumOfImpactSpeed);
+        commands.put("filter_less_than_car", this::filterLessThanCar);
+        commands.put("print_field_descending_weapon_type", this::printFieldDescendingWeaponType);
+        commands.put("show", this::show);
+        commands.put("info", this::info);
+        commands.put("batch", this::batch);
+    }
+
+    /**
+     * @return названия всех известных команд
+     */
+    public Set<String> getCommandNames() {
+        return commands.keySet();
+    }
+
+    /**
+     * @return true, если повтор запроса с этой командой должен получить сохранённый ответ, а не выполниться заново
+     */
+    public boolean runsOnce(String command) {
+        return command != null && RUN_ONCE_COMMANDS.contains(command);
+    }
+
+    /**
+     * Выполняет команду запроса.
+     *
+     * @return ответ клиенту
+     */
+    public Response process(Request request) {
+        Function<Request, Response> command = commands.get(request.getClientRequest());
+        if (command == null) {
+            return new Response(false, "Неизвестная команда: " + request.getClientRequest());
+        }
+        try {
+            return command.apply(request);
+        } catch (NumberFormatException e) {
+            return new Response(false, "Ключ должен быть натуральным числом больше 0!");
+        } catch (UncheckedIOException e) {
+            return new Response(false, "Ошибка : изменение не записано в журнал сервера: " + e.getCause().getMessage());
+        }
+    }
+
+    private Response batch(Request request) {
+        List<Request> requests = request.getBatch();
+        if (requests == null) return new Response(false, "Пакет команд пуст!");
+        // Пакет выполняется под одной блокировкой коллекции и ждёт журнал один раз
+        List<Response> responses = store.batch(() -> {
+            List<Response> results = new ArrayList<>(requests.size());
+            for (Request part : requests) {
+                // Пустой элемент списка Java-сериализация пропускает, как и любое другое значение
+                if (part == null) {
+                    results.add(new Response(false, "Пустая команда не может входить в пакет"));
+                    continue;
+                }
+                part.setClientAddress(request.getClientAddress());
+                // Set.of не принимает null, а пустое имя команды декодируется как null
+                results.add(part.getClientRequest() != null && BATCH_COMMANDS.contains(part.getClientRequest())
+                        ? process(part)
+                        : new Response(false, "Команда " + part.getClientRequest() + " не может входить в пакет"));
+            }
+            return results;
+        });
+        Response response = new Response("Выполнено команд: " + responses.size());
+        response.setBatch(responses);
+        return response;
+    }
+
+    private Response saveDump(Request request) {
+        // Коллекция, присланная клиентом целиком: строкой от старых клиентов или телом сообщения
+        InputStream xmlData = request.getDataRequest() != null
+                ? new ByteArrayInputStream(request.getDataRequest().getBytes(StandardCharsets.UTF_8))
+                : request.getBody();
+        if (xmlData == null || !store.restore(xmlData)) {
+            return new Response(false, "Ошибка : сервер не смог сохранить коллекцию.");
+        }
+        dumpCache.invalidate();
+        return new Response("Коллекция успешно сохранена на сервере.");
+    }
+
+    private Response getDump(Request request) {
+        // Несохранённые изменения сначала попадают в файл, затем файл отправляется клиенту
+        if (!store.saveIfDirty()) return new Response(false, "Ошибка : сервер не смог сохранить коллекцию.");
+        // Версия берётся до чтения файла: файл может оказаться только новее неё
+        String version = store.getSnapshotVersion();
+        ByteBuffer dump;
+        try {
+            dump = dumpCache.get();
+        } catch (IOException e) {
+            return new Response(false, "Ошибка : сервер не смог прочитать коллекцию.");
+        }
+        // Сам дамп идёт телом сообщения прямо из буфера кэша, без копирования в кучу
+        Response response = new Response(null);
+        response.setVersion(version);
+        response.setPayload(dump);
+        return response;
+    }
+
+    private Response save(Request request) {
+        if (!store.save()) return new Response(false, "Ошибка : сервер не смог сохранить коллекцию.");
+        return new Response("Коллекция успешно сохранена на сервере.");
+    }
+
+    private Response sync(Request request) {
+        // Клиент присылает версию своей копии и получает только изменения после неё
+        CollectionStore.Changes changes = store.changesSince(request.getDataRequest());
+        if (changes == null) return new Response(false, "Версия клиента устарела, требуется полная загрузка коллекции.");
+        Response response = new Response("Изменений с последней синхронизации: "
+                + (changes.getChanged().size() + changes.getRemoved().size()));
+        response.setVersion(changes.getVersion());
+        response.setChanged(changes.getChanged());
+        response.setRemoved(changes.getRemoved());
+        return response;
+    }
+
+    private Response put(Request request) {
+        HumanBeing humanBeing = request.getHumanBeing();
+        if (!isValid(humanBeing)) return invalidElement();
+        if (store.put(humanBeing)) return new Response("HumanBeing по ключу " + humanBeing.getId() + " успешно обновлён!");
+        return new Response("HumanBeing успешно добавлен с ключом " + humanBeing.getId() + "!");
+    }
+
+    private Response leaseIds(Request request) {
+        // Клиент получает блок id «первый-последний» и сам присваивает их новым элементам
+        int count = Integer.parseInt(request.getDataRequest());
+        if (count < 1 || count > IdAllocator.MAX_LEASE) {
+            return new Response(false, "Размер блока id должен быть от 1 до " + IdAllocator.MAX_LEASE);
+        }
+        try {
+            int first = idAllocator.lease(count, store.lastKey());
+            if (first < 0) return new Response(false, "Ошибка : свободные id закончились");
+            return new Response(first + "-" + (first + count - 1));
+        } catch (IOException e) {
+            return new Response(false, "Ошибка : сервер не смог выделить id: " + e.getMessage());
+        }
+    }
+
+    private Response insert(Request request) {
+        HumanBeing humanBeing = request.getHumanBeing();
+        if (!isValid(humanBeing)) return invalidElement();
+        if (!store.insert(humanBeing)) return new Response(false, "Элемент с таким ключом уже существует!");
+        return new Response("HumanBeing успешно добавлен с ключом " + humanBeing.getId() + "!");
+    }
+
+    private Response update(Request request) {
+        HumanBeing humanBeing = request.getHumanBeing();
+        if (!isValid(humanBeing)) return invalidElement();
+        if (!store.update(humanBeing)) return new Response(false, "Элемента с таким ключом не существует!");
+        return new Response("HumanBeing по ключу " + humanBeing.getId() + " успешно обновлён!");
+    }
+
+    private Response removeKey(Request request) {
+        int key = parseKey(request);
+        if (!store.remove(key)) return new Response(false, "Элемента с таким ключом не существует!");
+        return new Response("HumanBeing с ключом " + key + " успешно удалён из коллекции!");
+    }
+
+    private Response removeKeys(Request request) {
+        // Ключи перечислены через запятую и удаляются одной операцией над коллекцией
+        String keyList = request.getDataRequest();
+        if (keyList == null || keyList.isEmpty()) return new Response("Удалено элементов: 0");
+        List<Integer> keys = new ArrayList<>();
+        for (String key : keyList.split(",")) {
+            int parsed = Integer.parseInt(key.trim());
+            if (parsed < 1) throw new NumberFormatException();
+            keys.add(parsed);
+        }
+        return new Response("Удалено элементов: " + store.removeAll(keys));
+    }
+
+    private Response clear(Request request) {
+        store.clear();
+        return new Response("Коллекция успешно очищена!");
+    }
+
+    private Response removeGreater(Request request) {
+        int count = store.removeGreater(parseKey(request));
+        if (count < 0) return new Response(false, "Элемента с таким ключом не существует!");
+        return new Response("Удалено элементов: " + count);
+    }
+
+    private Response removeLower(Request request) {
+        int count = store.removeLower(parseKey(request));
+        if (count < 0) return new Response(false, "Элемента с таким ключом не существует!");
+        return new Response("Удалено элементов: " + count);
+    }
+
+    private Response replaceIfGreater(Request request) {
+        HumanBeing humanBeing = request.getHumanBeing();
+        if (!isValid(humanBeing)) return invalidElement();
+        Boolean replaced = store.replaceIfGreater(humanBeing);
+        if (replaced == null) return new Response(false, "Элемент с таким ключом не найден!");
+        if (!replaced) return new Response(false, "Новое значение не больше старого - замена не произведена.");
+        return new Response("Элемент успешно заменён!");
+    }
+
+    private Response sumOfImpactSpeed(Request request) {
+        return new Response("Сумма impactSpeed по всем элементам: " + store.sumOfImpactSpeed());
+    }
+
+    private Response filterLessThanCar(Request request) {
+        String carValue = request.getDataRequest();
+        if (carValue == null) return new Response(false, "Необходимо указать значение car!");
+        StringBuilder result = new StringBuilder();
+        for (HumanBeing h : store.filterLessThanCar(carValue)) {
+            result.append(h).append("\n");
+        }
+        return new Response(result.isEmpty() ? "Нет элементов, car которых меньше " + carValue : result.toString());
+    }
+
+    private Response printFieldDescendingWeaponType(Request request) {
+        List<WeaponType> weaponTypes = store.weaponTypesDescending();
+        if (weaponTypes.isEmpty()) return new Response("В коллекции нет элементов с WeaponType!");
+        StringBuilder result = new StringBuilder();
+        for (WeaponType weaponType : weaponTypes) {
+            result.append(weaponType).append("\n");
+        }
+        return new Response(result.toString());
+    }
+
+    private Response show(Request request) {
+        List<HumanBeing> values = store.values();
+        if (values.isEmpty()) return new Response("Коллекция пуста!");
+        StringBuilder info = new StringBuilder();
+        for (HumanBeing humanBeing : values) {
+            info.append(humanBeing).append("\n");
+        }
+        return new Response(info.toString().trim());
+    }
+
+    private Response info(Request request) {
+        return new Response("Сведения о коллекции на сервере:\n"
+                + " Количество элементов: " + store.size() + "\n"
+                + " Дата последнего сохранения: " + format(store.getLastSaveTime()) + "\n"
+                + " Дата последней инициализации: " + format(store.getLastInitTime()));
+    }
+
+    private static String format(LocalDateTime time) {
+        return time == null ? "не происходило" : time.toLocalDate() + " " + time.toLocalTime();
+    }
+
+    private static int parseKey(Request request) {
+        int key = Integer.parseInt(request.getDataRequest());
+        if (key < 1) throw new NumberFormatException();
+        return key;
+    }
+
+    private static boolean isValid(HumanBeing humanBeing) {
+        return humanBeing != null && humanBeing.getId() != null && humanBeing.getId() > 0 && humanBeing.validate();
+    }
+
+    private static Response invalidElement() {
+        return new Response(false, "Значения полей HumanBeing некорректны!");
+    }
+}
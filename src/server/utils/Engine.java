@@ -1,37 +1,84 @@
 package server.utils;
 
+import common.serverUtils.JavaCodec;
+import common.serverUtils.Message;
 import common.serverUtils.Request;
+import server.managers.CollectionStore;
+import server.managers.DumpCache;
 import server.managers.DumpManager;
+import server.managers.IdAllocator;
+import server.managers.WriteAheadLog;
 import common.utility.Console;
 import common.utility.StandartConsole;
 import common.serverUtils.Response;
+import common.serverUtils.Serializer;
+import common.serverUtils.Transport;
 import server.server.Server;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Engine {
     private static final Logger logger = ServerLogger.getInstance();
-    private boolean flag = true;
+    private static final long MAX_LOG_SIZE = 64L * 1024 * 1024;
+    private static final int POOL_RESERVE = 16;
+    private volatile boolean flag = true;
+    private final ScheduledExecutorService snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Снимки");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final DumpManager dumpManager;
+    private final WriteAheadLog writeAheadLog;
+    private final CollectionStore collectionStore;
+    private final DumpCache dumpCache;
+    private final IdAllocator idAllocator;
+    private final CommandProcessor commandProcessor;
+    private final Metrics metrics = new Metrics();
+    private final RecentRequests recentRequests = new RecentRequests();
     private Server server;
+    private RequestExecutor requestExecutor;
 
     public Engine(String[] args) {
         dumpManager = new DumpManager(args[0]);
+        writeAheadLog = new WriteAheadLog(args[0] + ".wal");
+        collectionStore = new CollectionStore(dumpManager, writeAheadLog);
+        dumpCache = new DumpCache(dumpManager);
+        idAllocator = new IdAllocator(args[0] + ".ids");
+        commandProcessor = new CommandProcessor(collectionStore, dumpCache, idAllocator);
+        metrics.registerCommands(commandProcessor.getCommandNames());
     }
 
 
     public void finishProgramm() {
-        this.server.getResponseCashedPoll().shutdown();
-        this.server.getReadCashedPoll().shutdown();
+        this.requestExecutor.shutdown();
+        this.snapshotScheduler.shutdown();
+        if (!collectionStore.saveIfDirty()) {
+            logger.log(Level.SEVERE, "Не удалось сохранить коллекцию при завершении");
+        }
+        try {
+            writeAheadLog.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка при закрытии журнала: " + e.getMessage());
+        }
+        try {
+            idAllocator.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка при закрытии файла id: " + e.getMessage());
+        }
         logger.log(Level.INFO, "Завершение цикла жизни сервера");
+        ServerLogger.close();
         this.flag = false;
     }
 
@@ -43,12 +90,38 @@ public class Engine {
             System.exit(1);
         }
 
-        this.server = new Server(1448);
+        configureLogging(args);
+        if (hasOption(args, "--codec=java")) {
+            Serializer.setCodec(new JavaCodec());
+        }
+        try {
+            collectionStore.load();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось открыть журнал: " + e.getMessage());
+            System.exit(1);
+        }
+        try {
+            idAllocator.open();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось открыть файл id: " + e.getMessage());
+            System.exit(1);
+        }
+        logger.log(Level.INFO, "Загружено элементов коллекции: " + collectionStore.size());
+        scheduleSnapshots(parseIntOption(args, "--snapshot-interval=", 60));
+        scheduleStatsDump(args[0] + ".stats", parseIntOption(args, "--stats-interval=", 60));
+        int workers = parseIntOption(args, "--workers=", Runtime.getRuntime().availableProcessors());
+        int queueCapacity = parseIntOption(args, "--queue=", 1024);
+        // Каждое ожидающее или выполняемое сообщение держит буфер датаграммы до конца обработки,
+        // поэтому пул должен вмещать их все; сверху — запас для потока ввода-вывода и отправки ответов
+        this.server = new Server(1448, parseIntOption(args, "--max-payload=", Transport.DEFAULT_MAX_PAYLOAD),
+                parseIntOption(args, "--max-message=", Transport.DEFAULT_MAX_MESSAGE),
+                queueCapacity + workers + POOL_RESERVE);
         try {
             server.startServer();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        this.requestExecutor = new RequestExecutor(parseModeOption(args), workers, queueCapacity);
         Thread thread = serverThread();
         thread.start();
 
@@ -58,6 +131,18 @@ public class Engine {
                 logger.log(Level.INFO, "Получен ввод из консоли : " + consoleRequest);
                 if (consoleRequest.equals("exit")) {
                     this.finishProgramm();
+                } else if (consoleRequest.equals("threads")) {
+                    console.println(requestExecutor.describe());
+                } else if (consoleRequest.equals("buffers")) {
+                    console.println(server.describeBuffers());
+                } else if (consoleRequest.equals("wal")) {
+                    console.println(writeAheadLog.describe());
+                } else if (consoleRequest.equals("cache")) {
+                    console.println(dumpCache.describe());
+                } else if (consoleRequest.equals("ids")) {
+                    console.println(idAllocator.describe());
+                } else if (consoleRequest.equals("stats")) {
+                    console.println(describeStats());
                 }
             }
         } catch (NoSuchElementException e) {
@@ -69,6 +154,105 @@ public class Engine {
     }
 
 
+    /**
+     * Периодически записывает снимок коллекции, чтобы журнал не рос без ограничений:
+     * раз в interval секунд, если были изменения, и сразу, как только журнал превысит {@link #MAX_LOG_SIZE}.
+     */
+    private void scheduleSnapshots(int interval) {
+        snapshotScheduler.scheduleWithFixedDelay(() -> collectionStore.saveIfLogExceeds(MAX_LOG_SIZE),
+                1, 1, TimeUnit.SECONDS);
+        snapshotScheduler.scheduleWithFixedDelay(collectionStore::saveIfDirty,
+                interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Раз в interval секунд перезаписывает файл статистики текущей сводкой {@link #describeStats()}.
+     */
+    private void scheduleStatsDump(String fileName, int interval) {
+        Path file = Paths.get(fileName);
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                Files.writeString(file, LocalDateTime.now() + "\n" + describeStats() + "\n");
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Не удалось записать статистику: " + e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return сводка метрик обработки запросов, трафика и очереди исполнителя
+     */
+    private String describeStats() {
+        return metrics.describe() + "\n"
+                + server.describeTraffic() + "\n"
+                + "Задач в очереди: " + requestExecutor.getQueueDepth()
+                + " (наибольшее " + requestExecutor.getPeakQueueDepth() + ")\n"
+                + ServerLogger.describe();
+    }
+
+    /**
+     * Направляет журнал в файл (по умолчанию имя дампа с расширением .log) и задаёт уровень из опции --log-level=.
+     */
+    private static void configureLogging(String[] args) {
+        String fileName = args[0] + ".log";
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--log-file=")) fileName = args[i].substring("--log-file=".length());
+            if (args[i].startsWith("--log-level=")) {
+                try {
+                    ServerLogger.setLevel(Level.parse(args[i].substring("--log-level=".length())));
+                } catch (IllegalArgumentException e) {
+                    logger.log(Level.WARNING, "Некорректное значение опции " + args[i]);
+                }
+            }
+        }
+        try {
+            ServerLogger.openFile(fileName);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Не удалось открыть файл журнала " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean hasOption(String[] args, String option) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(option)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ищет среди аргументов командной строки опцию вида prefix + число.
+     *
+     * @return значение опции или defaultValue, если опция не задана или некорректна
+     */
+    private static int parseIntOption(String[] args, String prefix, int defaultValue) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith(prefix)) {
+                try {
+                    return Integer.parseInt(args[i].substring(prefix.length()));
+                } catch (NumberFormatException e) {
+                    logger.log(Level.WARNING, "Некорректное значение опции " + args[i]);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Определяет режим исполнения запросов по опции --executor=virtual|platform.
+     *
+     * @return выбранный режим, по умолчанию VIRTUAL
+     */
+    private static RequestExecutor.Mode parseModeOption(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--executor=")) {
+                RequestExecutor.Mode mode = RequestExecutor.Mode.parse(args[i].substring("--executor=".length()));
+                if (mode != null) return mode;
+                logger.log(Level.WARNING, "Некорректное значение опции " + args[i]);
+            }
+        }
+        return RequestExecutor.Mode.VIRTUAL;
+    }
+
     private Thread serverThread() {
         Runnable r = () -> {
             Selector selector;
@@ -80,28 +264,17 @@ public class Engine {
             }
             while (this.flag) {
                 try {
-                    selector.select();
-                    Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                    Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
-                    while (keyIterator.hasNext()) {
-                        SelectionKey key = keyIterator.next();
-                        keyIterator.remove();
-                        if (key.isReadable()) {
-                            this.server.getReadCashedPoll().submit(
-                                    () -> {
-                                        Request request = server.receiveRequest();
-                                        if (request != null) {
-                                            logger.log(Level.INFO, "Поступил запрос : " + request.getClientRequest());
-                                            processRequest(request);
-                                        } else {
-                                            this.server.sendResponse(new Response("Ошибка : послан поврежденный запрос", request.getClientAddress()));
-                                        }
-                                    }
-                            );
-                        }
-                    }
+                    // Один поток ввода-вывода вычитывает всё, что накопилось, и раздаёт обработчикам
+                    selector.select(Transport.SWEEP_INTERVAL);
+                    selector.selectedKeys().clear();
+                    this.server.drainMessages(message -> {
+                        long receivedAt = System.nanoTime();
+                        // Сообщение, которое некому обработать, возвращается в пул здесь
+                        if (!requestExecutor.execute(() -> handleMessage(message, receivedAt))) message.release();
+                    });
+                    this.server.sweep();
                 } catch (Exception e) {
-                    logger.log(Level.SEVERE, "Критическая ошибка " + e.getMessage() + e);
+                    logger.log(Level.SEVERE, "Критическая ошибка " + e.getMessage(), e);
                 }
             }
         };
@@ -110,26 +283,70 @@ public class Engine {
         return thread;
     }
 
-    public void processRequest(Request request) {
-        Runnable requestTask = () -> {
-            InetSocketAddress clientAddress = request.getClientAddress();
-            String command = request.getClientRequest();
-            if (command.equals("save_dump")) {
-                // Сохраняем коллекцию, присланную клиентом
-                dumpManager.writeCollection(request.getDataRequest());
-                Response threadResponse = new Response("Коллекция успешно сохранена на сервере.");
-                threadResponse.setClientAddress(clientAddress);
-                this.server.sendResponse(threadResponse);
-            } else if (command.equals("get_dump")) {
-                // Загружаем коллекцию с сервера и отправляем клиенту
-                String xmlData = dumpManager.readCollection();
-                Response threadResponse = new Response(xmlData);
-                threadResponse.setClientAddress(clientAddress);
-                this.server.sendResponse(threadResponse);
+    /**
+     * Обрабатывает собранное сообщение и записывает длительность каждого этапа в {@link Metrics}.
+     *
+     * @param receivedAt момент передачи сообщения исполнителю, по {@link System#nanoTime()}
+     */
+    private void handleMessage(Message message, long receivedAt) {
+        try {
+            long started = System.nanoTime();
+            Request request = server.parseRequest(message);
+            long parsed = System.nanoTime();
+            if (request == null) {
+                metrics.recordCorruptRequest();
+                return;
             }
-        };
-        var requestThread = new Thread(requestTask);
-        requestThread.start();
-        logger.log(Level.INFO, "Запущен поток " + requestThread.getName() + ". С id = " + requestThread.getId());
+            logger.log(Level.FINE, () -> "Поступил запрос : " + request.getClientRequest());
+            // Повтор изменения не выполняется второй раз: клиент получает сохранённый ответ.
+            // Команды чтения не запоминаются и при повторе выполняются заново
+            boolean once = commandProcessor.runsOnce(request.getClientRequest());
+            if (once) {
+                Response previous = recentRequests.claim(request);
+                if (previous != null) {
+                    metrics.recordDuplicate();
+                    if (!RecentRequests.isInProgress(previous)) this.server.sendResponse(previous);
+                    return;
+                }
+            }
+            Response response = null;
+            try {
+                response = processRequest(request);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Ошибка при выполнении команды " + request.getClientRequest() + ": " + e, e);
+                response = failure(request, "Ошибка : сервер не смог выполнить команду " + request.getClientRequest());
+            } finally {
+                // Иначе повторы запроса отбрасывались бы как выполняемые, пока он не вытеснится
+                if (once && response != null) {
+                    recentRequests.complete(request, response);
+                } else if (once) {
+                    recentRequests.release(request);
+                }
+            }
+            long processed = System.nanoTime();
+            this.server.sendResponse(response);
+            long sent = System.nanoTime();
+            metrics.command(request.getClientRequest()).record(response.isSuccess(), message.getSize(),
+                    started - receivedAt, parsed - started, processed - parsed, sent - processed);
+        } finally {
+            message.release();
+        }
+    }
+
+    public Response processRequest(Request request) {
+        return addressed(request, commandProcessor.process(request));
+    }
+
+    /**
+     * @return ответ об ошибке, адресованный отправителю запроса
+     */
+    private static Response failure(Request request, String message) {
+        return addressed(request, new Response(false, message));
+    }
+
+    private static Response addressed(Request request, Response response) {
+        response.setClientAddress(request.getClientAddress());
+        response.setRequestId(request.getRequestId());
+        return response;
     }
 }
@@ -0,0 +1,142 @@
+package server.utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики обработки запросов сервером: для каждой команды — число вызовов и ошибок,
+ * размер запросов и гистограммы {@link LatencyHistogram} длительности этапов обработки.
+ * Запись метрики — несколько атомарных увеличений счётчиков без блокировок, поэтому её можно делать на каждый запрос.
+ * <p>
+ * Сериализация ответа идёт прямо во фрагменты, отправляемые по мере заполнения, поэтому
+ * сериализация и отправка измеряются одним этапом.
+ * </p>
+ */
+public class Metrics {
+    private static final String OTHER = "(другие)";
+
+    /**
+     * Этапы обработки запроса в порядке выполнения.
+     */
+    public enum Stage {
+        QUEUE("ожидание в очереди"),
+        DESERIALIZE("десериализация"),
+        PROCESS("выполнение"),
+        SEND("сериализация и отправка");
+
+        private final String title;
+
+        Stage(String title) {
+            this.title = title;
+        }
+    }
+
+    private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    private final LongAdder corruptRequests = new LongAdder();
+    private final LongAdder duplicateRequests = new LongAdder();
+    private final long startTime = System.nanoTime();
+
+    public Metrics() {
+        commands.put(OTHER, new CommandMetrics());
+    }
+
+    /**
+     * Заводит метрики для известных команд. Остальные названия, присланные клиентами,
+     * учитываются вместе, чтобы число метрик не росло от произвольных запросов.
+     */
+    public void registerCommands(Collection<String> names) {
+        for (String name : names) {
+            commands.putIfAbsent(name, new CommandMetrics());
+        }
+    }
+
+    /**
+     * @return метрики команды или общие метрики неизвестных команд
+     */
+    public CommandMetrics command(String name) {
+        CommandMetrics metrics = name == null ? null : commands.get(name);
+        return metrics != null ? metrics : commands.get(OTHER);
+    }
+
+    /**
+     * Учитывает запрос, который не удалось десериализовать.
+     */
+    public void recordCorruptRequest() {
+        corruptRequests.increment();
+    }
+
+    /**
+     * Учитывает повтор запроса, который уже выполнен или выполняется.
+     */
+    public void recordDuplicate() {
+        duplicateRequests.increment();
+    }
+
+    /**
+     * @return сводка по командам, которые вызывались, в алфавитном порядке
+     */
+    public String describe() {
+        StringBuilder result = new StringBuilder();
+        long uptime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+        result.append("Время работы: ").append(uptime).append(" с\n");
+        result.append("Повреждённых запросов: ").append(corruptRequests.sum()).append("\n");
+        result.append("Повторных запросов: ").append(duplicateRequests.sum()).append("\n");
+        for (Map.Entry<String, CommandMetrics> entry : new TreeMap<>(commands).entrySet()) {
+            CommandMetrics metrics = entry.getValue();
+            long calls = metrics.calls.sum();
+            if (calls == 0) continue;
+            result.append(entry.getKey()).append(": вызовов ").append(calls)
+                    .append(", ошибок ").append(metrics.errors.sum())
+                    .append(", получено байт ").append(metrics.bytesIn.sum()).append("\n");
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram histogram = metrics.stages[stage.ordinal()];
+                result.append("  ").append(stage.title)
+                        .append(": среднее ").append(micros(histogram.getMean()))
+                        .append(", p50 ").append(micros(histogram.getPercentile(50)))
+                        .append(", p99 ").append(micros(histogram.getPercentile(99)))
+                        .append(", max ").append(micros(histogram.getMax())).append(" мкс\n");
+            }
+        }
+        return result.toString().trim();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Метрики одной команды.
+     */
+    public static class CommandMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+
+        CommandMetrics() {
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new LatencyHistogram();
+            }
+        }
+
+        /**
+         * Учитывает обработанный запрос.
+         *
+         * @param success   успешен ли ответ
+         * @param bytes     размер запроса в байтах
+         * @param durations длительности этапов в наносекундах в порядке {@link Stage}
+         */
+        public void record(boolean success, long bytes, long... durations) {
+            calls.increment();
+            if (!success) errors.increment();
+            bytesIn.add(bytes);
+            for (int i = 0; i < durations.length && i < stages.length; i++) {
+                stages[i].record(durations[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package server.utils;
+
+import common.serverUtils.Request;
+import common.serverUtils.Response;
+
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ответы на последние запросы клиентов по адресу клиента и номеру запроса.
+ * Клиент повторяет запрос, не дождавшись ответа, поэтому один и тот же запрос может прийти несколько раз:
+ * повтор уже выполненного запроса получает сохранённый ответ, а повтор выполняемого отбрасывается.
+ * Так изменения коллекции выполняются ровно один раз, даже если потерялся ответ.
+ * Сервер запоминает здесь только запросы, изменяющие коллекцию: команды чтения повторяются заново,
+ * поэтому их ответы, в том числе снимки коллекции, не задерживаются в памяти.
+ * Хранится не больше {@link #CAPACITY} запросов, самые старые вытесняются.
+ */
+public class RecentRequests {
+    private static final int CAPACITY = 4096;
+    // Запрос принят, но ответ ещё не готов
+    private static final Response IN_PROGRESS = new Response("");
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Key, Response> responses = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Response> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    /**
+     * Отмечает запрос как выполняемый, если он пришёл впервые.
+     *
+     * @return null, если запрос нужно выполнить; {@link #isInProgress(Response) выполняемый} ответ,
+     * если запрос уже выполняется; иначе сохранённый ответ на него
+     */
+    public Response claim(Request request) {
+        if (request.getRequestId() == 0) return null;
+        Key key = new Key(request.getClientAddress(), request.getRequestId());
+        lock.lock();
+        try {
+            Response previous = responses.get(key);
+            if (previous == null) responses.put(key, IN_PROGRESS);
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Запоминает ответ на выполненный запрос.
+     */
+    public void complete(Request request, Response response) {
+        if (request.getRequestId() == 0) return;
+        Key key = new Key(request.getClientAddress(), request.getRequestId());
+        lock.lock();
+        try {
+            responses.replace(key, IN_PROGRESS, response);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Снимает отметку с запроса, выполнение которого прервалось без ответа: его повтор выполнится заново.
+     */
+    public void release(Request request) {
+        if (request.getRequestId() == 0) return;
+        Key key = new Key(request.getClientAddress(), request.getRequestId());
+        lock.lock();
+        try {
+            responses.remove(key, IN_PROGRESS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true, если ответ, возвращённый {@link #claim(Request)}, означает, что запрос ещё выполняется
+     */
+    public static boolean isInProgress(Response response) {
+        return response == IN_PROGRESS;
+    }
+
+    private static class Key {
+        private final InetSocketAddress address;
+        private final long requestId;
+
+        Key(InetSocketAddress address, long requestId) {
+            this.address = address;
+            this.requestId = requestId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return requestId == key.requestId && Objects.equals(address, key.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(address, requestId);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package server.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Исполнитель запросов сервера с переключаемым режимом работы.
+ * В режиме VIRTUAL каждый запрос выполняется в отдельном виртуальном потоке,
+ * в режиме PLATFORM — в пуле платформенных потоков фиксированного размера с ограниченной очередью.
+ * В обоих режимах число ожидающих задач ограничено: при переполнении вызывающий поток блокируется.
+ * Задача, не принятая после остановки исполнителя, возвращается вызывающему, чтобы он освободил её ресурсы.
+ */
+public class RequestExecutor {
+    private static final Logger logger = ServerLogger.getInstance();
+
+    /**
+     * Режим исполнения запросов.
+     */
+    public enum Mode {
+        VIRTUAL,
+        PLATFORM;
+
+        /**
+         * Разбирает название режима без учёта регистра.
+         *
+         * @param name название режима
+         * @return режим или null, если название не распознано
+         */
+        public static Mode parse(String name) {
+            for (Mode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name)) return mode;
+            }
+            return null;
+        }
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param mode          желаемый режим; если виртуальные потоки недоступны в текущей JVM, используется PLATFORM
+     * @param workers       количество платформенных потоков в режиме PLATFORM
+     * @param queueCapacity максимальное количество задач, ожидающих выполнения
+     */
+    public RequestExecutor(Mode mode, int workers, int queueCapacity) {
+        ExecutorService virtual = mode == Mode.VIRTUAL ? createVirtualExecutor() : null;
+        if (virtual != null) {
+            this.mode = Mode.VIRTUAL;
+            this.executor = virtual;
+            this.permits = new Semaphore(queueCapacity);
+        } else {
+            this.mode = Mode.PLATFORM;
+            this.executor = createWorkerPool(workers, queueCapacity);
+            this.permits = null;
+        }
+        logger.log(Level.INFO, "Режим исполнения запросов: " + this.mode
+                + (this.mode == Mode.PLATFORM ? ", потоков " + workers : "") + ", размер очереди " + queueCapacity);
+    }
+
+    /**
+     * Передаёт задачу на исполнение. Блокируется, если очередь заполнена.
+     *
+     * @param task задача
+     * @return false, если задача не принята: исполнитель остановлен или поток прерван во время ожидания места
+     */
+    public boolean execute(Runnable task) {
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.increment();
+                return false;
+            }
+        }
+        peakQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+        try {
+            executor.execute(() -> {
+                queued.decrementAndGet();
+                running.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                    completed.increment();
+                    if (permits != null) permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            if (permits != null) permits.release();
+            rejected.increment();
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return количество задач, ожидающих начала выполнения
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return наибольшее количество задач, одновременно ожидавших начала выполнения
+     */
+    public int getPeakQueueDepth() {
+        return peakQueued.get();
+    }
+
+    /**
+     * @return количество выполняющихся в данный момент задач
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * @return количество потоков исполнителя: размер пула в режиме PLATFORM
+     * или число живых виртуальных потоков в режиме VIRTUAL
+     */
+    public int getThreadCount() {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getPoolSize();
+        }
+        return running.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return количество задач, не принятых после остановки исполнителя или прерывания
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Возвращает сводку о состоянии исполнителя для вывода в консоль сервера.
+     *
+     * @return строка со статистикой
+     */
+    public String describe() {
+        return "Режим: " + mode + "\n" +
+                "Потоков исполнителя: " + getThreadCount() + "\n" +
+                "Платформенных потоков JVM: " + ManagementFactory.getThreadMXBean().getThreadCount() + "\n" +
+                "Выполняется задач: " + getRunningCount() + "\n" +
+                "Задач в очереди: " + getQueueDepth() + " (наибольшее " + getPeakQueueDepth() + ")\n" +
+                "Выполнено задач: " + getCompletedCount() + "\n" +
+                "Отклонено задач: " + getRejectedCount();
+    }
+
+    /**
+     * Создаёт исполнитель с виртуальным потоком на задачу, если JVM их поддерживает.
+     * Вызывается через отражение, чтобы код собирался и на JDK без виртуальных потоков.
+     *
+     * @return исполнитель или null, если виртуальные потоки недоступны
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            logger.log(Level.WARNING, "Виртуальные потоки недоступны в этой JVM, используется пул платформенных потоков");
+            return null;
+        }
+    }
+
+    /**
+     * Создаёт пул обработчиков фиксированного размера с ограниченной очередью.
+     * Если очередь заполнена, вызывающий поток блокируется до появления места.
+     * После остановки пула задача отклоняется {@link RejectedExecutionException}, а не теряется молча.
+     */
+    private static ThreadPoolExecutor createWorkerPool(int workers, int queueCapacity) {
+        RejectedExecutionHandler backpressure = (task, executor) -> {
+            if (executor.isShutdown()) throw new RejectedExecutionException("Исполнитель остановлен");
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Ожидание места в очереди прервано", e);
+            }
+            // Пул мог остановиться, пока ждали места: тогда задачу уже некому взять из очереди
+            if (executor.isShutdown() && executor.getQueue().remove(task)) {
+                throw new RejectedExecutionException("Исполнитель остановлен");
+            }
+        };
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), backpressure);
+    }
+}
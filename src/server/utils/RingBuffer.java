@@ -0,0 +1,94 @@
+package server.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченная кольцевая очередь без блокировок для многих производителей и одного потребителя.
+ * У каждой ячейки есть номер последовательности: по нему производитель узнаёт, что ячейка свободна,
+ * а потребитель — что она заполнена. Производители занимают ячейки сравнением с обменом над хвостом очереди,
+ * поэтому {@link #offer(Object)} не ждёт ни потребителя, ни других производителей и при заполненной очереди
+ * сразу возвращает false.
+ *
+ * @param <E> тип элементов
+ */
+class RingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Меняется только потребителем
+    private volatile long head;
+
+    /**
+     * @param capacity ёмкость, округляется вверх до степени двойки
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Добавляет элемент, если в очереди есть место. Можно вызывать из любых потоков.
+     *
+     * @return false, если очередь заполнена
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, element);
+                    // Публикация: после этой записи потребитель увидит элемент
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // Ячейка ещё не освобождена потребителем с прошлого круга
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Забирает следующий элемент. Вызывается только потоком-потребителем.
+     *
+     * @return элемент или null, если очередь пуста
+     */
+    E poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) return null;
+        E element = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return приблизительное число элементов в очереди
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -1,16 +1,66 @@
 package server.utils;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Журнал сервера. Записи выводит {@link AsyncLogHandler} в отдельном потоке, поэтому запись в журнал
+ * из потоков обработки запросов не ждёт ни файла, ни консоли. Сообщения частых записей (уровня FINE)
+ * передаются как {@code Supplier<String>}: строка собирается, только если уровень включён.
+ */
 public class ServerLogger {
-    private static Logger instance;
+    private static final int BUFFER_CAPACITY = 1 << 14;
 
     private ServerLogger() {
     }
 
+    // Журнал создаётся при первом обращении; потокобезопасность инициализации обеспечивает загрузчик классов
+    private static class Holder {
+        private static final AsyncLogHandler HANDLER = new AsyncLogHandler(BUFFER_CAPACITY, Level.INFO);
+        private static final Logger INSTANCE = create();
+
+        private static Logger create() {
+            Logger logger = Logger.getLogger(ServerLogger.class.getName());
+            logger.setUseParentHandlers(false);
+            logger.addHandler(HANDLER);
+            Runtime.getRuntime().addShutdownHook(new Thread(HANDLER::close, "Закрытие журнала"));
+            return logger;
+        }
+    }
+
     public static Logger getInstance() {
-        if (instance == null) instance = Logger.getLogger(ServerLogger.class.getName());
-        return instance;
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Начинает дописывать журнал в файл.
+     *
+     * @throws IOException если файл не удалось открыть
+     */
+    public static void openFile(String fileName) throws IOException {
+        Holder.HANDLER.openFile(Paths.get(fileName));
     }
 
+    /**
+     * Задаёт наименьший уровень записываемых сообщений.
+     */
+    public static void setLevel(Level level) {
+        getInstance().setLevel(level);
+    }
+
+    /**
+     * Дописывает оставшиеся записи и закрывает файл журнала.
+     */
+    public static void close() {
+        Holder.HANDLER.close();
+    }
+
+    /**
+     * @return сводка о записанных и потерянных записях журнала
+     */
+    public static String describe() {
+        return Holder.HANDLER.describe();
+    }
 }
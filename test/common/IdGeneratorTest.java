@@ -0,0 +1,84 @@
+package common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Проверки {@link IdGenerator}: id выдаются только из блоков, полученных от источника,
+ * а без связи с ним — из запасного блока, пока он не кончится.
+ */
+class IdGeneratorTest {
+
+    @AfterEach
+    void resetSource() {
+        IdGenerator.setBlockSource(null);
+        IdGenerator.restoreHumanBeingCounter(0);
+    }
+
+    @Test
+    void idsComeFromLeasedBlocksInOrder() {
+        IdGenerator.setBlockSource(new Blocks(5001, 9001));
+
+        assertEquals(5001, IdGenerator.assignHumanBeingId());
+        assertEquals(5002, IdGenerator.assignHumanBeingId());
+    }
+
+    @Test
+    void spareBlockIsUsedWhileSourceIsUnavailable() {
+        // Источник выдаёт текущий блок и запас, после чего «теряет связь»
+        IdGenerator.setBlockSource(new Blocks(1, 2001));
+
+        for (int i = 0; i < IdGenerator.BLOCK_SIZE; i++) IdGenerator.assignHumanBeingId();
+
+        assertEquals(2001, IdGenerator.assignHumanBeingId());
+    }
+
+    @Test
+    void noIdsAreInventedWhenBlocksRunOutOffline() {
+        IdGenerator.setBlockSource(new Blocks(1, 2001));
+        IdGenerator.restoreHumanBeingCounter(100_000);
+
+        for (int i = 0; i < 2 * IdGenerator.BLOCK_SIZE; i++) IdGenerator.assignHumanBeingId();
+
+        assertEquals(-1, IdGenerator.tryAssignHumanBeingId());
+        assertThrows(IllegalStateException.class, IdGenerator::assignHumanBeingId);
+    }
+
+    @Test
+    void blockEndingPastIntRangeIsRejected() {
+        IdGenerator.setBlockSource(new Blocks(Integer.MAX_VALUE - IdGenerator.BLOCK_SIZE + 1));
+
+        assertEquals(-1, IdGenerator.tryAssignHumanBeingId());
+    }
+
+    @Test
+    void localCounterIsUsedWithoutSource() {
+        IdGenerator.restoreHumanBeingCounter(41);
+
+        assertEquals(42, IdGenerator.assignHumanBeingId());
+    }
+
+    /**
+     * Источник, выдающий заданные блоки по очереди, а затем недоступный.
+     */
+    private static class Blocks implements IdGenerator.BlockSource {
+        private final Deque<Integer> firsts;
+
+        Blocks(Integer... firsts) {
+            this.firsts = new ArrayDeque<>(List.of(firsts));
+        }
+
+        @Override
+        public int lease(int count) {
+            Integer first = firsts.poll();
+            return first == null ? -1 : first;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package common.serverUtils;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки {@link BinaryCodec}: объекты проходят запись и чтение без изменений,
+ * а сообщения старых версий формата читаются текущим кодеком.
+ */
+class BinaryCodecTest {
+    // Типы объектов в заголовке сообщения, как в BinaryCodec
+    private static final int TYPE_REQUEST = 1;
+    private static final int TYPE_RESPONSE = 2;
+
+    private final BinaryCodec codec = new BinaryCodec();
+
+    @Test
+    void humanBeingWithAllFieldsSurvivesRoundTrip() throws IOException {
+        HumanBeing humanBeing = fullHumanBeing(7);
+
+        assertEquals(humanBeing, roundTrip(humanBeing));
+    }
+
+    @Test
+    void humanBeingKeepsNullOptionalFields() throws IOException {
+        HumanBeing humanBeing = new HumanBeing.Builder(3, LocalDate.of(2024, 2, 29))
+                .name("Без полей")
+                .coordinates(new Coordinates.Builder().x(-166).y(null).build())
+                .impactSpeed(0f)
+                .car(null)
+                .build();
+
+        HumanBeing decoded = (HumanBeing) roundTrip(humanBeing);
+
+        assertEquals(humanBeing, decoded);
+        assertNull(decoded.getCoordinates().getY());
+        assertNull(decoded.getRealHero());
+        assertNull(decoded.getHasToothpick());
+        assertNull(decoded.getSoundtrackName());
+        assertNull(decoded.getMinutesOfWaiting());
+        assertNull(decoded.getWeaponType());
+        assertNull(decoded.getCar());
+    }
+
+    @Test
+    void humanBeingWithoutCoordinatesAndName() throws IOException {
+        HumanBeing humanBeing = new HumanBeing.Builder(1, LocalDate.of(1970, 1, 1))
+                .coordinates(null)
+                .build();
+
+        HumanBeing decoded = (HumanBeing) roundTrip(humanBeing);
+
+        assertEquals(humanBeing, decoded);
+        assertNull(decoded.getName());
+        assertNull(decoded.getCoordinates());
+    }
+
+    @Test
+    void falseFlagsAreNotConfusedWithNull() throws IOException {
+        HumanBeing humanBeing = new HumanBeing.Builder(2, LocalDate.of(2000, 1, 1))
+                .realHero(false)
+                .hasToothpick(false)
+                .build();
+
+        HumanBeing decoded = (HumanBeing) roundTrip(humanBeing);
+
+        assertEquals(Boolean.FALSE, decoded.getRealHero());
+        assertEquals(Boolean.FALSE, decoded.getHasToothpick());
+    }
+
+    @Test
+    void coordinatesKeepExtremeValues() throws IOException {
+        for (long x : new long[]{Long.MIN_VALUE, -167, 0, Long.MAX_VALUE}) {
+            Coordinates coordinates = new Coordinates.Builder().x(x).y(-Float.MAX_VALUE).build();
+            HumanBeing humanBeing = new HumanBeing.Builder(5, LocalDate.of(2020, 5, 5))
+                    .coordinates(coordinates)
+                    .build();
+
+            assertEquals(coordinates, ((HumanBeing) roundTrip(humanBeing)).getCoordinates());
+        }
+    }
+
+    @Test
+    void carIsPresentEvenWithoutName() throws IOException {
+        HumanBeing withNamedCar = new HumanBeing.Builder(4, LocalDate.of(2021, 3, 1))
+                .car(new Car.Builder().name("Лада").build())
+                .build();
+        HumanBeing withUnnamedCar = new HumanBeing.Builder(5, LocalDate.of(2021, 3, 1))
+                .car(new Car.Builder().build())
+                .build();
+
+        assertEquals(withNamedCar.getCar(), ((HumanBeing) roundTrip(withNamedCar)).getCar());
+        Car decoded = ((HumanBeing) roundTrip(withUnnamedCar)).getCar();
+        assertNotNull(decoded);
+        assertNull(decoded.getName());
+    }
+
+    @Test
+    void everyWeaponTypeSurvivesRoundTrip() throws IOException {
+        for (WeaponType weaponType : WeaponType.values()) {
+            HumanBeing humanBeing = new HumanBeing.Builder(6, LocalDate.of(2022, 6, 1))
+                    .weaponType(weaponType)
+                    .build();
+
+            assertEquals(weaponType, ((HumanBeing) roundTrip(humanBeing)).getWeaponType());
+        }
+    }
+
+    @Test
+    void requestWithElementSurvivesRoundTrip() throws IOException {
+        Request request = new Request("insert", fullHumanBeing(11), "user", "пароль");
+        request.setRequestId(Long.MAX_VALUE);
+
+        Request decoded = (Request) roundTrip(request);
+
+        assertRequestEquals(request, decoded);
+        assertNull(decoded.getDataRequest());
+        assertNull(decoded.getBatch());
+    }
+
+    @Test
+    void requestKeepsNullFields() throws IOException {
+        Request request = new Request(null, (String) null);
+
+        Request decoded = (Request) roundTrip(request);
+
+        assertRequestEquals(request, decoded);
+        assertNull(decoded.getClientRequest());
+        assertNull(decoded.getHumanBeing());
+        assertEquals(0, decoded.getRequestId());
+    }
+
+    @Test
+    void emptyStringIsNotConfusedWithNull() throws IOException {
+        Request decoded = (Request) roundTrip(new Request("show", ""));
+
+        assertEquals("", decoded.getDataRequest());
+    }
+
+    @Test
+    void batchRequestSurvivesRoundTrip() throws IOException {
+        List<Request> parts = new ArrayList<>();
+        parts.add(new Request("remove_key", "5"));
+        parts.add(new Request("update", fullHumanBeing(6)));
+        parts.add(new Request(null, (String) null));
+        Request request = new Request(parts);
+        request.setRequestId(42);
+
+        Request decoded = (Request) roundTrip(request);
+
+        assertRequestEquals(request, decoded);
+        assertEquals(3, decoded.getBatch().size());
+        assertNull(decoded.getBatch().get(2).getClientRequest());
+    }
+
+    @Test
+    void emptyBatchIsNotConfusedWithNoBatch() throws IOException {
+        Request decoded = (Request) roundTrip(new Request(new ArrayList<>()));
+
+        assertNotNull(decoded.getBatch());
+        assertTrue(decoded.getBatch().isEmpty());
+    }
+
+    @Test
+    void nestedBatchIsRejected() throws IOException {
+        List<Request> inner = new ArrayList<>();
+        inner.add(new Request("clear", ""));
+        List<Request> outer = new ArrayList<>();
+        outer.add(new Request(inner));
+
+        byte[] encoded = encode(new Request(outer));
+
+        assertThrows(StreamCorruptedException.class, () -> decode(encoded));
+    }
+
+    @Test
+    void responseWithAllFieldsSurvivesRoundTrip() throws IOException {
+        Response response = new Response(false, "Элемент не найден");
+        response.setVersion("3:17");
+        response.setChanged(List.of(fullHumanBeing(1), new HumanBeing.Builder(2, LocalDate.of(2019, 1, 1)).build()));
+        response.setRemoved(List.of(3, -4, Integer.MAX_VALUE, Integer.MIN_VALUE));
+        response.setRequestId(123456789L);
+        List<Response> batch = new ArrayList<>();
+        batch.add(new Response("Готово"));
+        batch.add(new Response(false, null));
+        response.setBatch(batch);
+
+        Response decoded = (Response) roundTrip(response);
+
+        assertResponseEquals(response, decoded);
+    }
+
+    @Test
+    void responseKeepsAbsentAndEmptyLists() throws IOException {
+        Response absent = new Response(null);
+        Response empty = new Response("");
+        empty.setChanged(new ArrayList<>());
+        empty.setRemoved(new ArrayList<>());
+        empty.setBatch(new ArrayList<>());
+
+        Response decodedAbsent = (Response) roundTrip(absent);
+        Response decodedEmpty = (Response) roundTrip(empty);
+
+        assertResponseEquals(absent, decodedAbsent);
+        assertNull(decodedAbsent.getChanged());
+        assertNull(decodedAbsent.getRemoved());
+        assertNull(decodedAbsent.getBatch());
+        assertResponseEquals(empty, decodedEmpty);
+        assertTrue(decodedEmpty.getChanged().isEmpty());
+        assertTrue(decodedEmpty.getRemoved().isEmpty());
+        assertTrue(decodedEmpty.getBatch().isEmpty());
+    }
+
+    @Test
+    void decodesVersionOneResponse() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, 1, TYPE_RESPONSE);
+        BinaryCodec.writeString(out, "Коллекция пуста!");
+
+        Response decoded = (Response) decode(bytes.toByteArray());
+
+        assertTrue(decoded.isSuccess());
+        assertEquals("Коллекция пуста!", decoded.getMessage());
+        assertNull(decoded.getVersion());
+        assertEquals(0, decoded.getRequestId());
+    }
+
+    @Test
+    void decodesVersionTwoResponse() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, 2, TYPE_RESPONSE);
+        out.writeBoolean(false);
+        BinaryCodec.writeString(out, "Ошибка");
+
+        Response decoded = (Response) decode(bytes.toByteArray());
+
+        assertFalse(decoded.isSuccess());
+        assertEquals("Ошибка", decoded.getMessage());
+    }
+
+    @Test
+    void decodesVersionThreeResponse() throws IOException {
+        HumanBeing changed = fullHumanBeing(9);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, 3, TYPE_RESPONSE);
+        out.writeBoolean(true);
+        BinaryCodec.writeString(out, "Изменений: 2");
+        BinaryCodec.writeString(out, "1:2");
+        BinaryCodec.writeVarLong(out, 2);
+        BinaryCodec.writeHumanBeing(out, changed);
+        BinaryCodec.writeVarLong(out, 2);
+        BinaryCodec.writeVarLong(out, BinaryCodec.zigzag(10));
+
+        Response decoded = (Response) decode(bytes.toByteArray());
+
+        assertEquals("1:2", decoded.getVersion());
+        assertEquals(List.of(changed), decoded.getChanged());
+        assertEquals(List.of(10), decoded.getRemoved());
+        assertEquals(0, decoded.getRequestId());
+        assertNull(decoded.getBatch());
+    }
+
+    @Test
+    void decodesVersionFourResponse() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, 4, TYPE_RESPONSE);
+        out.writeBoolean(true);
+        BinaryCodec.writeString(out, "ok");
+        BinaryCodec.writeString(out, null);
+        BinaryCodec.writeVarLong(out, 0);
+        BinaryCodec.writeVarLong(out, 0);
+        BinaryCodec.writeVarLong(out, 77);
+
+        Response decoded = (Response) decode(bytes.toByteArray());
+
+        assertEquals("ok", decoded.getMessage());
+        assertNull(decoded.getChanged());
+        assertNull(decoded.getRemoved());
+        assertEquals(77, decoded.getRequestId());
+        assertNull(decoded.getBatch());
+    }
+
+    @Test
+    void decodesRequestsOfVersionsOneToFour() throws IOException {
+        HumanBeing humanBeing = fullHumanBeing(12);
+        for (int version = 1; version <= 4; version++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = header(bytes, version, TYPE_REQUEST);
+            BinaryCodec.writeString(out, "insert");
+            BinaryCodec.writeString(out, null);
+            out.writeBoolean(true);
+            BinaryCodec.writeHumanBeing(out, humanBeing);
+            BinaryCodec.writeString(out, "login");
+            BinaryCodec.writeString(out, null);
+            if (version >= 4) BinaryCodec.writeVarLong(out, 5);
+
+            Request decoded = (Request) decode(bytes.toByteArray());
+
+            assertEquals("insert", decoded.getClientRequest(), "версия " + version);
+            assertEquals(humanBeing, decoded.getHumanBeing(), "версия " + version);
+            assertEquals("login", decoded.getLogin(), "версия " + version);
+            assertNull(decoded.getPassword(), "версия " + version);
+            assertEquals(version >= 4 ? 5 : 0, decoded.getRequestId(), "версия " + version);
+            assertNull(decoded.getBatch(), "версия " + version);
+        }
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] message = {(byte) BinaryCodec.MAGIC, (byte) (BinaryCodec.VERSION + 1), TYPE_RESPONSE};
+
+        assertThrows(StreamCorruptedException.class, () -> decode(message));
+    }
+
+    @Test
+    void stringLongerThanMessageFailsWithoutAllocatingDeclaredLength() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, BinaryCodec.VERSION, TYPE_RESPONSE);
+        out.writeBoolean(true);
+        // Заявлена строка чуть короче предела, а в сообщении всего несколько байт
+        BinaryCodec.writeVarLong(out, BinaryCodec.MAX_STRING_LENGTH);
+        out.write(new byte[16]);
+
+        assertThrows(EOFException.class, () -> decode(bytes.toByteArray()));
+    }
+
+    @Test
+    void rejectsStringOverLimit() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, BinaryCodec.VERSION, TYPE_RESPONSE);
+        out.writeBoolean(true);
+        BinaryCodec.writeVarLong(out, Integer.MAX_VALUE);
+
+        assertThrows(StreamCorruptedException.class, () -> decode(bytes.toByteArray()));
+    }
+
+    @Test
+    void rejectsNegativeLength() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, BinaryCodec.VERSION, TYPE_RESPONSE);
+        out.writeBoolean(true);
+        BinaryCodec.writeVarLong(out, -1);
+
+        assertThrows(StreamCorruptedException.class, () -> decode(bytes.toByteArray()));
+    }
+
+    @Test
+    void rejectsUnknownWeaponType() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes, BinaryCodec.VERSION, TYPE_REQUEST);
+        BinaryCodec.writeString(out, "insert");
+        BinaryCodec.writeString(out, null);
+        out.writeBoolean(true);
+        BinaryCodec.writeVarLong(out, BinaryCodec.zigzag(1));
+        BinaryCodec.writeString(out, "name");
+        out.writeBoolean(false);
+        BinaryCodec.writeVarLong(out, 0);
+        out.writeByte(0);
+        out.writeByte(0);
+        out.writeFloat(1f);
+        BinaryCodec.writeString(out, null);
+        out.writeBoolean(false);
+        BinaryCodec.writeVarLong(out, WeaponType.values().length + 1);
+
+        assertThrows(StreamCorruptedException.class, () -> decode(bytes.toByteArray()));
+    }
+
+    private static HumanBeing fullHumanBeing(int id) {
+        return new HumanBeing.Builder(id, LocalDate.of(2023, 11, 5))
+                .name("Имя " + id)
+                .coordinates(new Coordinates.Builder().x(-100).y(2.5f).build())
+                .realHero(true)
+                .hasToothpick(false)
+                .impactSpeed(-3.75f)
+                .soundtrackName("Саундтрек")
+                .minutesOfWaiting(12.125)
+                .weaponType(WeaponType.AXE)
+                .car(new Car.Builder().name("Волга").build())
+                .build();
+    }
+
+    private static DataOutputStream header(ByteArrayOutputStream bytes, int version, int type) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(BinaryCodec.MAGIC);
+        out.writeByte(version);
+        out.writeByte(type);
+        return out;
+    }
+
+    private Object roundTrip(Serializable obj) throws IOException {
+        return decode(encode(obj));
+    }
+
+    private byte[] encode(Serializable obj) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(obj, out);
+        return out.toByteArray();
+    }
+
+    private Object decode(byte[] bytes) throws IOException {
+        return codec.decode(new ByteArrayInputStream(bytes));
+    }
+
+    private static void assertRequestEquals(Request expected, Request actual) {
+        assertEquals(expected.getClientRequest(), actual.getClientRequest());
+        assertEquals(expected.getDataRequest(), actual.getDataRequest());
+        assertEquals(expected.getHumanBeing(), actual.getHumanBeing());
+        assertEquals(expected.getLogin(), actual.getLogin());
+        assertEquals(expected.getPassword(), actual.getPassword());
+        assertEquals(expected.getRequestId(), actual.getRequestId());
+        assertEquals(expected.getBatch() == null, actual.getBatch() == null);
+        if (expected.getBatch() == null) return;
+        assertEquals(expected.getBatch().size(), actual.getBatch().size());
+        for (int i = 0; i < expected.getBatch().size(); i++) {
+            assertRequestEquals(expected.getBatch().get(i), actual.getBatch().get(i));
+        }
+    }
+
+    private static void assertResponseEquals(Response expected, Response actual) {
+        assertEquals(expected.isSuccess(), actual.isSuccess());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getChanged(), actual.getChanged());
+        assertEquals(expected.getRemoved(), actual.getRemoved());
+        assertEquals(expected.getRequestId(), actual.getRequestId());
+        assertEquals(expected.getBatch() == null, actual.getBatch() == null);
+        if (expected.getBatch() == null) return;
+        assertEquals(expected.getBatch().size(), actual.getBatch().size());
+        for (int i = 0; i < expected.getBatch().size(); i++) {
+            assertResponseEquals(expected.getBatch().get(i), actual.getBatch().get(i));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package server.managers;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверки суммы impactSpeed в {@link CollectionStore}: она поддерживается при каждом изменении
+ * и совпадает с точной суммой значений, как и на клиенте.
+ */
+class CollectionStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void sumStaysExactOverManyFractionalValues() {
+        CollectionStore store = store();
+        for (int id = 1; id <= 100_000; id++) store.insert(humanBeing(id, 0.1f));
+
+        assertEquals(exactSum(0.1f, 100_000), store.sumOfImpactSpeed(), 1e-6);
+    }
+
+    @Test
+    void sumFollowsEveryKindOfChange() {
+        CollectionStore store = store();
+        for (int id = 1; id <= 10; id++) store.insert(humanBeing(id, id));
+
+        store.update(humanBeing(1, 100));
+        store.put(humanBeing(11, 1000));
+        store.remove(2);
+        store.removeAll(List.of(3, 4));
+        store.replaceIfGreater(humanBeing(5, 500));
+        store.removeGreater(10);
+        store.removeLower(6);
+
+        // Остались элементы 6..10 с исходными значениями
+        assertEquals(6 + 7 + 8 + 9 + 10, store.sumOfImpactSpeed());
+
+        store.clear();
+        assertEquals(0, store.sumOfImpactSpeed());
+    }
+
+    private CollectionStore store() {
+        return new CollectionStore(new DumpManager(directory.resolve("dump.xml").toString()));
+    }
+
+    private static double exactSum(float value, int count) {
+        return new BigDecimal(value).multiply(BigDecimal.valueOf(count)).doubleValue();
+    }
+
+    private static HumanBeing humanBeing(int id, float impactSpeed) {
+        return new HumanBeing.Builder(id, LocalDate.of(2024, 1, 1))
+                .name("Элемент " + id)
+                .coordinates(new Coordinates.Builder().x(id).y(1f).build())
+                .impactSpeed(impactSpeed)
+                .soundtrackName("soundtrack")
+                .weaponType(WeaponType.AXE)
+                .car(new Car.Builder().name("car").build())
+                .build();
+    }
+}
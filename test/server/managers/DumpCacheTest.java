@@ -0,0 +1,75 @@
+package server.managers;
+
+import common.Car;
+import common.Coordinates;
+import common.HumanBeing;
+import common.WeaponType;
+import common.utility.XmlCollectionReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки {@link DumpCache}: отсутствующий файл дампа отдаётся пустой коллекцией,
+ * а подмена файла сохранением видна следующему запросу.
+ */
+class DumpCacheTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void missingDumpIsServedAsEmptyCollection() throws Exception {
+        DumpCache cache = new DumpCache(new DumpManager(directory.resolve("dump.xml").toString()));
+
+        assertEquals(List.of(), read(cache.get()));
+    }
+
+    @Test
+    void replacedDumpIsReadAgain() throws Exception {
+        DumpManager dumpManager = new DumpManager(directory.resolve("dump.xml").toString());
+        DumpCache cache = new DumpCache(dumpManager);
+
+        assertTrue(dumpManager.writeCollection(entries(1, 2)));
+        assertEquals(List.of(1, 2), read(cache.get()));
+
+        assertTrue(dumpManager.writeCollection(entries(3)));
+        assertEquals(List.of(3), read(cache.get()));
+    }
+
+    private static List<Integer> read(ByteBuffer dump) throws Exception {
+        byte[] bytes = new byte[dump.remaining()];
+        dump.get(bytes);
+        List<Integer> ids = new ArrayList<>();
+        new XmlCollectionReader(humanBeing -> ids.add(humanBeing.getId()), error -> {
+            throw new IllegalStateException(error);
+        }).read(new ByteArrayInputStream(bytes));
+        return ids;
+    }
+
+    private static List<Map.Entry<Integer, HumanBeing>> entries(int... ids) {
+        List<Map.Entry<Integer, HumanBeing>> entries = new ArrayList<>();
+        for (int id : ids) {
+            HumanBeing humanBeing = new HumanBeing.Builder(id, LocalDate.of(2024, 1, 1))
+                    .name("Элемент " + id)
+                    .coordinates(new Coordinates.Builder().x(id).y(1f).build())
+                    .impactSpeed(id)
+                    .soundtrackName("soundtrack")
+                    .weaponType(WeaponType.HAMMER)
+                    .car(new Car.Builder().name("car").build())
+                    .build();
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(id, humanBeing));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,53 @@
+package server.managers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки {@link IdAllocator}: блоки не пересекаются, продолжаются после перезапуска
+ * и не выходят за диапазон int.
+ */
+class IdAllocatorTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void blocksDoNotOverlapAndSkipExistingKeys() throws IOException {
+        try (IdAllocator allocator = open()) {
+            assertEquals(1, allocator.lease(10, 0));
+            assertEquals(11, allocator.lease(10, 0));
+            assertEquals(101, allocator.lease(10, 100));
+        }
+    }
+
+    @Test
+    void leasingContinuesPastBoundaryAfterRestart() throws IOException {
+        try (IdAllocator allocator = open()) {
+            allocator.lease(10, 0);
+        }
+        try (IdAllocator allocator = open()) {
+            assertTrue(allocator.lease(10, 0) > 10);
+        }
+    }
+
+    @Test
+    void blockPastIntRangeIsRefused() throws IOException {
+        try (IdAllocator allocator = open()) {
+            assertEquals(-1, allocator.lease(10, Integer.MAX_VALUE));
+            assertEquals(-1, allocator.lease(IdAllocator.MAX_LEASE, Integer.MAX_VALUE - 1000));
+            assertEquals(Integer.MAX_VALUE - 10, allocator.lease(10, Integer.MAX_VALUE - 11));
+        }
+    }
+
+    private IdAllocator open() throws IOException {
+        IdAllocator allocator = new IdAllocator(directory.resolve("ids").toString());
+        allocator.open();
+        return allocator;
+    }
+}
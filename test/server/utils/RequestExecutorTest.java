@@ -0,0 +1,72 @@
+package server.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки {@link RequestExecutor}: задача, не принятая исполнителем, возвращается вызывающему
+ * и не оставляет за собой счётчиков очереди.
+ */
+class RequestExecutorTest {
+
+    @Test
+    void acceptedTaskRuns() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.PLATFORM, 1, 4);
+        CountDownLatch done = new CountDownLatch(1);
+
+        assertTrue(executor.execute(done::countDown));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    void taskAfterShutdownIsRejected() {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.PLATFORM, 1, 4);
+        executor.shutdown();
+        AtomicBoolean ran = new AtomicBoolean();
+
+        assertFalse(executor.execute(() -> ran.set(true)));
+        assertFalse(ran.get());
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    void interruptedWaitForFullQueueIsRejected() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.PLATFORM, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        // Единственный поток занят, единственное место в очереди тоже
+        executor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+
+        Thread.currentThread().interrupt();
+        boolean accepted = executor.execute(() -> { });
+        boolean interrupted = Thread.interrupted();
+
+        assertFalse(accepted);
+        assertTrue(interrupted);
+        assertEquals(1, executor.getQueueDepth());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}